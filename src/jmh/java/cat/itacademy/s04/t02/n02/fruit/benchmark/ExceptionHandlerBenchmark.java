@@ -0,0 +1,65 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.controllers.FruitController;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.FruitNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.GlobalExceptionHandler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error-path cost. {@code fruitNotFound} includes building the exception (stack trace capture),
+ * which is what a 404 really pays; {@code fruitNotFoundPreallocated} isolates the handler itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private FruitNotFoundException notFound;
+    private MethodArgumentNotValidException invalid;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handler = new GlobalExceptionHandler();
+        notFound = new FruitNotFoundException(42L);
+
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(new FruitRequestDTO("", -1, null), "fruitRequestDTO");
+        bindingResult.addError(new FieldError("fruitRequestDTO", "name", "Name must not be blank"));
+        bindingResult.addError(new FieldError("fruitRequestDTO", "weightInKilos", "Weight must be greater than zero"));
+        bindingResult.addError(new FieldError("fruitRequestDTO", "providerId", "Must attach a provider"));
+        MethodParameter parameter = new MethodParameter(FruitController.class.getMethod("createFruit", FruitRequestDTO.class), 0);
+        invalid = new MethodArgumentNotValidException(parameter, bindingResult);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, String>> fruitNotFound() {
+        return handler.handleFruitNotFound(new FruitNotFoundException(42L));
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, String>> fruitNotFoundPreallocated() {
+        return handler.handleFruitNotFound(notFound);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, String>> validationErrors() {
+        return handler.handleValidationExceptions(invalid);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, String>> genericError() {
+        return handler.handleGenericException(new IllegalStateException("boom"));
+    }
+}
@@ -0,0 +1,51 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.cache.FruitNameIndex;
+import cat.itacademy.s04.t02.n02.fruit.config.SuggestProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * {@code GET /fruits/suggest} lookups against the trigram index, with up to a million names built
+ * from a few hundred distinct words so common trigrams have long posting lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class FruitNameIndexBenchmark {
+
+    private static final String[] VARIETIES = {"Golden", "Red", "Green", "Wild", "Sweet", "Blood", "Baby", "Giant", "Dwarf", "Royal",
+            "Black", "White", "Pink", "Yellow", "Early", "Late", "Mountain", "Desert", "Tropical", "Northern"};
+    private static final String[] FRUITS = {"Apple", "Banana", "Cherry", "Strawberry", "Raspberry", "Blueberry", "Mango", "Papaya",
+            "Pineapple", "Orange", "Lemon", "Lime", "Grapefruit", "Kiwi", "Plum", "Peach", "Apricot", "Nectarine", "Fig", "Pomegranate"};
+    private static final String[] QUERIES = {"str", "strawb", "strawbery", "golden app", "pinaple", "blood oran", "ki", "mountain pe"};
+
+    @Param({"100000", "1000000"})
+    private int names;
+
+    private FruitNameIndex index;
+
+    @Setup
+    public void setUp() {
+        List<FruitResponseDTO> rows = LongStream.rangeClosed(1, names)
+                .mapToObj(id -> new FruitResponseDTO(id, VARIETIES[(int) (id % VARIETIES.length)] + " "
+                        + FRUITS[(int) (id / VARIETIES.length % FRUITS.length)] + " " + id, 1, 1L, 0L))
+                .toList();
+        index = new FruitNameIndex(InMemoryRepositories.fruits(rows), new SuggestProperties(0.5, 5_000, 50));
+        index.rebuild();
+    }
+
+    @Benchmark
+    public List<FruitSuggestionDTO> suggest() {
+        return index.suggest(QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)], 10);
+    }
+}
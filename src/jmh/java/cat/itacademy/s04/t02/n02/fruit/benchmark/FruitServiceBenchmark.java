@@ -0,0 +1,148 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.cache.CatalogSnapshot;
+import cat.itacademy.s04.t02.n02.fruit.cache.FruitNameIndex;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.EncodedResponse;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderStatsAggregate;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight;
+import cat.itacademy.s04.t02.n02.fruit.config.CatalogSnapshotProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.FruitLookupProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.ProviderCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.ResponseCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.SuggestProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ETagMapper;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitLookupBatcher;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * FruitService logic (provider checks, paging, mapping) with the database replaced by
+ * {@link InMemoryRepositories}, so the numbers show the service's own overhead. With
+ * {@code snapshot=true} the lists are answered from the catalog snapshot.
+ * {@link #getFruitsByProviderIdEncoded()} is the path of {@code GET /fruits?providerId=}: the
+ * collection version, then the JSON bytes from the response cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FruitServiceBenchmark {
+
+    private static final int PROVIDERS = 100;
+
+    @Param({"10000"})
+    private int fruits;
+
+    @Param({"false", "true"})
+    private boolean snapshot;
+
+    private FruitService service;
+    private ResponseCache responses;
+    private FruitRequestDTO update;
+    private String cursor;
+
+    @Setup
+    public void setUp() {
+        List<ProviderResponseDTO> providerRows = LongStream.rangeClosed(1, PROVIDERS)
+                .mapToObj(id -> new ProviderResponseDTO(id, "Provider-" + id, "Spain", 0L))
+                .toList();
+        List<FruitResponseDTO> fruitRows = LongStream.rangeClosed(1, fruits)
+                .mapToObj(id -> new FruitResponseDTO(id, "Fruit-" + id, (int) (id % 50) + 1, id % PROVIDERS + 1, 0L))
+                .toList();
+
+        ProviderRepository providerRepository = InMemoryRepositories.providers(providerRows);
+        ProviderCache providerCache = new ProviderCache(providerRepository, new ProviderCacheProperties(10_000, Duration.ofMinutes(10)));
+        ProviderStatsAggregate providerStats = new ProviderStatsAggregate(providerRepository);
+        providerStats.reconcile();
+        FruitRepository fruitRepository = InMemoryRepositories.fruits(fruitRows);
+        FruitNameIndex nameIndex = new FruitNameIndex(fruitRepository, new SuggestProperties(0.5, 5_000, 50));
+        nameIndex.rebuild();
+        // batching off: a lone caller would only measure the batch window
+        FruitLookupProperties lookupProperties = new FruitLookupProperties(false, Duration.ZERO, 100, 500);
+        FruitLookupBatcher lookups = new FruitLookupBatcher(fruitRepository, lookupProperties, new SimpleMeterRegistry());
+        CatalogSnapshot catalogSnapshot = new CatalogSnapshot(fruitRepository, providerRepository,
+                new CatalogSnapshotProperties(snapshot), noTransactions());
+        catalogSnapshot.reload();
+        responses = new ResponseCache(new ObjectMapper(),
+                new ResponseCacheProperties(true, DataSize.ofMegabytes(32), true, DataSize.ofKilobytes(1)));
+        service = new FruitService(fruitRepository, providerRepository, providerCache, providerStats, nameIndex, lookups,
+                new SingleFlight(noTransactions()), catalogSnapshot, responses, new PaginationProperties(500), lookupProperties);
+
+        update = new FruitRequestDTO("Green Apple", 4, 7L);
+        cursor = CursorMapper.encode(fruits / 2L);
+    }
+
+    @Benchmark
+    public FruitResponseDTO getFruitById() {
+        return service.getFruitById(randomFruitId());
+    }
+
+    @Benchmark
+    public List<FruitResponseDTO> getFruitsByProviderId() {
+        return service.getFruitsByProviderId(ThreadLocalRandom.current().nextLong(1, PROVIDERS + 1));
+    }
+
+    @Benchmark
+    public EncodedResponse getFruitsByProviderIdEncoded() {
+        long providerId = ThreadLocalRandom.current().nextLong(1, PROVIDERS + 1);
+        String eTag = ETagMapper.toETag(service.getFruitsVersion(providerId));
+        return responses.fruits(providerId, eTag, () -> service.getFruitsByProviderId(providerId));
+    }
+
+    @Benchmark
+    public CursorPageResponseDTO<FruitResponseDTO> getFruitsPage() {
+        return service.getFruitsPage(null, cursor, 100);
+    }
+
+    @Benchmark
+    public FruitResponseDTO updateFruitWithVersion() {
+        return service.updateFruit(randomFruitId(), update, 0L);
+    }
+
+    private long randomFruitId() {
+        return ThreadLocalRandom.current().nextLong(1, fruits + 1);
+    }
+
+    // the repositories live in memory, so a transaction has nothing to begin or commit
+    private static PlatformTransactionManager noTransactions() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+}
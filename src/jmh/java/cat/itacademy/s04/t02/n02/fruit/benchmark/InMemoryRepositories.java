@@ -0,0 +1,97 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitNameDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStockDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Map-backed stand-ins for the Spring Data repositories, answering only the methods the services
+ * call on their hot paths. Writes report one affected row without changing the data, so every
+ * benchmark invocation sees the same state.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {}
+
+    static FruitRepository fruits(List<FruitResponseDTO> rows) {
+        NavigableMap<Long, FruitResponseDTO> byId = new TreeMap<>();
+        rows.forEach(row -> byId.put(row.id(), row));
+        Map<Long, NavigableMap<Long, FruitResponseDTO>> byProvider = rows.stream()
+                .collect(Collectors.groupingBy(FruitResponseDTO::providerId,
+                        Collectors.toMap(FruitResponseDTO::id, row -> row, (a, b) -> a, TreeMap::new)));
+
+        return proxy(FruitRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findDtoById" -> Optional.ofNullable(byId.get((Long) args[0]));
+            case "findAllDtos" -> new ArrayList<>(byId.values());
+            case "findDtosByIdIn" -> ((Collection<?>) args[0]).stream().map(byId::get).filter(Objects::nonNull).toList();
+            // only providers with fruits are known here, and the benchmarks give every provider some
+            case "findDtosOfProvider" -> new ArrayList<>(byProvider.getOrDefault((Long) args[0], new TreeMap<>()).values());
+            case "findCollectionVersionOfProvider" -> Optional.ofNullable(byProvider.get((Long) args[0]))
+                    .map(fruits -> new CollectionVersionDTO((long) fruits.size(),
+                            fruits.values().stream().mapToLong(FruitResponseDTO::id).sum(),
+                            fruits.values().stream().mapToLong(FruitResponseDTO::version).sum()));
+            case "findDtosAfter" -> page(byId, (Long) args[0], (Limit) args[1]);
+            case "findDtosByProviderIdAfter" -> page(byProvider.getOrDefault((Long) args[0], new TreeMap<>()), (Long) args[1], (Limit) args[2]);
+            case "findStockByIdForUpdate" -> Optional.ofNullable(byId.get((Long) args[0]))
+                    .map(row -> new FruitStockDTO(row.providerId(), row.weightInKilos()));
+            case "streamNames" -> byId.values().stream().map(row -> new FruitNameDTO(row.id(), row.name()));
+            case "existsById" -> byId.containsKey((Long) args[0]);
+            case "updateById", "updateByIdAndVersion", "deleteByIdReturningCount" -> byId.containsKey((Long) args[0]) ? 1 : 0;
+            default -> unsupported(method.getName());
+        });
+    }
+
+    static ProviderRepository providers(List<ProviderResponseDTO> rows) {
+        Map<Long, ProviderResponseDTO> byId = rows.stream().collect(Collectors.toMap(ProviderResponseDTO::id, row -> row));
+
+        return proxy(ProviderRepository.class, (proxy, method, args) -> switch (method.getName()) {
+            case "findDtoById" -> Optional.ofNullable(byId.get((Long) args[0]));
+            case "findAllDtos" -> byId.values().stream().sorted((a, b) -> Long.compare(a.id(), b.id())).toList();
+            case "findAllStats" -> byId.values().stream().map(row -> new ProviderStatsDTO(row.id(), row.country(), 0L, 0L)).toList();
+            case "existsById" -> byId.containsKey((Long) args[0]);
+            case "getReferenceById" -> {
+                Provider reference = new Provider();
+                reference.setId((Long) args[0]);
+                yield reference;
+            }
+            default -> unsupported(method.getName());
+        });
+    }
+
+    private static List<FruitResponseDTO> page(NavigableMap<Long, FruitResponseDTO> rows, Long after, Limit limit) {
+        return rows.tailMap(after, false).values().stream().limit(limit.max()).toList();
+    }
+
+    private static Object unsupported(String method) {
+        throw new UnsupportedOperationException("Not available in the in-memory stand-in: " + method);
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        InvocationHandler withObjectMethods = (proxy, method, args) -> switch (method.getName()) {
+            case "toString" -> "InMemory" + type.getSimpleName();
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> handler.invoke(proxy, method, args);
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, withObjectMethods));
+    }
+}
@@ -0,0 +1,57 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.FruitMapper;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ProviderMapper;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private FruitRequestDTO fruitRequest;
+    private ProviderRequestDTO providerRequest;
+    private Provider provider;
+    private Fruit fruit;
+
+    @Setup
+    public void setUp() {
+        provider = new Provider("Provider-A", "Spain");
+        provider.setId(10L);
+        fruit = new Fruit("Apple", 3, provider);
+        fruit.setId(1L);
+        fruitRequest = new FruitRequestDTO("Apple", 3, 10L);
+        providerRequest = new ProviderRequestDTO("Provider-A", "Spain");
+    }
+
+    @Benchmark
+    public Fruit fruitToEntity() {
+        return FruitMapper.toEntity(fruitRequest, provider);
+    }
+
+    @Benchmark
+    public FruitResponseDTO fruitToResponse() {
+        return FruitMapper.toResponseDTO(fruit);
+    }
+
+    @Benchmark
+    public Provider providerToEntity() {
+        return ProviderMapper.toEntity(providerRequest);
+    }
+
+    @Benchmark
+    public ProviderResponseDTO providerToResponse() {
+        return ProviderMapper.toResponseDTO(provider);
+    }
+}
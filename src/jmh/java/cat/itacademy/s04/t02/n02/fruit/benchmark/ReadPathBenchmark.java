@@ -0,0 +1,88 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.FruitApiMySqlApplication;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.FruitMapper;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * {@code GET /fruits} read path against H2 in MySQL mode: the DTO projection in a read-only
+ * transaction versus loading managed entities and mapping them, as the service did before.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadPathBenchmark {
+
+    @Param({"1000"})
+    private int fruits;
+
+    private ConfigurableApplicationContext context;
+    private FruitService fruitService;
+    private FruitRepository fruitRepository;
+    private TransactionTemplate readWrite;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(FruitApiMySqlApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.web=WARN");
+
+        fruitService = context.getBean(FruitService.class);
+        fruitRepository = context.getBean(FruitRepository.class);
+        readWrite = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<ProviderResponseDTO> providers = context.getBean(ProviderService.class).createProviders(IntStream.range(0, 10)
+                .mapToObj(i -> new ProviderRequestDTO("Provider-" + i, "Spain"))
+                .toList());
+        fruitService.createFruits(IntStream.range(0, fruits)
+                .mapToObj(i -> new FruitRequestDTO("Fruit-" + i, i % 50 + 1, providers.get(i % providers.size()).id()))
+                .toList());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<FruitResponseDTO> projection() {
+        return fruitService.getAllFruits();
+    }
+
+    @Benchmark
+    public List<FruitResponseDTO> entities() {
+        return readWrite.execute(status -> fruitRepository.findAll().stream()
+                .map(FruitMapper::toResponseDTO)
+                .toList());
+    }
+}
@@ -0,0 +1,51 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Cost of writing the {@code GET /fruits} body, with the same ObjectMapper defaults Spring Boot applies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private List<FruitResponseDTO> fruits;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+        fruits = LongStream.rangeClosed(1, size)
+                .mapToObj(id -> new FruitResponseDTO(id, "Fruit-" + id, (int) (id % 50) + 1, id % 100 + 1, 0L))
+                .toList();
+        writer = Jackson2ObjectMapperBuilder.json().build()
+                .writerFor(new TypeReference<List<FruitResponseDTO>>() {});
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return writer.writeValueAsBytes(fruits);
+    }
+
+    @Benchmark
+    public void toStream() throws IOException {
+        // what the message converter does: encode straight to the response stream
+        writer.writeValue(OutputStream.nullOutputStream(), fruits);
+    }
+}
@@ -0,0 +1,264 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ProviderMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable copy of the whole catalog: every fruit, every provider and each provider's fruits, all
+ * as arrays sorted by id. Lists handed out are read-only views of those arrays, so serving one
+ * copies nothing.
+ * <p>
+ * A write produces a new catalog that shares every untouched array with this one: the fruit array
+ * is copied once, plus the arrays of the providers involved. Rows only replace rows with a lower
+ * version, so the same change applied twice, or after a newer one, is a no-op.
+ */
+public final class Catalog {
+
+    private static final FruitResponseDTO[] NO_FRUITS = new FruitResponseDTO[0];
+    private static final ToLongFunction<FruitResponseDTO> FRUIT_ID = FruitResponseDTO::id;
+    private static final ToLongFunction<ProviderResponseDTO> PROVIDER_ID = ProviderResponseDTO::id;
+
+    private final FruitResponseDTO[] fruits;
+    private final ProviderResponseDTO[] providers;
+    // one entry per known provider, possibly empty
+    private final Map<Long, FruitResponseDTO[]> fruitsByProvider;
+    private final CollectionVersionDTO fruitsVersion;
+
+    private Catalog(FruitResponseDTO[] fruits, ProviderResponseDTO[] providers, Map<Long, FruitResponseDTO[]> fruitsByProvider,
+                    CollectionVersionDTO fruitsVersion) {
+        this.fruits = fruits;
+        this.providers = providers;
+        this.fruitsByProvider = fruitsByProvider;
+        this.fruitsVersion = fruitsVersion;
+    }
+
+    /**
+     * Builds a catalog from full table reads, each sorted by id.
+     */
+    public static Catalog of(List<FruitResponseDTO> fruits, List<ProviderResponseDTO> providers) {
+        Map<Long, List<FruitResponseDTO>> grouped = new LinkedHashMap<>();
+        providers.forEach(provider -> grouped.put(provider.id(), new ArrayList<>()));
+        fruits.forEach(fruit -> grouped.computeIfAbsent(fruit.providerId(), id -> new ArrayList<>()).add(fruit));
+
+        Map<Long, FruitResponseDTO[]> byProvider = new HashMap<>();
+        grouped.forEach((providerId, rows) -> byProvider.put(providerId, rows.toArray(NO_FRUITS)));
+        return new Catalog(fruits.toArray(NO_FRUITS), providers.toArray(new ProviderResponseDTO[0]),
+                Collections.unmodifiableMap(byProvider), fingerprint(fruits));
+    }
+
+    public List<FruitResponseDTO> fruits() {
+        return view(fruits);
+    }
+
+    /**
+     * The provider's fruits, or empty if the provider does not exist.
+     */
+    public Optional<List<FruitResponseDTO>> fruitsOf(Long providerId) {
+        return Optional.ofNullable(fruitsByProvider.get(providerId)).map(Catalog::view);
+    }
+
+    public List<ProviderResponseDTO> providers() {
+        return view(providers);
+    }
+
+    public CollectionVersionDTO fruitsVersion() {
+        return fruitsVersion;
+    }
+
+    public Optional<CollectionVersionDTO> fruitsVersion(Long providerId) {
+        return fruitsOf(providerId).map(Catalog::fingerprint);
+    }
+
+    public CollectionVersionDTO providersVersion() {
+        return ProviderMapper.toCollectionVersion(providers());
+    }
+
+    Optional<FruitResponseDTO> fruit(long id) {
+        int at = find(fruits, id, FRUIT_ID);
+        return at >= 0 ? Optional.of(fruits[at]) : Optional.empty();
+    }
+
+    Optional<ProviderResponseDTO> provider(long id) {
+        int at = find(providers, id, PROVIDER_ID);
+        return at >= 0 ? Optional.of(providers[at]) : Optional.empty();
+    }
+
+    /**
+     * Inserts or replaces fruits, moving each to its provider's list. Rows older than the one held
+     * are ignored; returns this catalog when nothing changes.
+     */
+    Catalog withFruits(Collection<FruitResponseDTO> rows) {
+        Map<Long, FruitResponseDTO> changed = new LinkedHashMap<>();
+        for (FruitResponseDTO row : rows) {
+            FruitResponseDTO current = changed.containsKey(row.id()) ? changed.get(row.id()) : fruit(row.id()).orElse(null);
+            if (current == null || current.version() < row.version()) {
+                changed.put(row.id(), row);
+            }
+        }
+        if (changed.isEmpty()) {
+            return this;
+        }
+
+        long count = fruitsVersion.count();
+        long idSum = fruitsVersion.idSum();
+        long versionSum = fruitsVersion.versionSum();
+        Map<Long, Set<Long>> leaving = new HashMap<>();
+        Map<Long, List<FruitResponseDTO>> arriving = new HashMap<>();
+        for (FruitResponseDTO row : changed.values()) {
+            Optional<FruitResponseDTO> previous = fruit(row.id());
+            if (previous.isPresent()) {
+                versionSum += row.version() - previous.get().version();
+                if (!previous.get().providerId().equals(row.providerId())) {
+                    leaving.computeIfAbsent(previous.get().providerId(), id -> new HashSet<>()).add(row.id());
+                }
+            } else {
+                count++;
+                idSum += row.id();
+                versionSum += row.version();
+            }
+            arriving.computeIfAbsent(row.providerId(), id -> new ArrayList<>()).add(row);
+        }
+
+        Map<Long, FruitResponseDTO[]> byProvider = new HashMap<>(fruitsByProvider);
+        leaving.forEach((providerId, ids) -> byProvider.computeIfPresent(providerId, (id, list) -> remove(list, ids, FRUIT_ID)));
+        arriving.forEach((providerId, list) -> byProvider.put(providerId,
+                upsert(byProvider.getOrDefault(providerId, NO_FRUITS), list, FRUIT_ID)));
+
+        return new Catalog(upsert(fruits, changed.values(), FRUIT_ID), providers, Collections.unmodifiableMap(byProvider),
+                new CollectionVersionDTO(count, idSum, versionSum));
+    }
+
+    Catalog withoutFruits(Collection<Long> ids) {
+        Map<Long, Set<Long>> leaving = new HashMap<>();
+        long count = fruitsVersion.count();
+        long idSum = fruitsVersion.idSum();
+        long versionSum = fruitsVersion.versionSum();
+        for (Long id : Set.copyOf(ids)) {
+            Optional<FruitResponseDTO> removed = fruit(id);
+            if (removed.isPresent()) {
+                leaving.computeIfAbsent(removed.get().providerId(), providerId -> new HashSet<>()).add(id);
+                count--;
+                idSum -= id;
+                versionSum -= removed.get().version();
+            }
+        }
+        if (leaving.isEmpty()) {
+            return this;
+        }
+
+        Set<Long> removedIds = new HashSet<>();
+        leaving.values().forEach(removedIds::addAll);
+        Map<Long, FruitResponseDTO[]> byProvider = new HashMap<>(fruitsByProvider);
+        leaving.forEach((providerId, removed) -> byProvider.computeIfPresent(providerId, (id, list) -> remove(list, removed, FRUIT_ID)));
+        return new Catalog(remove(fruits, removedIds, FRUIT_ID), providers, Collections.unmodifiableMap(byProvider),
+                new CollectionVersionDTO(count, idSum, versionSum));
+    }
+
+    Catalog withProvider(ProviderResponseDTO row) {
+        Optional<ProviderResponseDTO> current = provider(row.id());
+        if (current.isPresent() && current.get().version() >= row.version()) {
+            return this;
+        }
+        Map<Long, FruitResponseDTO[]> byProvider = fruitsByProvider;
+        if (!byProvider.containsKey(row.id())) {
+            Map<Long, FruitResponseDTO[]> copy = new HashMap<>(byProvider);
+            copy.put(row.id(), NO_FRUITS);
+            byProvider = Collections.unmodifiableMap(copy);
+        }
+        return new Catalog(fruits, upsert(providers, List.of(row), PROVIDER_ID), byProvider, fruitsVersion);
+    }
+
+    // a provider still referenced by fruits cannot be deleted, so its fruit list is empty
+    Catalog withoutProvider(Long id) {
+        if (provider(id).isEmpty() && !fruitsByProvider.containsKey(id)) {
+            return this;
+        }
+        Map<Long, FruitResponseDTO[]> byProvider = new HashMap<>(fruitsByProvider);
+        byProvider.remove(id);
+        return new Catalog(fruits, remove(providers, Set.of(id), PROVIDER_ID), Collections.unmodifiableMap(byProvider), fruitsVersion);
+    }
+
+    private static CollectionVersionDTO fingerprint(List<FruitResponseDTO> fruits) {
+        long idSum = 0;
+        long versionSum = 0;
+        for (FruitResponseDTO fruit : fruits) {
+            idSum += fruit.id();
+            versionSum += fruit.version();
+        }
+        return new CollectionVersionDTO((long) fruits.size(), idSum, versionSum);
+    }
+
+    private static <T> List<T> view(T[] rows) {
+        return Collections.unmodifiableList(Arrays.asList(rows));
+    }
+
+    private static <T> int find(T[] sorted, long id, ToLongFunction<T> idOf) {
+        int low = 0;
+        int high = sorted.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = idOf.applyAsLong(sorted[mid]);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // a copy of sorted with rows (distinct ids) replacing or joining the entries with their ids
+    private static <T> T[] upsert(T[] sorted, Collection<T> rows, ToLongFunction<T> idOf) {
+        T[] copy = sorted.clone();
+        List<T> inserted = new ArrayList<>();
+        for (T row : rows) {
+            int at = find(copy, idOf.applyAsLong(row), idOf);
+            if (at >= 0) {
+                copy[at] = row;
+            } else {
+                inserted.add(row);
+            }
+        }
+        if (inserted.isEmpty()) {
+            return copy;
+        }
+
+        inserted.sort(Comparator.comparingLong(idOf));
+        T[] merged = Arrays.copyOf(copy, copy.length + inserted.size());
+        int i = copy.length - 1;
+        int j = inserted.size() - 1;
+        for (int k = merged.length - 1; j >= 0; k--) {
+            merged[k] = i >= 0 && idOf.applyAsLong(copy[i]) > idOf.applyAsLong(inserted.get(j)) ? copy[i--] : inserted.get(j--);
+        }
+        return merged;
+    }
+
+    private static <T> T[] remove(T[] sorted, Set<Long> ids, ToLongFunction<T> idOf) {
+        T[] kept = sorted.clone();
+        int n = 0;
+        for (T row : sorted) {
+            if (!ids.contains(idOf.applyAsLong(row))) {
+                kept[n++] = row;
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(kept, n);
+    }
+}
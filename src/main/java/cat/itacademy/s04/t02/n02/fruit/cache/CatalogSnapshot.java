@@ -0,0 +1,251 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.CatalogSnapshotProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SnapshotCheckDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.TransactionHooks.afterCommit;
+
+/**
+ * Optional read model ({@code fruit.snapshot.enabled}): the whole catalog as an immutable
+ * {@link Catalog}, so the fruit and provider lists are served from memory without a lock.
+ * <p>
+ * Loaded when the application is ready and again every {@code fruit.snapshot.reload-interval};
+ * in between, the services report every write and a new catalog is published once it commits.
+ * Set-based updates have the fruits of the providers they touched re-read instead. Fruit and
+ * provider ids deleted since the last load are remembered, so a late write hook cannot bring a
+ * deleted row back.
+ * {@link #check()} compares the snapshot with the database.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class CatalogSnapshot {
+
+    private final FruitRepository fruitRepository;
+    private final ProviderRepository providerRepository;
+    private final CatalogSnapshotProperties properties;
+    // its own transaction even when called from a commit hook, whose transaction is already over
+    private final TransactionTemplate readOnly;
+
+    // null until the first load; replaced, never modified, so readers need no lock
+    private volatile Catalog catalog;
+
+    // guarded by this
+    private final Set<Long> deletedFruits = new HashSet<>();
+    private final Set<Long> deletedProviders = new HashSet<>();
+    // non-null while a load reads the tables: writes made meanwhile are replayed on its result
+    private List<UnaryOperator<Catalog>> pending;
+
+    public CatalogSnapshot(FruitRepository fruitRepository, ProviderRepository providerRepository,
+                           CatalogSnapshotProperties properties, PlatformTransactionManager transactionManager) {
+        this.fruitRepository = fruitRepository;
+        this.providerRepository = providerRepository;
+        this.properties = properties;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * The current catalog; empty when the snapshot is disabled or not loaded yet, and inside a
+     * transaction, which must see its own writes.
+     */
+    public Optional<Catalog> current() {
+        Catalog current = catalog;
+        if (current == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    public void fruitSaved(FruitResponseDTO fruit) {
+        fruitsSaved(List.of(fruit));
+    }
+
+    public void fruitsSaved(Collection<FruitResponseDTO> fruits) {
+        if (!properties.enabled()) {
+            return;
+        }
+        List<FruitResponseDTO> saved = List.copyOf(fruits);
+        afterCommit(() -> apply(current -> current.withFruits(notDeleted(saved))));
+    }
+
+    public void fruitsRemoved(Collection<Long> ids) {
+        if (!properties.enabled()) {
+            return;
+        }
+        List<Long> removed = List.copyOf(ids);
+        afterCommit(() -> apply(current -> {
+            deletedFruits.addAll(removed);
+            return current.withoutFruits(removed);
+        }));
+    }
+
+    /**
+     * Re-reads the fruits of the given providers once the current transaction commits. Used after a
+     * set-based update, which may move fruits between those providers.
+     */
+    public void refreshProviders(Collection<Long> providerIds) {
+        if (!properties.enabled()) {
+            return;
+        }
+        Set<Long> ids = Set.copyOf(providerIds);
+        afterCommit(() -> {
+            try {
+                List<FruitResponseDTO> rows = readOnly.execute(status -> fruitRepository.findDtosByProviderIdIn(ids));
+                apply(current -> current.withFruits(notDeleted(rows)));
+            } catch (RuntimeException ex) {
+                // the write has committed; the next reload picks it up
+                log.warn("Catalog snapshot refresh failed for providers {}", ids, ex);
+            }
+        });
+    }
+
+    public void providerSaved(ProviderResponseDTO provider) {
+        if (properties.enabled()) {
+            afterCommit(() -> apply(current -> deletedProviders.contains(provider.id()) ? current : current.withProvider(provider)));
+        }
+    }
+
+    public void providerRemoved(Long id) {
+        if (properties.enabled()) {
+            afterCommit(() -> apply(current -> {
+                deletedProviders.add(id);
+                return current.withoutProvider(id);
+            }));
+        }
+    }
+
+    /**
+     * Reads both tables and swaps the result in, after replaying the writes that committed while
+     * they were read. Replaying is safe either way: a row the load already saw at that version, or
+     * a newer one, is left as it is.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${fruit.snapshot.reload-interval}", fixedDelayString = "${fruit.snapshot.reload-interval}")
+    public void reload() {
+        if (!properties.enabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        synchronized (this) {
+            pending = new ArrayList<>();
+            deletedFruits.clear();
+            deletedProviders.clear();
+        }
+
+        Catalog fresh;
+        try {
+            fresh = readOnly.execute(status -> Catalog.of(fruitRepository.findAllDtos(), providerRepository.findAllDtos()));
+        } catch (RuntimeException ex) {
+            // keep serving the current catalog
+            synchronized (this) {
+                pending = null;
+            }
+            throw ex;
+        }
+
+        synchronized (this) {
+            for (UnaryOperator<Catalog> write : pending) {
+                fresh = write.apply(fresh);
+            }
+            catalog = fresh;
+            pending = null;
+        }
+        log.info("Loaded catalog snapshot of {} fruits and {} providers in {} ms", fresh.fruitsVersion().count(),
+                fresh.providers().size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Compares the snapshot with both tables. A write that commits while the tables are read shows
+     * up as a difference until its hook has run, so the rows that differ are read again and only
+     * those still differing are reported.
+     */
+    public SnapshotCheckDTO check() {
+        Catalog before = current().orElseThrow(() -> new ConflictException("The catalog snapshot is not enabled or not loaded yet"));
+
+        Set<Long> fruitIds = readOnly.execute(status -> differences(before.fruits(), fruitRepository.findAllDtos(), FruitResponseDTO::id));
+        Set<Long> providerIds = readOnly.execute(status -> differences(before.providers(), providerRepository.findAllDtos(), ProviderResponseDTO::id));
+
+        // the rows are read again before the snapshot, so a hook that ran in between is taken into account
+        Map<Long, FruitResponseDTO> fruitRows = fruitIds.isEmpty() ? Map.of()
+                : byId(readOnly.execute(status -> fruitRepository.findDtosByIdIn(fruitIds)), FruitResponseDTO::id);
+        Map<Long, ProviderResponseDTO> providerRows = providerIds.isEmpty() ? Map.of()
+                : byId(readOnly.execute(status -> providerRepository.findAllDtos()), ProviderResponseDTO::id);
+        Catalog latest = catalog;
+        fruitIds.removeIf(id -> Objects.equals(fruitRows.get(id), latest.fruit(id).orElse(null)));
+        providerIds.removeIf(id -> Objects.equals(providerRows.get(id), latest.provider(id).orElse(null)));
+
+        boolean consistent = fruitIds.isEmpty() && providerIds.isEmpty();
+        if (!consistent) {
+            log.warn("Catalog snapshot differs from the database: fruits {}, providers {}", fruitIds, providerIds);
+        }
+        return new SnapshotCheckDTO(consistent, latest.fruitsVersion().count(), latest.providers().size(),
+                firstIds(fruitIds), firstIds(providerIds));
+    }
+
+    private synchronized void apply(UnaryOperator<Catalog> write) {
+        if (catalog != null) {
+            catalog = write.apply(catalog);
+        }
+        if (pending != null) {
+            pending.add(write);
+        }
+    }
+
+    // called under the lock
+    private List<FruitResponseDTO> notDeleted(List<FruitResponseDTO> fruits) {
+        return fruits.stream().filter(fruit -> !deletedFruits.contains(fruit.id())).toList();
+    }
+
+    private static <T> Set<Long> differences(List<T> snapshot, List<T> database, ToLongFunction<T> idOf) {
+        Map<Long, T> remaining = byId(database, idOf);
+        Set<Long> ids = new TreeSet<>();
+        for (T row : snapshot) {
+            long id = idOf.applyAsLong(row);
+            if (!row.equals(remaining.remove(id))) {
+                ids.add(id);
+            }
+        }
+        ids.addAll(remaining.keySet());
+        return ids;
+    }
+
+    private static <T> Map<Long, T> byId(List<T> rows, ToLongFunction<T> idOf) {
+        Map<Long, T> byId = new HashMap<>();
+        rows.forEach(row -> byId.put(idOf.applyAsLong(row), row));
+        return byId;
+    }
+
+    private static List<Long> firstIds(Set<Long> ids) {
+        return ids.stream().limit(SnapshotCheckDTO.MAX_REPORTED_IDS).toList();
+    }
+}
@@ -0,0 +1,75 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Locale;
+
+/**
+ * A response body already encoded as JSON, plus its gzip copy when one is kept, for the
+ * {@code ETag} it was encoded at. The gzip copy goes out under its own strong tag, the same one
+ * with a {@code -gz} suffix, since a strong validator names one exact byte representation. The
+ * arrays are shared by every request served from them and must not be modified.
+ */
+public record EncodedResponse(String eTag, byte[] json, byte[] gzip) {
+
+    /**
+     * The bytes as they go out, compressed when the client accepts gzip and a copy exists.
+     */
+    public ResponseEntity<byte[]> toResponseEntity(String acceptEncoding) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON);
+        if (gzip == null) {
+            return ok.body(json);
+        }
+        ok.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        return acceptsGzip(acceptEncoding)
+                ? ok.eTag(gzipETag(eTag)).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip)
+                : ok.body(json);
+    }
+
+    /**
+     * The tag, identity or gzip, that {@code If-None-Match} names, to answer 304 with before anything
+     * is loaded; null when it names neither, and the tag of the representation sent is the one set.
+     */
+    public static String heldETag(String eTag, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        if (ifNoneMatch.contains(gzipETag(eTag))) {
+            return gzipETag(eTag);
+        }
+        return ifNoneMatch.contains(eTag) ? eTag : null;
+    }
+
+    static String gzipETag(String eTag) {
+        return eTag.endsWith("\"") ? eTag.substring(0, eTag.length() - 1) + "-gz\"" : eTag + "-gz";
+    }
+
+    long weight() {
+        return json.length + (gzip == null ? 0 : gzip.length);
+    }
+
+    // "gzip" or "*" listed without q=0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].strip();
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].strip();
+                if (parameter.startsWith("q=")) {
+                    refused = parameter.substring(2).strip().matches("0(\\.0*)?");
+                }
+            }
+            return !refused;
+        }
+        return false;
+    }
+}
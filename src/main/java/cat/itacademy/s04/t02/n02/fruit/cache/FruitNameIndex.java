@@ -0,0 +1,123 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.SuggestProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitNameDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.TransactionHooks.afterCommit;
+
+/**
+ * In-process trigram index over fruit names behind {@code GET /fruits/suggest}, so typeahead
+ * lookups never reach the database ({@code LIKE '%x%'} cannot use an index).
+ * <p>
+ * Built from a streaming scan when the application is ready; FruitService reports every write,
+ * applied once it commits.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class FruitNameIndex {
+
+    private final FruitRepository fruitRepository;
+    private final SuggestProperties properties;
+
+    // readers share the index; writes and the swap after a rebuild are exclusive
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TrigramIndex index = new TrigramIndex();
+    // non-null while a rebuild scans the table: writes made meanwhile are replayed on the new index
+    private List<Consumer<TrigramIndex>> pending;
+
+    public FruitNameIndex(FruitRepository fruitRepository, SuggestProperties properties) {
+        this.fruitRepository = fruitRepository;
+        this.properties = properties;
+    }
+
+    public List<FruitSuggestionDTO> suggest(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, properties.clamp(limit), properties.minSimilarity(), properties.maxCandidates());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(Long id, String name) {
+        afterCommit(() -> write(trigrams -> trigrams.put(id, name)));
+    }
+
+    public void remove(Long id) {
+        afterCommit(() -> write(trigrams -> trigrams.remove(id)));
+    }
+
+    public void removeAll(Collection<Long> ids) {
+        List<Long> removed = List.copyOf(ids);
+        afterCommit(() -> write(trigrams -> removed.forEach(trigrams::remove)));
+    }
+
+    /**
+     * Rebuilds the index from the fruits table and swaps it in. Put and remove are idempotent, so a
+     * write replayed on the new index ends in the same state whether or not the scan already saw it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        TrigramIndex fresh = new TrigramIndex();
+        try (Stream<FruitNameDTO> names = fruitRepository.streamNames()) {
+            names.forEach(row -> fresh.put(row.id(), row.name()));
+        } catch (RuntimeException ex) {
+            // keep serving the current index
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pending.forEach(write -> write.accept(fresh));
+            index = fresh;
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} fruit names for suggestions in {} ms", fresh.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void write(Consumer<TrigramIndex> write) {
+        lock.writeLock().lock();
+        try {
+            write.accept(index);
+            if (pending != null) {
+                pending.add(write);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
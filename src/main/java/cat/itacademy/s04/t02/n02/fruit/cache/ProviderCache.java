@@ -0,0 +1,162 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ProviderCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CacheStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.TransactionHooks.afterCommit;
+
+/**
+ * Bounded, lazily populated cache of provider rows keyed by id.
+ * <p>
+ * Writes reach the cache only after their transaction commits, and rows read inside a read-write
+ * transaction are never cached because they may not be committed yet. Once a full table load fits
+ * in the cache it is marked complete and {@link #findAll()} answers from memory until an entry is
+ * evicted, the first loaded entries expire, or a concurrent write races with the load.
+ */
+@Component
+@Profile("!reactive")
+public class ProviderCache implements MeterBinder {
+
+    private final ProviderRepository providerRepository;
+    private final Cache<Long, ProviderResponseDTO> cache;
+    private final long maximumSize;
+    private final long timeToLiveNanos;
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile long completeUntilNanos;
+    private volatile boolean complete;
+
+    public ProviderCache(ProviderRepository providerRepository, ProviderCacheProperties properties) {
+        this.providerRepository = providerRepository;
+        this.maximumSize = properties.maximumSize();
+        this.timeToLiveNanos = properties.timeToLive().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.timeToLive())
+                .executor(Runnable::run)
+                .evictionListener((Long id, ProviderResponseDTO provider, RemovalCause cause) -> {
+                    evictions.incrementAndGet();
+                    complete = false;
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Optional<ProviderResponseDTO> findById(Long id) {
+        ProviderResponseDTO cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        // Loaded outside the cache's compute: a query inside it would pin a virtual thread to its carrier.
+        // An invalidation that lands while the query runs means the row may be stale, so it is not cached.
+        long invalidationsBefore = invalidations.get();
+        Optional<ProviderResponseDTO> loaded = providerRepository.findDtoById(id);
+        if (loaded.isPresent() && canPopulate()) {
+            cache.asMap().compute(id, (key, existing) -> invalidations.get() == invalidationsBefore ? loaded.get() : existing);
+        }
+        return loaded;
+    }
+
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    public List<ProviderResponseDTO> findAll() {
+        Optional<List<ProviderResponseDTO>> cached = findAllIfComplete();
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        long evictionsBefore = evictions.get();
+        long invalidationsBefore = invalidations.get();
+        long deadline = System.nanoTime() + timeToLiveNanos;
+
+        List<ProviderResponseDTO> providers = providerRepository.findAllDtos();
+
+        if (canPopulate() && providers.size() <= maximumSize) {
+            // as in findById: once an invalidation has landed, any loaded row may be stale and is not cached
+            providers.forEach(provider -> cache.asMap().compute(provider.id(),
+                    (id, existing) -> invalidations.get() == invalidationsBefore ? provider : existing));
+            if (evictions.get() == evictionsBefore && invalidations.get() == invalidationsBefore) {
+                completeUntilNanos = deadline;
+                complete = true;
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Answers from memory only, never touching the database; empty when the cache is not complete.
+     */
+    public Optional<List<ProviderResponseDTO>> findAllIfComplete() {
+        if (!isComplete()) {
+            return Optional.empty();
+        }
+        return Optional.of(cache.asMap().values().stream()
+                .sorted(Comparator.comparing(ProviderResponseDTO::id))
+                .toList());
+    }
+
+    public void put(ProviderResponseDTO provider) {
+        afterCommit(() -> cache.put(provider.id(), provider));
+    }
+
+    public void evict(Long id) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.invalidate(id);
+        });
+    }
+
+    /**
+     * Used when a write may have changed a row the cache cannot see (e.g. an update): the entry is
+     * dropped and the next {@link #findAll()} goes back to the database.
+     */
+    public void evictAndMarkIncomplete(Long id) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            complete = false;
+            cache.invalidate(id);
+        });
+    }
+
+    // cache.gets/puts/evictions/size{cache="providers"} on the metrics endpoint
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "providers");
+    }
+
+    public CacheStatsDTO stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), isComplete());
+    }
+
+    private boolean isComplete() {
+        return complete && System.nanoTime() - completeUntilNanos < 0;
+    }
+
+    private static boolean canPopulate() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
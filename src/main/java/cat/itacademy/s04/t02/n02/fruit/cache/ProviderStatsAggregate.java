@@ -0,0 +1,362 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CountryStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.StockStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fruit count and total kilos per provider and per country, held in memory so the stats endpoints
+ * never query the database.
+ * <p>
+ * Seeded with one GROUP BY query when the application is ready, then moved by the deltas the
+ * services report as their writes commit; bulk writes have the providers they touched re-read
+ * instead. A scheduled reconciliation reruns the query and replaces the totals, which corrects any
+ * drift, e.g. rows changed outside this application.
+ * <p>
+ * The deltas of one transaction are applied together once it commits. A query only replaces totals
+ * when no commit was in flight while it ran: a write whose commit the query saw but whose delta had
+ * not landed yet would otherwise be counted twice, once in the rows and once more by the delta.
+ * That only holds for deltas reported inside the writing transaction; one reported after a write
+ * has already committed on its own is applied at once, unguarded.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class ProviderStatsAggregate {
+
+    private static final int MAX_RECONCILE_ATTEMPTS = 3;
+    private static final long COMMIT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ProviderRepository providerRepository;
+
+    // all state is guarded by this; every operation is a couple of map lookups
+    private final Map<Long, Totals> providers = new HashMap<>();
+    private final Map<String, Totals> countries = new HashMap<>();
+    private long changes;
+    private long commitsStarted;
+    private int commitsInFlight;
+
+    public ProviderStatsAggregate(ProviderRepository providerRepository) {
+        this.providerRepository = providerRepository;
+    }
+
+    public synchronized Optional<ProviderStatsDTO> findByProviderId(Long providerId) {
+        return Optional.ofNullable(providers.get(providerId)).map(totals -> toProviderStats(providerId, totals));
+    }
+
+    public synchronized StockStatsDTO findAll() {
+        List<ProviderStatsDTO> byProvider = providers.entrySet().stream()
+                .map(entry -> toProviderStats(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparing(ProviderStatsDTO::providerId))
+                .toList();
+        List<CountryStatsDTO> byCountry = countries.entrySet().stream()
+                .map(entry -> new CountryStatsDTO(entry.getKey(), entry.getValue().providerCount,
+                        entry.getValue().fruitCount, entry.getValue().totalKilos))
+                .sorted(Comparator.comparing(CountryStatsDTO::country))
+                .toList();
+        return new StockStatsDTO(byProvider, byCountry);
+    }
+
+    /**
+     * A provider was created or its country changed; its fruit totals move with it.
+     */
+    public void providerSaved(Long providerId, String country) {
+        onCommit(() -> {
+            Totals totals = providers.computeIfAbsent(providerId, id -> new Totals(country));
+            if (totals.providerCount == 0) {
+                totals.providerCount = 1;
+                country(country).add(1, totals.fruitCount, totals.totalKilos);
+            } else if (!totals.country.equals(country)) {
+                leaveCountry(totals);
+                country(country).add(1, totals.fruitCount, totals.totalKilos);
+                totals.country = country;
+            }
+        });
+    }
+
+    public void providerRemoved(Long providerId) {
+        onCommit(() -> {
+            Totals totals = providers.remove(providerId);
+            if (totals != null) {
+                leaveCountry(totals);
+            }
+        });
+    }
+
+    public void fruitAdded(Long providerId, int weightInKilos) {
+        onCommit(() -> addFruits(providerId, 1, weightInKilos));
+    }
+
+    public void fruitRemoved(Long providerId, int weightInKilos) {
+        onCommit(() -> addFruits(providerId, -1, -weightInKilos));
+    }
+
+    public void fruitAdjusted(Long providerId, int deltaKilos) {
+        onCommit(() -> addFruits(providerId, 0, deltaKilos));
+    }
+
+    /**
+     * Covers both a weight change and a move to another provider (and maybe another country).
+     */
+    public void fruitChanged(Long oldProviderId, int oldWeightInKilos, Long newProviderId, int newWeightInKilos) {
+        onCommit(() -> {
+            addFruits(oldProviderId, -1, -oldWeightInKilos);
+            addFruits(newProviderId, 1, newWeightInKilos);
+        });
+    }
+
+    /**
+     * Re-reads the totals of the given providers once the current transaction commits. Used after a
+     * set-based write, whose per-row deltas are not known without reading every row it touched.
+     */
+    public void refresh(Collection<Long> providerIds) {
+        Commit commit = currentCommit();
+        if (commit == null) {
+            refreshNow(Set.copyOf(providerIds));
+        } else {
+            commit.refreshed.addAll(providerIds);
+        }
+    }
+
+    /**
+     * Replaces every total with a fresh GROUP BY.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${fruit.stats.reconcile-interval}", fixedDelayString = "${fruit.stats.reconcile-interval}")
+    public void reconcile() {
+        Optional<Integer> drifted = replaceWhenQuiet(providerRepository::findAllStats, this::replaceWith);
+        if (drifted.isEmpty()) {
+            log.info("Provider stats reconciliation skipped: writes kept landing while it ran");
+        } else if (drifted.get() > 0) {
+            log.warn("Provider stats drifted for {} providers; replaced with the database totals", drifted.get());
+        }
+    }
+
+    private void refreshNow(Set<Long> ids) {
+        try {
+            if (replaceWhenQuiet(() -> providerRepository.findStatsByIds(ids), this::replaceProviders).isEmpty()) {
+                log.info("Provider stats refresh skipped for {}: writes kept landing while it ran", ids);
+            }
+        } catch (RuntimeException ex) {
+            // the write has committed; the next reconciliation corrects these totals
+            log.warn("Provider stats refresh failed for {}", ids, ex);
+        }
+    }
+
+    /**
+     * A commit in flight while the query runs may or may not be part of its result, and its delta
+     * lands whenever it finishes. The rows only replace the totals when no commit was in flight at
+     * the start and none started before the end; otherwise the query is retried. Empty if it never
+     * settled.
+     */
+    private <T> Optional<T> replaceWhenQuiet(Supplier<List<ProviderStatsDTO>> query, Function<List<ProviderStatsDTO>, T> replace) {
+        for (int attempt = 0; attempt < MAX_RECONCILE_ATTEMPTS; attempt++) {
+            boolean committing;
+            long changesBefore;
+            long commitsBefore;
+            synchronized (this) {
+                committing = commitsInFlight > 0;
+                changesBefore = changes;
+                commitsBefore = commitsStarted;
+            }
+            if (committing) {
+                // a commit is short: parked outside the lock, so no writer waits on it
+                LockSupport.parkNanos(COMMIT_WAIT_NANOS);
+                continue;
+            }
+
+            List<ProviderStatsDTO> rows = query.get();
+
+            synchronized (this) {
+                if (changes == changesBefore && commitsStarted == commitsBefore) {
+                    return Optional.of(replace.apply(rows));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void onCommit(Runnable delta) {
+        Commit commit = currentCommit();
+        if (commit == null) {
+            applyNow(delta);
+        } else {
+            commit.deltas.add(delta);
+        }
+    }
+
+    // the Commit collecting the stats writes of the current transaction; null when there is none
+    private Commit currentCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Commit commit = (Commit) TransactionSynchronizationManager.getResource(this);
+        if (commit == null) {
+            commit = new Commit();
+            TransactionSynchronizationManager.bindResource(this, commit);
+            TransactionSynchronizationManager.registerSynchronization(commit);
+        }
+        return commit;
+    }
+
+    private synchronized void commitStarting() {
+        commitsStarted++;
+        commitsInFlight++;
+    }
+
+    private synchronized void commitEnded(List<Runnable> deltas) {
+        if (!deltas.isEmpty()) {
+            deltas.forEach(Runnable::run);
+            changes++;
+        }
+        commitsInFlight--;
+    }
+
+    private synchronized void applyNow(Runnable delta) {
+        delta.run();
+        changes++;
+    }
+
+    private void addFruits(Long providerId, long fruits, long kilos) {
+        Totals totals = providers.get(providerId);
+        if (totals == null) {
+            // not seeded yet or already deleted: the next reconciliation has the right number
+            return;
+        }
+        totals.add(0, fruits, kilos);
+        country(totals.country).add(0, fruits, kilos);
+    }
+
+    private Totals country(String country) {
+        return countries.computeIfAbsent(country, Totals::new);
+    }
+
+    private void leaveCountry(Totals provider) {
+        Totals country = country(provider.country);
+        country.add(-1, -provider.fruitCount, -provider.totalKilos);
+        if (country.providerCount == 0) {
+            countries.remove(provider.country);
+        }
+    }
+
+    private int replaceWith(List<ProviderStatsDTO> rows) {
+        int drifted = 0;
+        Map<Long, Totals> fresh = new HashMap<>();
+        countries.clear();
+        for (ProviderStatsDTO row : rows) {
+            Totals totals = new Totals(row.country());
+            totals.add(1, row.fruitCount(), row.totalKilos());
+            fresh.put(row.providerId(), totals);
+            country(row.country()).add(1, row.fruitCount(), row.totalKilos());
+
+            Totals previous = providers.get(row.providerId());
+            if (previous != null && !previous.sameAs(totals)) {
+                drifted++;
+            }
+        }
+        providers.clear();
+        providers.putAll(fresh);
+        return drifted;
+    }
+
+    // counts as a change, so a reconciliation or refresh whose query raced with it retries
+    private int replaceProviders(List<ProviderStatsDTO> rows) {
+        for (ProviderStatsDTO row : rows) {
+            Totals totals = providers.get(row.providerId());
+            if (totals != null) {
+                addFruits(row.providerId(), row.fruitCount() - totals.fruitCount, row.totalKilos() - totals.totalKilos);
+            }
+        }
+        changes++;
+        return rows.size();
+    }
+
+    // the deltas and refreshes of one transaction: counted in flight from just before its commit until they are applied
+    private final class Commit implements TransactionSynchronization {
+
+        private final List<Runnable> deltas = new ArrayList<>();
+        private final Set<Long> refreshed = new HashSet<>();
+        private boolean committing;
+
+        // a transaction started inside this one (REQUIRES_NEW) collects its own writes
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(ProviderStatsAggregate.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(ProviderStatsAggregate.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!deltas.isEmpty()) {
+                committing = true;
+                commitStarting();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ProviderStatsAggregate.this);
+            boolean committed = status == STATUS_COMMITTED;
+            if (committing) {
+                commitEnded(committed ? deltas : List.of());
+            }
+            // after this transaction's own deltas, or the refresh would wait for them
+            if (committed && !refreshed.isEmpty()) {
+                refreshNow(Set.copyOf(refreshed));
+            }
+        }
+    }
+
+    private static ProviderStatsDTO toProviderStats(Long providerId, Totals totals) {
+        return new ProviderStatsDTO(providerId, totals.country, totals.fruitCount, totals.totalKilos);
+    }
+
+    private static final class Totals {
+
+        private String country;
+        private long providerCount;
+        private long fruitCount;
+        private long totalKilos;
+
+        private Totals(String country) {
+            this.country = country;
+        }
+
+        private void add(long providers, long fruits, long kilos) {
+            providerCount += providers;
+            fruitCount += fruits;
+            totalKilos += kilos;
+        }
+
+        private boolean sameAs(Totals other) {
+            return country.equals(other.country) && fruitCount == other.fruitCount && totalKilos == other.totalKilos;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ResponseCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.TransactionHooks.afterCommit;
+
+/**
+ * The list responses ({@code GET /fruits}, {@code GET /fruits?providerId=}, {@code GET /providers})
+ * kept as encoded JSON bytes, plus a gzip copy of the larger ones, so a repeated read is written
+ * out as it is instead of being loaded and serialized again.
+ * <p>
+ * An entry is only served for the collection {@code ETag} it was encoded at, and the services drop
+ * the entries a write affects once it commits. A response encoded while such a write was committing
+ * is returned but not stored, and nothing read inside a transaction is stored either. The cache is
+ * bounded by the total size of the bytes it holds ({@code fruit.response-cache.maximum-size}).
+ */
+@Component
+@Profile("!reactive")
+public class ResponseCache implements MeterBinder {
+
+    static final String ALL_FRUITS = "fruits";
+    static final String PROVIDERS = "providers";
+
+    private final ObjectMapper objectMapper;
+    private final ResponseCacheProperties properties;
+    private final long gzipMinSize;
+    private final Cache<String, EncodedResponse> cache;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResponseCache(ObjectMapper objectMapper, ResponseCacheProperties properties) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.gzipMinSize = properties.gzipMinSize().toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maximumSize().toBytes())
+                .weigher((String key, EncodedResponse response) -> (int) Math.min(response.weight(), Integer.MAX_VALUE))
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * The fruit list, or one provider's when {@code providerId} is set, encoded at {@code eTag};
+     * {@code fruits} is only called when no matching entry is held.
+     */
+    public EncodedResponse fruits(Long providerId, String eTag, Supplier<List<FruitResponseDTO>> fruits) {
+        return get(fruitsKey(providerId), eTag, fruits);
+    }
+
+    public EncodedResponse providers(String eTag, Supplier<List<ProviderResponseDTO>> providers) {
+        return get(PROVIDERS, eTag, providers);
+    }
+
+    /**
+     * Drops the full fruit list and the lists of the given providers once the current transaction
+     * commits. A fruit moved between providers needs both of them passed.
+     */
+    public void fruitsChanged(Collection<Long> providerIds) {
+        List<String> keys = new ArrayList<>();
+        keys.add(ALL_FRUITS);
+        providerIds.stream().filter(Objects::nonNull).distinct().map(ResponseCache::fruitsKey).forEach(keys::add);
+        invalidate(keys);
+    }
+
+    public void providersChanged() {
+        invalidate(List.of(PROVIDERS));
+    }
+
+    public void providerRemoved(Long id) {
+        invalidate(List.of(PROVIDERS, fruitsKey(id)));
+    }
+
+    // cache.gets/puts/evictions/size{cache="responses"} on the metrics endpoint
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "responses");
+        Gauge.builder("response.cache.bytes", cache, c -> c.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Encoded bytes held by the response cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private EncodedResponse get(String key, String eTag, Supplier<? extends List<?>> rows) {
+        if (properties.enabled()) {
+            EncodedResponse cached = cache.getIfPresent(key);
+            if (cached != null && cached.eTag().equals(eTag)) {
+                return cached;
+            }
+        }
+
+        long invalidationsBefore = invalidations.get();
+        EncodedResponse encoded = encode(eTag, rows.get());
+        if (properties.enabled() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            // an invalidation since the rows were read means they may predate the write that caused it
+            cache.asMap().compute(key, (k, existing) -> invalidations.get() == invalidationsBefore ? encoded : existing);
+        }
+        return encoded;
+    }
+
+    private void invalidate(List<String> keys) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet();
+            cache.invalidateAll(keys);
+        });
+    }
+
+    private EncodedResponse encode(String eTag, List<?> rows) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(rows);
+            return new EncodedResponse(eTag, json, properties.gzip() && json.length >= gzipMinSize ? gzip(json) : null);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    private static String fruitsKey(Long providerId) {
+        return providerId == null ? ALL_FRUITS : ALL_FRUITS + "?providerId=" + providerId;
+    }
+}
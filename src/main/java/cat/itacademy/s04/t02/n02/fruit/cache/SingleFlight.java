@@ -0,0 +1,104 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.TransactionHooks.afterCommit;
+
+/**
+ * Coalesces identical concurrent reads: the first caller for a key runs the query in its own
+ * read-only transaction, and callers asking for the same key meanwhile wait for that result instead
+ * of running the query again. Nothing is kept once the query returns, so this is not a cache.
+ * <p>
+ * Keys belong to a scope ({@link #FRUITS}, {@link #PROVIDERS}). A write calls {@link #fence}
+ * for its scope; once it commits, reads already in flight no longer take new callers, so a caller
+ * arriving after the commit always starts a query that sees it. Reads inside a transaction bypass
+ * the coalescing, since they must see that transaction's own writes.
+ * <p>
+ * Results are handed to every waiting caller, so they must not be modified.
+ */
+@Component
+@Profile("!reactive")
+public class SingleFlight implements MeterBinder {
+
+    public static final String FRUITS = "fruits";
+    public static final String PROVIDERS = "providers";
+
+    private final TransactionTemplate readOnly;
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    public SingleFlight(PlatformTransactionManager transactionManager) {
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String key, Supplier<T> query) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+
+        Key flightKey = new Key(scope, key);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> flight = inFlight.putIfAbsent(flightKey, mine);
+        if (flight != null) {
+            followers.incrementAndGet();
+            try {
+                return (T) flight.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+            }
+        }
+
+        leaders.incrementAndGet();
+        try {
+            T result = readOnly.execute(status -> query.get());
+            // removed before completing, so nobody joins a flight whose result is already out
+            inFlight.remove(flightKey, mine);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(flightKey, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Once the current transaction commits (right away without one), detaches every read of the
+     * scope still in flight: its callers get the result they were waiting for, later callers run a
+     * new query.
+     */
+    public void fence(String scope) {
+        afterCommit(() -> inFlight.keySet().removeIf(key -> key.scope().equals(scope)));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("single.flight.calls", leaders, AtomicLong::get)
+                .description("Reads that ran their query")
+                .tag("role", "leader")
+                .register(registry);
+        FunctionCounter.builder("single.flight.calls", followers, AtomicLong::get)
+                .description("Reads answered by a query already in flight")
+                .tag("role", "follower")
+                .register(registry);
+    }
+
+    private record Key(String scope, String key) {}
+}
@@ -0,0 +1,351 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Trigram inverted index over names. Every name gets a dense document number; each trigram maps to
+ * a sorted {@code int[]} of the documents containing it, so a million names cost a few int arrays
+ * instead of millions of boxed entries.
+ * <p>
+ * Removing a name only marks its document dead; postings are filtered when dead documents
+ * outnumber live ones. Not thread-safe: {@link FruitNameIndex} guards it.
+ */
+final class TrigramIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_COMPACTION = 1024;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final LongIntMap docById = new LongIntMap();
+
+    // per document number; names[doc] == null marks a removed document
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private int[] trigramCounts = new int[1024];
+    private int docs;
+    private int live;
+
+    int size() {
+        return live;
+    }
+
+    void put(long id, String name) {
+        remove(id);
+        long[] trigrams = trigrams(normalize(name), true);
+        if (docs == ids.length) {
+            int capacity = docs + (docs >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            trigramCounts = Arrays.copyOf(trigramCounts, capacity);
+        }
+        int doc = docs++;
+        ids[doc] = id;
+        names[doc] = name;
+        trigramCounts[doc] = trigrams.length;
+        // doc is the highest number so far, so appending keeps every posting list sorted
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).append(doc);
+        }
+        docById.put(id, doc);
+        live++;
+    }
+
+    void remove(long id) {
+        int doc = docById.remove(id);
+        if (doc < 0) {
+            return;
+        }
+        names[doc] = null;
+        live--;
+        if (docs - live > Math.max(live, MIN_COMPACTION)) {
+            compact();
+        }
+    }
+
+    /**
+     * Names sharing at least {@code minSimilarity} of the query's trigrams, best first. The query is
+     * treated as a prefix being typed, so its last characters are not anchored to the end of a word.
+     * At most {@code maxCandidates} documents are scored, which bounds the cost of short or very
+     * common queries; past that budget later documents are not considered.
+     */
+    List<FruitSuggestionDTO> search(String query, int limit, double minSimilarity, int maxCandidates) {
+        long[] trigrams = trigrams(normalize(query), false);
+        int m = trigrams.length;
+        if (m == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        Postings[] lists = new Postings[m];
+        for (int i = 0; i < m; i++) {
+            lists[i] = postings.getOrDefault(trigrams[i], Postings.EMPTY);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        // A document sharing at least `required` trigrams must appear in one of the m - required + 1
+        // shortest lists, so only those are scanned for candidates; every list is then probed for the count.
+        int required = Math.max(1, (int) Math.ceil(minSimilarity * m - 1e-9));
+        int[] candidates = collectCandidates(lists, m - required + 1, maxCandidates);
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Hit.RANKING);
+        // candidates are sorted, so each list is searched from where the previous candidate was found
+        int[] from = new int[m];
+        for (int doc : candidates) {
+            if (names[doc] == null) {
+                continue;
+            }
+            int shared = 0;
+            for (int i = 0; i < m && shared + (m - i) >= required; i++) {
+                int at = lists[i].find(doc, from[i]);
+                from[i] = at >= 0 ? at + 1 : -at - 1;
+                if (at >= 0) {
+                    shared++;
+                }
+            }
+            if (shared < required) {
+                continue;
+            }
+            double jaccard = (double) shared / (m + trigramCounts[doc] - shared);
+            Hit hit = new Hit(doc, (double) shared / m, jaccard, names[doc]);
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (Hit.RANKING.compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        List<FruitSuggestionDTO> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Hit hit = best.poll();
+            result.add(new FruitSuggestionDTO(ids[hit.doc], hit.name, hit.similarity));
+        }
+        return result.reversed();
+    }
+
+    /**
+     * Union of the first {@code count} lists in document order, merged rather than sorted, stopping
+     * after {@code maxCandidates} documents.
+     */
+    private static int[] collectCandidates(Postings[] lists, int count, int maxCandidates) {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += lists[i].size;
+        }
+        int[] candidates = new int[Math.min(total, maxCandidates)];
+        int[] heads = new int[count];
+        int n = 0;
+        while (n < candidates.length) {
+            int next = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                if (heads[i] < lists[i].size) {
+                    next = Math.min(next, lists[i].docs[heads[i]]);
+                }
+            }
+            if (next == Integer.MAX_VALUE) {
+                break;
+            }
+            candidates[n++] = next;
+            for (int i = 0; i < count; i++) {
+                if (heads[i] < lists[i].size && lists[i].docs[heads[i]] == next) {
+                    heads[i]++;
+                }
+            }
+        }
+        return n == candidates.length ? candidates : Arrays.copyOf(candidates, n);
+    }
+
+    /**
+     * Renumbers the live documents densely. The mapping keeps their order, so posting lists only need
+     * the dead entries filtered out to stay sorted.
+     */
+    private void compact() {
+        int[] renumbered = new int[docs];
+        int next = 0;
+        for (int doc = 0; doc < docs; doc++) {
+            if (names[doc] == null) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = next;
+            ids[next] = ids[doc];
+            names[next] = names[doc];
+            trigramCounts[next] = trigramCounts[doc];
+            docById.put(ids[next], next);
+            next++;
+        }
+        Arrays.fill(names, next, docs, null);
+        docs = next;
+        postings.values().removeIf(list -> list.renumber(renumbered) == 0);
+    }
+
+    static String normalize(String text) {
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+    }
+
+    /**
+     * Distinct trigrams of each word, padded with two leading blanks and, for indexed names, one
+     * trailing blank (as PostgreSQL's pg_trgm does), each packed as three 16-bit chars in a long.
+     */
+    static long[] trigrams(String normalized, boolean padEnd) {
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        String[] words = normalized.split(" ");
+        long[] found = new long[normalized.length() + 2 * words.length];
+        int n = 0;
+        for (String word : words) {
+            String padded = "  " + word + (padEnd ? " " : "");
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                found[n++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+        Arrays.sort(found, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || found[unique - 1] != found[i]) {
+                found[unique++] = found[i];
+            }
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    private record Hit(int doc, double similarity, double jaccard, String name) {
+
+        // worst first, so the queue head is the one to drop when it holds more than the limit
+        static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::similarity)
+                .thenComparingDouble(Hit::jaccard)
+                .thenComparing(Hit::name, Comparator.reverseOrder());
+    }
+
+    private static final class Postings {
+
+        static final Postings EMPTY = new Postings();
+
+        private int[] docs = new int[4];
+        private int size;
+
+        void append(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            }
+            docs[size++] = doc;
+        }
+
+        /**
+         * Index of {@code doc} at or after {@code from}, or {@code -(insertion point) - 1}, like
+         * {@link Arrays#binarySearch}. Gallops first, so nearby targets cost a few comparisons.
+         */
+        int find(int doc, int from) {
+            int low = from;
+            int step = 1;
+            int high = from;
+            while (high < size && docs[high] < doc) {
+                low = high + 1;
+                high = from + step;
+                step <<= 1;
+            }
+            return Arrays.binarySearch(docs, low, Math.min(high + 1, size), doc);
+        }
+
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept++] = doc;
+                }
+            }
+            size = kept;
+            if (docs.length > 2 * size + 4) {
+                docs = Arrays.copyOf(docs, size);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Open-addressing map from fruit id to document number, without boxing. Ids are positive, so 0
+     * marks an empty slot.
+     */
+    private static final class LongIntMap {
+
+        private long[] keys = new long[2048];
+        private int[] values = new int[2048];
+        private int size;
+
+        void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                resize(keys.length * 2);
+            }
+            int slot = slot(key, keys);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        /**
+         * Returns the removed value, or -1 if the key was absent.
+         */
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int slot = slot(key, keys);
+            while (keys[slot] != key) {
+                if (keys[slot] == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int removed = values[slot];
+            // backward-shift deletion keeps every probe chain unbroken without tombstones
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (keys[next] != 0) {
+                int home = slot(keys[next], keys);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = 0;
+            size--;
+            return removed;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, long[] keys) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+        }
+    }
+}
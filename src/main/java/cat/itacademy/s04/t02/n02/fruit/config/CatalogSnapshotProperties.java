@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param enabled whether {@code GET /fruits} and {@code GET /providers} are answered from an
+ *                in-memory copy of the catalog instead of the database
+ */
+@ConfigurationProperties(prefix = "fruit.snapshot")
+public record CatalogSnapshotProperties(@DefaultValue("false") boolean enabled) {
+}
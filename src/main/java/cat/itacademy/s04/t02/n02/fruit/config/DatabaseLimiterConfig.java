@@ -0,0 +1,49 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ConcurrencyLimitingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Puts a {@link ConcurrencyLimitingDataSource} in front of the pool unless
+ * {@code fruit.datasource.limiter.enabled=false}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DatabaseLimiterConfig {
+
+    @Bean
+    static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(ObjectProvider<DatabaseLimiterProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitingDataSource) {
+                    return bean;
+                }
+                DatabaseLimiterProperties limiter = properties.getObject();
+                if (!limiter.enabled()) {
+                    return bean;
+                }
+                int maxConcurrent = limiter.maxConcurrent() != null ? limiter.maxConcurrent() : defaultMaxConcurrent(dataSource);
+                return new ConcurrencyLimitingDataSource(dataSource, maxConcurrent, limiter.maxQueued(), limiter.maxWait());
+            }
+        };
+    }
+
+    // one connection short of the pool, for the ids Hibernate allocates on a connection of their own
+    private static int defaultMaxConcurrent(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return Math.max(1, dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() - 1);
+            }
+        } catch (SQLException ex) {
+            // fall through to the Hikari default
+        }
+        return 9;
+    }
+}
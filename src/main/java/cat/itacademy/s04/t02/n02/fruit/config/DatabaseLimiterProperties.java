@@ -0,0 +1,18 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param maxConcurrent connections handed out at once; defaults to the Hikari pool size minus one
+ * @param maxQueued     callers allowed to wait for a permit before new ones are rejected straight away
+ * @param maxWait       how long a queued caller waits before giving up
+ */
+@ConfigurationProperties(prefix = "fruit.datasource.limiter")
+public record DatabaseLimiterProperties(@DefaultValue("true") boolean enabled,
+                                        Integer maxConcurrent,
+                                        @DefaultValue("200") int maxQueued,
+                                        @DefaultValue("2s") Duration maxWait) {
+}
@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param chunkSize          rows inserted per transaction; the persistence context is cleared after each
+ * @param maxReportedErrors  failed rows listed in the response, the others are only counted
+ * @param maxRecordLength    characters one CSV record may span before the rest of the file is rejected
+ */
+@ConfigurationProperties(prefix = "fruit.import")
+public record FruitImportProperties(@DefaultValue("1000") int chunkSize,
+                                    @DefaultValue("1000") int maxReportedErrors,
+                                    @DefaultValue("65536") int maxRecordLength) {
+}
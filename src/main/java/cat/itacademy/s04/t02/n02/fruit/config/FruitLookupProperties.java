@@ -0,0 +1,19 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param batchingEnabled whether concurrent {@code GET /fruits/{id}} lookups are merged into one query
+ * @param batchWindow     how long a batch opened while a query runs waits for that query at most
+ * @param maxBatchSize    distinct ids per batch; a full batch is sent without waiting out the window
+ * @param maxIds          ids accepted by one {@code GET /fruits?ids=} call
+ */
+@ConfigurationProperties(prefix = "fruit.lookup")
+public record FruitLookupProperties(@DefaultValue("true") boolean batchingEnabled,
+                                    @DefaultValue("2ms") Duration batchWindow,
+                                    @DefaultValue("100") int maxBatchSize,
+                                    @DefaultValue("500") int maxIds) {
+}
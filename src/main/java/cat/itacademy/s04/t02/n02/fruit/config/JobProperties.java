@@ -0,0 +1,24 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param workers        jobs run at once, each on a worker thread of its own
+ * @param queueCapacity  jobs waiting for a worker; a submission beyond it is refused with a 429
+ * @param chunkSize      items applied per transaction
+ * @param maxItems       items one job may carry
+ * @param maxQueuedItems items the queued and running jobs may hold in memory together, at least
+ *                       {@code maxItems}; a submission beyond it is refused with a 429
+ * @param retention      how long a finished job can still be looked up
+ */
+@ConfigurationProperties(prefix = "fruit.jobs")
+public record JobProperties(@DefaultValue("2") int workers,
+                            @DefaultValue("16") int queueCapacity,
+                            @DefaultValue("500") int chunkSize,
+                            @DefaultValue("1000000") int maxItems,
+                            @DefaultValue("1000000") long maxQueuedItems,
+                            @DefaultValue("1h") Duration retention) {
+}
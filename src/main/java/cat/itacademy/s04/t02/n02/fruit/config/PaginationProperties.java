@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "fruit.pagination")
+public record PaginationProperties(@DefaultValue("500") int maxLimit) {
+
+    public int clamp(int requestedLimit) {
+        return Math.clamp(requestedLimit, 1, maxLimit);
+    }
+}
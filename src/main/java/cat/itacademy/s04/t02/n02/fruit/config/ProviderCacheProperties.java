@@ -0,0 +1,11 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "fruit.cache.providers")
+public record ProviderCacheProperties(@DefaultValue("10000") long maximumSize,
+                                      @DefaultValue("10m") Duration timeToLive) {
+}
@@ -0,0 +1,18 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param enabled     whether encoded list responses are kept between requests
+ * @param maximumSize total bytes held, JSON and gzip copies included
+ * @param gzip        whether a gzip copy is kept for clients that accept it
+ * @param gzipMinSize bodies smaller than this are only kept as plain JSON
+ */
+@ConfigurationProperties(prefix = "fruit.response-cache")
+public record ResponseCacheProperties(@DefaultValue("true") boolean enabled,
+                                      @DefaultValue("32MB") DataSize maximumSize,
+                                      @DefaultValue("true") boolean gzip,
+                                      @DefaultValue("1KB") DataSize gzipMinSize) {
+}
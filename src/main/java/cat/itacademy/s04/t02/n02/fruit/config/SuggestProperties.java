@@ -0,0 +1,14 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "fruit.suggest")
+public record SuggestProperties(@DefaultValue("0.5") double minSimilarity,
+                                @DefaultValue("5000") int maxCandidates,
+                                @DefaultValue("50") int maxLimit) {
+
+    public int clamp(int requestedLimit) {
+        return Math.clamp(requestedLimit, 1, maxLimit);
+    }
+}
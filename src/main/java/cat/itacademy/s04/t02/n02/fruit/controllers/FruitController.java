@@ -1,48 +1,170 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.EncodedResponse;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.dto.BulkResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitAdjustRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkUpdateRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportResultDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSort;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SnapshotCheckDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidSearchException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ETagMapper;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitExportService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitImportService;
 import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/fruits")
 @RequiredArgsConstructor
+@Profile("!reactive")
+@Timed("controller.invocations")
 public class FruitController {
 
     private final FruitService service;
+    private final FruitExportService exportService;
+    private final FruitImportService importService;
+    private final ResponseCache responses;
 
     @PostMapping
     public ResponseEntity<FruitResponseDTO> createFruit(@Valid @RequestBody FruitRequestDTO request) {
         FruitResponseDTO response = service.createFruit(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETagMapper.toETag(response.version())).body(response);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<FruitResponseDTO>> createFruits(@Valid @RequestBody FruitBatchRequestDTO request) {
+        List<FruitResponseDTO> response = service.createFruits(request.items());
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // the request body is parsed as it arrives, never held whole
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<FruitImportResultDTO> importFruits(InputStream csv) throws IOException {
+        return ResponseEntity.ok(importService.importFruits(csv));
+    }
+
+    // the container spools the part to disk, from where it is read the same way
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FruitImportResultDTO> importFruits(@RequestParam MultipartFile file) throws IOException {
+        try (InputStream csv = file.getInputStream()) {
+            return ResponseEntity.ok(importService.importFruits(csv));
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<FruitResponseDTO> getFruitById(@PathVariable Long id) {
         FruitResponseDTO response = service.getFruitById(id);
-        return ResponseEntity.ok(response);
+        // a matching If-None-Match turns this into a 304 before the body is written
+        return ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response);
     }
 
     @GetMapping
-    public ResponseEntity<List<FruitResponseDTO>> getFruits(@RequestParam(required = false) Long providerId) {
-        List<FruitResponseDTO> response = (providerId == null)
-                ? service.getAllFruits()
-                : service.getFruitsByProviderId(providerId);
+    public ResponseEntity<byte[]> getFruits(@RequestParam(required = false) Long providerId, WebRequest webRequest,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String eTag = ETagMapper.toETag(service.getFruitsVersion(providerId));
+        String heldETag = EncodedResponse.heldETag(eTag, webRequest.getHeader(HttpHeaders.IF_NONE_MATCH));
+        if (heldETag != null && webRequest.checkNotModified(heldETag)) {
+            // 304 already set: the list is neither loaded nor serialized
+            return null;
+        }
 
+        // the encoded body is reused while the list stays at this ETag, and written out as it is
+        return responses.fruits(providerId, eTag, () -> (providerId == null)
+                        ? service.getAllFruits()
+                        : service.getFruitsByProviderId(providerId))
+                .toResponseEntity(acceptEncoding);
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<FruitResponseDTO>> getFruitsByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(service.getFruitsByIds(ids));
+    }
+
+    // matches both handlers above and below, which Spring would report as ambiguous (a 500)
+    @GetMapping(params = {"ids", "limit"})
+    public ResponseEntity<Void> getFruitsByIdsPage() {
+        throw new InvalidSearchException("ids and limit cannot be combined: the listed fruits come back in one response");
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPageResponseDTO<FruitResponseDTO>> getFruitsPage(@RequestParam(required = false) Long providerId,
+                                                                                @RequestParam(required = false) String after,
+                                                                                @RequestParam int limit) {
+        CursorPageResponseDTO<FruitResponseDTO> response = service.getFruitsPage(providerId, after, limit);
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageResponseDTO<FruitResponseDTO>> searchFruits(@RequestParam(required = false) String name,
+                                                                               @RequestParam(required = false) Integer minKg,
+                                                                               @RequestParam(required = false) Integer maxKg,
+                                                                               @RequestParam(required = false) List<Long> providerId,
+                                                                               @RequestParam(required = false) String country,
+                                                                               @RequestParam(required = false) String sort,
+                                                                               @RequestParam(required = false) String after,
+                                                                               @RequestParam(defaultValue = "50") int limit) {
+        FruitSearchCriteria criteria = new FruitSearchCriteria(name, minKg, maxKg, providerId, country, FruitSort.parse(sort));
+        return ResponseEntity.ok(service.searchFruits(criteria, after, limit));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<FruitSuggestionDTO>> suggestFruits(@RequestParam String q,
+                                                                  @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(service.suggestFruits(q, limit));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFruits() {
+        StreamingResponseBody body = exportService::exportFruits;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // compares the in-memory catalog snapshot with the database; 409 when the snapshot is off
+    @GetMapping("/snapshot-check")
+    public ResponseEntity<SnapshotCheckDTO> checkSnapshot() {
+        return ResponseEntity.ok(service.checkSnapshot());
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<FruitResponseDTO> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request) {
-        FruitResponseDTO response = service.updateFruit(id, request);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<FruitResponseDTO> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        FruitResponseDTO response = service.updateFruit(id, request, ETagMapper.toExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response);
+    }
+
+    @PostMapping("/{id}/adjust")
+    public ResponseEntity<FruitResponseDTO> adjustFruit(@PathVariable Long id, @Valid @RequestBody FruitAdjustRequestDTO request) {
+        FruitResponseDTO response = service.adjustFruit(id, request.deltaKilos());
+        return ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response);
+    }
+
+    @PatchMapping
+    public ResponseEntity<BulkResultDTO> updateFruits(@Valid @RequestBody FruitBulkUpdateRequestDTO request) {
+        return ResponseEntity.ok(service.updateFruits(request.where(), request.set()));
     }
 
     @DeleteMapping("/{id}")
@@ -50,4 +172,10 @@ public class FruitController {
         service.deleteFruit(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    @DeleteMapping
+    public ResponseEntity<BulkResultDTO> deleteFruits(@RequestParam(required = false) List<Long> ids,
+                                                      @RequestParam(required = false) Long providerId) {
+        return ResponseEntity.ok(service.deleteFruits(new FruitFilterDTO(ids, providerId)));
+    }
+}
@@ -0,0 +1,35 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.JobRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobStatusDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.JobService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+@Profile("!reactive")
+@Timed("controller.invocations")
+public class JobController {
+
+    private final JobService service;
+
+    // 202 once the job is queued; its progress is then polled at the Location
+    @PostMapping
+    public ResponseEntity<JobStatusDTO> submitJob(@Valid @RequestBody JobRequestDTO request) {
+        JobStatusDTO job = service.submit(request);
+        return ResponseEntity.accepted().location(URI.create("/jobs/" + job.id())).body(job);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobStatusDTO> getJob(@PathVariable String id) {
+        return ResponseEntity.ok(service.getJob(id));
+    }
+}
@@ -1,39 +1,105 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.EncodedResponse;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.dto.CacheStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderInclude;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.StockStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidIncludeException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ETagMapper;
 import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
 @RestController
 @RequestMapping("/providers")
 @RequiredArgsConstructor
+@Profile("!reactive")
+@Timed("controller.invocations")
 public class ProviderController {
 
     private final ProviderService providerService;
+    private final ResponseCache responses;
 
     @PostMapping
     public ResponseEntity<ProviderResponseDTO> createProvider(@Valid @RequestBody ProviderRequestDTO request) {
         ProviderResponseDTO response = providerService.createProvider(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETagMapper.toETag(response.version())).body(response);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<ProviderResponseDTO>> createProviders(@Valid @RequestBody ProviderBatchRequestDTO request) {
+        List<ProviderResponseDTO> response = providerService.createProviders(request.items());
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     @GetMapping
-    public ResponseEntity<List<ProviderResponseDTO>> getAllProviders() {
-        List<ProviderResponseDTO> response = providerService.getAllProviders();
+    public ResponseEntity<byte[]> getAllProviders(WebRequest webRequest,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String eTag = ETagMapper.toETag(providerService.getProvidersVersion());
+        String heldETag = EncodedResponse.heldETag(eTag, webRequest.getHeader(HttpHeaders.IF_NONE_MATCH));
+        if (heldETag != null && webRequest.checkNotModified(heldETag)) {
+            return null;
+        }
+
+        return responses.providers(eTag, providerService::getAllProviders).toResponseEntity(acceptEncoding);
+    }
+
+    // each provider with its fruits and/or totals, e.g. include=fruits,counts, instead of one call per provider
+    @GetMapping(params = "include")
+    public ResponseEntity<List<ProviderDetailsDTO>> getProvidersWithDetails(@RequestParam String include) {
+        return ResponseEntity.ok(providerService.getProviders(ProviderInclude.parse(include)));
+    }
+
+    // the details are not paged; without this mapping both handlers would match
+    @GetMapping(params = {"include", "limit"})
+    public ResponseEntity<Void> getProvidersWithDetailsPage() {
+        throw new InvalidIncludeException("include and limit cannot be combined: the details list is not paged");
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPageResponseDTO<ProviderResponseDTO>> getProvidersPage(@RequestParam(required = false) String after,
+                                                                                      @RequestParam int limit) {
+        CursorPageResponseDTO<ProviderResponseDTO> response = providerService.getProvidersPage(after, limit);
         return ResponseEntity.ok(response);
     }
 
+    // answered from ProviderStatsAggregate, without a database round trip
+    @GetMapping("/stats")
+    public ResponseEntity<StockStatsDTO> getStockStats() {
+        return ResponseEntity.ok(providerService.getStockStats());
+    }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ProviderStatsDTO> getProviderStockStats(@PathVariable Long id) {
+        return ResponseEntity.ok(providerService.getStockStats(id));
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<CacheStatsDTO> getCacheStats() {
+        return ResponseEntity.ok(providerService.getCacheStats());
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<ProviderResponseDTO> updateProvider(@PathVariable Long id, @Valid @RequestBody ProviderRequestDTO request) {
-        ProviderResponseDTO response = providerService.updateProvider(id, request);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<ProviderResponseDTO> updateProvider(@PathVariable Long id, @Valid @RequestBody ProviderRequestDTO request,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ProviderResponseDTO response = providerService.updateProvider(id, request, ETagMapper.toExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response);
     }
 
     @DeleteMapping("/{id}")
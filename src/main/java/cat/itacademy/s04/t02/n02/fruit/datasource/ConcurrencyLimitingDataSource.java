@@ -0,0 +1,143 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds how many connections are out at once with a fair semaphore, so that excess requests wait
+ * in a short queue here or are rejected immediately, instead of piling up inside the pool until its
+ * 30 second timeout. This matters most with virtual threads, where the request thread count is no
+ * longer what limits concurrency.
+ * <p>
+ * A permit is held from {@code getConnection()} until the connection is closed. A thread that
+ * already holds one, for example while Hibernate allocates ids on a separate connection, skips the
+ * semaphore, so keep {@code maxConcurrent} below the pool size to leave room for those.
+ */
+public class ConcurrencyLimitingDataSource extends DelegatingDataSource implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+
+    private final ThreadLocal<AtomicInteger> heldByThread = ThreadLocal.withInitial(AtomicInteger::new);
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    public ConcurrencyLimitingDataSource(DataSource target, int maxConcurrent, int maxQueued, Duration maxWait) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return limit(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return limit(() -> super.getConnection(username, password));
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("db.limiter.active", permits, semaphore -> maxConcurrent - semaphore.availablePermits())
+                .description("Connections currently held through the limiter")
+                .register(registry);
+        Gauge.builder("db.limiter.waiting", waiting, AtomicInteger::get)
+                .description("Callers queued for a permit")
+                .register(registry);
+        FunctionCounter.builder("db.limiter.rejected", rejectedQueueFull, AtomicLong::get)
+                .tag("reason", "queue-full")
+                .register(registry);
+        FunctionCounter.builder("db.limiter.rejected", rejectedTimeout, AtomicLong::get)
+                .tag("reason", "timeout")
+                .register(registry);
+    }
+
+    private Connection limit(ConnectionSupplier supplier) throws SQLException {
+        AtomicInteger held = heldByThread.get();
+        if (held.get() > 0) {
+            return supplier.get();
+        }
+
+        acquire();
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+        held.incrementAndGet();
+        return releasingOnClose(connection, held);
+    }
+
+    private void acquire() throws SQLException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            rejectedQueueFull.incrementAndGet();
+            throw new DatabaseBusyException("Database busy: " + maxQueued + " requests already waiting for a connection");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                rejectedTimeout.incrementAndGet();
+                throw new DatabaseBusyException("Database busy: no connection available within " + Duration.ofNanos(maxWaitNanos).toMillis() + " ms");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", ex);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private Connection releasingOnClose(Connection connection, AtomicInteger held) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    } finally {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            held.decrementAndGet();
+                            permits.release();
+                        }
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,13 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Raised instead of handing out a connection when the limiter is saturated. Hibernate and Spring
+ * treat it like any other failure to obtain a connection, which the API answers with a 503.
+ */
+public class DatabaseBusyException extends SQLTransientConnectionException {
+    public DatabaseBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,4 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+public record CacheStatsDTO(long size, long hitCount, long missCount, double hitRate, long evictionCount, boolean complete) {
+}
@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+/**
+ * Cheap fingerprint of a collection: every insert, update or delete changes at least one component.
+ */
+public record CollectionVersionDTO(Long count, Long idSum, Long versionSum) {
+}
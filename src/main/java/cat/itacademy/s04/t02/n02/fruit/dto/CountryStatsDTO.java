@@ -0,0 +1,4 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+public record CountryStatsDTO(String country, Long providerCount, Long fruitCount, Long totalKilos) {
+}
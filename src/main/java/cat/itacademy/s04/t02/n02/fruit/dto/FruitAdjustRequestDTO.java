@@ -0,0 +1,9 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * A signed change to a fruit's stock: positive to receive goods, negative to ship them.
+ */
+public record FruitAdjustRequestDTO(@NotNull(message = "Delta is required") Integer deltaKilos) {
+}
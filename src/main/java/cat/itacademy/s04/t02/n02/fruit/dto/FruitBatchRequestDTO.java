@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record FruitBatchRequestDTO(@NotEmpty(message = "Batch must contain at least one fruit") @Size(max = FruitBatchRequestDTO.MAX_ITEMS, message = "Batch must not contain more than " + FruitBatchRequestDTO.MAX_ITEMS + " fruits") List<@NotNull @Valid FruitRequestDTO> items) {
+    public static final int MAX_ITEMS = 10_000;
+}
@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+public record FruitBulkUpdateRequestDTO(@NotNull(message = "A filter is required") FruitFilterDTO where, @NotNull(message = "Changes are required") @Valid FruitChangesDTO set) {
+}
@@ -0,0 +1,9 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.constraints.Positive;
+
+/**
+ * The columns a bulk update sets on every matching fruit; null leaves a column as it is.
+ */
+public record FruitChangesDTO(@Positive(message = "Weight must be greater than zero") Integer weightInKilos, Long providerId) {
+}
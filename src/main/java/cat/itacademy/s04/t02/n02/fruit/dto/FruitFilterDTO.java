@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+/**
+ * Which fruits a bulk update or delete applies to: the listed ids, the fruits of one provider, or
+ * (when both are set) the listed ids that belong to that provider.
+ */
+public record FruitFilterDTO(List<Long> ids, Long providerId) {
+    public static final int MAX_IDS = 10_000;
+
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+}
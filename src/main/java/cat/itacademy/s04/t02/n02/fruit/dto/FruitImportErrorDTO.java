@@ -0,0 +1,10 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.Map;
+
+/**
+ * Why the record starting on {@code line} of an imported CSV was skipped, by column, as the
+ * validation errors of {@code POST /fruits} are reported.
+ */
+public record FruitImportErrorDTO(long line, Map<String, String> errors) {
+}
@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of {@code POST /fruits/import}: {@code rows} records read, of which {@code imported} were
+ * inserted and {@code failed} were skipped. Only the first {@code fruit.import.max-reported-errors}
+ * failures are listed; {@code errorsTruncated} tells whether more were left out.
+ */
+public record FruitImportResultDTO(long rows, long imported, long failed, List<FruitImportErrorDTO> errors,
+                                   boolean errorsTruncated) {
+}
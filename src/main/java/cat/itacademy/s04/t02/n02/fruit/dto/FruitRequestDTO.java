@@ -3,6 +3,7 @@ package cat.itacademy.s04.t02.n02.fruit.dto;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 
-public record FruitRequestDTO( @NotBlank(message = "Name must not be blank") String name, @NotNull(message = "Weight is required") @Positive(message = "Weight must be greater than zero") Integer weightInKilos, @NotNull(message = "Must attach a provider") Long providerId) {
+public record FruitRequestDTO( @NotBlank(message = "Name must not be blank") @Size(max = 255, message = "Name must be at most 255 characters") String name, @NotNull(message = "Weight is required") @Positive(message = "Weight must be greater than zero") Integer weightInKilos, @NotNull(message = "Must attach a provider") Long providerId) {
 }
@@ -0,0 +1,10 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+/**
+ * Filters of {@code GET /fruits/search}; a null (or empty) filter is not applied.
+ */
+public record FruitSearchCriteria(String namePrefix, Integer minKg, Integer maxKg, List<Long> providerIds,
+                                  String country, FruitSort sort) {
+}
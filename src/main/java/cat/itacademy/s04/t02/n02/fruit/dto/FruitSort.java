@@ -0,0 +1,61 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidSearchException;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Sort order of {@code GET /fruits/search}, written as {@code field} or {@code field,asc|desc}.
+ * Ties are always broken by id in the same direction, so every order is total and can be paged
+ * with a keyset cursor.
+ */
+public record FruitSort(Field field, boolean descending) {
+
+    public static final FruitSort DEFAULT = new FruitSort(Field.ID, false);
+
+    public enum Field {
+        ID("id", FruitResponseDTO::id),
+        NAME("name", FruitResponseDTO::name),
+        WEIGHT("weightInKilos", FruitResponseDTO::weightInKilos);
+
+        private final String param;
+        private final Function<FruitResponseDTO, Object> valueOf;
+
+        Field(String param, Function<FruitResponseDTO, Object> valueOf) {
+            this.param = param;
+            this.valueOf = valueOf;
+        }
+
+        public Object valueOf(FruitResponseDTO row) {
+            return valueOf.apply(row);
+        }
+    }
+
+    public static FruitSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT;
+        }
+        String[] parts = value.split(",", -1);
+        Field field = Arrays.stream(Field.values())
+                .filter(candidate -> candidate.param.equals(parts[0].strip()))
+                .findFirst()
+                .orElseThrow(() -> new InvalidSearchException("Unknown sort field: " + parts[0]));
+        if (parts.length == 1) {
+            return new FruitSort(field, false);
+        }
+        return switch (parts.length == 2 ? parts[1].strip().toLowerCase(Locale.ROOT) : "") {
+            case "asc" -> new FruitSort(field, false);
+            case "desc" -> new FruitSort(field, true);
+            default -> throw new InvalidSearchException("Invalid sort: " + value);
+        };
+    }
+
+    /**
+     * Canonical form, also stored in search cursors so a cursor cannot be replayed under another sort.
+     */
+    public String key() {
+        return field.param + (descending ? ",desc" : ",asc");
+    }
+}
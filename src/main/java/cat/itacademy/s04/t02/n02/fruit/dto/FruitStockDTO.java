@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+/**
+ * What a fruit contributes to its provider's stock totals.
+ */
+public record FruitStockDTO(Long providerId, Integer weightInKilos) {
+}
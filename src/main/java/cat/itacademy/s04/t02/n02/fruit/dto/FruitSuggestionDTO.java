@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+/**
+ * A {@code GET /fruits/suggest} match; {@code similarity} is the share of the query's trigrams found in the name.
+ */
+public record FruitSuggestionDTO(Long id, String name, double similarity) {
+}
@@ -0,0 +1,11 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A chunk of a job that was rolled back, with the positions of the first and last items it held in
+ * the request (absent for a chunk selecting fruits by provider only) and why it failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JobChunkErrorDTO(int chunk, Integer firstItem, Integer lastItem, String error) {
+}
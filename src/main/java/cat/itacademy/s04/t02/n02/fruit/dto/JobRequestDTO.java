@@ -0,0 +1,20 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * Body of {@code POST /jobs}. {@code type} picks the operation and the fields it reads:
+ * {@code createFruits} the {@code fruits}, {@code createProviders} the {@code providers},
+ * {@code updateFruits} {@code where} and {@code set} as {@code PATCH /fruits} does, and
+ * {@code deleteFruits} {@code where}.
+ */
+public record JobRequestDTO(@NotBlank(message = "A job type is required") String type,
+                            List<@NotNull @Valid FruitRequestDTO> fruits,
+                            List<@NotNull @Valid ProviderRequestDTO> providers,
+                            FruitFilterDTO where,
+                            @Valid FruitChangesDTO set) {
+}
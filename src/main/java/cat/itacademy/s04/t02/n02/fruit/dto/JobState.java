@@ -0,0 +1,17 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+/**
+ * Where a bulk job is: waiting for a worker, running, or finished with every chunk applied, only
+ * some of them, or none.
+ */
+public enum JobState {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    PARTIALLY_FAILED,
+    FAILED;
+
+    public boolean finished() {
+        return this != QUEUED && this != RUNNING;
+    }
+}
@@ -0,0 +1,17 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of a bulk job as {@code GET /jobs/{id}} reports it. {@code progress} is the share of
+ * chunks done (applied or failed), {@code itemsPerSecond} the items processed per second of running
+ * time, and {@code affectedRows} the rows the applied chunks created, updated or deleted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JobStatusDTO(String id, JobType type, JobState state, int totalChunks, int completedChunks, int failedChunks,
+                           long processedItems, long affectedRows, double progress, double itemsPerSecond,
+                           Instant submittedAt, Instant startedAt, Instant finishedAt, List<JobChunkErrorDTO> errors) {
+}
@@ -0,0 +1,35 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Arrays;
+
+/**
+ * The bulk operations {@code POST /jobs} runs, named in requests by their {@code param}.
+ */
+public enum JobType {
+    CREATE_FRUITS("createFruits"),
+    CREATE_PROVIDERS("createProviders"),
+    UPDATE_FRUITS("updateFruits"),
+    DELETE_FRUITS("deleteFruits");
+
+    private final String param;
+
+    JobType(String param) {
+        this.param = param;
+    }
+
+    @JsonValue
+    public String param() {
+        return param;
+    }
+
+    public static JobType parse(String value) {
+        return Arrays.stream(values())
+                .filter(type -> type.param.equals(value))
+                .findFirst()
+                .orElseThrow(() -> new InvalidBulkRequestException(
+                        "Unknown job type: " + value + " (expected createFruits, createProviders, updateFruits or deleteFruits)"));
+    }
+}
@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ProviderBatchRequestDTO(@NotEmpty(message = "Batch must contain at least one provider") @Size(max = ProviderBatchRequestDTO.MAX_ITEMS, message = "Batch must not contain more than " + ProviderBatchRequestDTO.MAX_ITEMS + " providers") List<@NotNull @Valid ProviderRequestDTO> items) {
+    public static final int MAX_ITEMS = 10_000;
+}
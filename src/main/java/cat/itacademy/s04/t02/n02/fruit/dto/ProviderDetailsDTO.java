@@ -0,0 +1,19 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A provider of {@code GET /providers?include=}: the counts and the fruits are only present when
+ * asked for.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProviderDetailsDTO(Long id, String name, String country, Long version,
+                                 Long fruitCount, Long totalKilos, List<FruitResponseDTO> fruits) {
+
+    // row of ProviderRepository#findAllDetailsWithCounts
+    public ProviderDetailsDTO(Long id, String name, String country, Long version, Long fruitCount, Long totalKilos) {
+        this(id, name, country, version, fruitCount, totalKilos, null);
+    }
+}
@@ -0,0 +1,29 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidIncludeException;
+
+import java.util.Locale;
+
+/**
+ * What {@code GET /providers?include=} embeds in each provider: {@code fruits}, {@code counts} or
+ * both, comma separated. An include naming neither is refused rather than read as the bare list.
+ */
+public record ProviderInclude(boolean fruits, boolean counts) {
+
+    public static ProviderInclude parse(String value) {
+        boolean fruits = false;
+        boolean counts = false;
+        for (String part : value.split(",")) {
+            switch (part.strip().toLowerCase(Locale.ROOT)) {
+                case "fruits" -> fruits = true;
+                case "counts" -> counts = true;
+                case "" -> { }
+                default -> throw new InvalidIncludeException("Unknown include: " + part.strip() + " (expected fruits and/or counts)");
+            }
+        }
+        if (!fruits && !counts) {
+            throw new InvalidIncludeException("Nothing to include (expected fruits and/or counts)");
+        }
+        return new ProviderInclude(fruits, counts);
+    }
+}
@@ -1,6 +1,7 @@
 package cat.itacademy.s04.t02.n02.fruit.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
-public record ProviderRequestDTO(@NotBlank(message = "Name must not be blank") String name, @NotBlank(message = "Country must not be blank") String country) {
+public record ProviderRequestDTO(@NotBlank(message = "Name must not be blank") @Size(max = 255, message = "Name must be at most 255 characters") String name, @NotBlank(message = "Country must not be blank") @Size(max = 255, message = "Country must be at most 255 characters") String country) {
 }
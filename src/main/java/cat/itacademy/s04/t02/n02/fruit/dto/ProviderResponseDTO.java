@@ -1,4 +1,4 @@
 package cat.itacademy.s04.t02.n02.fruit.dto;
 
-public record ProviderResponseDTO(Long id, String name, String country) {
+public record ProviderResponseDTO(Long id, String name, String country, Long version) {
 }
@@ -0,0 +1,13 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of comparing the catalog snapshot with the database. The id lists hold at most
+ * {@link #MAX_REPORTED_IDS} ids each: rows missing on either side or differing in any field.
+ */
+public record SnapshotCheckDTO(boolean consistent, long fruits, long providers,
+                               List<Long> mismatchedFruitIds, List<Long> mismatchedProviderIds) {
+
+    public static final int MAX_REPORTED_IDS = 100;
+}
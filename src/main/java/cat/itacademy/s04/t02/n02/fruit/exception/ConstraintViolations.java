@@ -0,0 +1,56 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+import io.r2dbc.spi.R2dbcException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Tells which constraint a {@link DataIntegrityViolationException} broke, from the SQL state and
+ * vendor code of the driver exception underneath (JDBC or R2DBC). Spring reports a value too long
+ * for its column or a NOT NULL violation as the same exception, and those are server errors, not
+ * a missing provider or a duplicate name.
+ */
+public final class ConstraintViolations {
+
+    private static final Set<String> UNIQUE_STATES = Set.of("23505");
+    private static final Set<String> FOREIGN_KEY_STATES = Set.of("23503", "23506");
+    // MySQL reports every integrity violation as 23000; the vendor code says which
+    private static final Set<Integer> MYSQL_UNIQUE_CODES = Set.of(1062, 1586);
+    private static final Set<Integer> MYSQL_FOREIGN_KEY_CODES = Set.of(1216, 1217, 1451, 1452);
+
+    private ConstraintViolations() {}
+
+    // take any Throwable so a reactive chain can use them as its onErrorMap predicate
+    public static boolean isUniqueKey(Throwable ex) {
+        return ex instanceof DataIntegrityViolationException && matches(ex, UNIQUE_STATES, MYSQL_UNIQUE_CODES);
+    }
+
+    public static boolean isForeignKey(Throwable ex) {
+        return ex instanceof DataIntegrityViolationException && matches(ex, FOREIGN_KEY_STATES, MYSQL_FOREIGN_KEY_CODES);
+    }
+
+    private static boolean matches(Throwable ex, Set<String> states, Set<Integer> mysqlCodes) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                for (SQLException next = sql; next != null; next = next.getNextException()) {
+                    if (matches(next.getSQLState(), next.getErrorCode(), states, mysqlCodes)) {
+                        return true;
+                    }
+                }
+            } else if (cause instanceof R2dbcException r2dbc
+                    && matches(r2dbc.getSqlState(), r2dbc.getErrorCode(), states, mysqlCodes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String sqlState, int errorCode, Set<String> states, Set<Integer> mysqlCodes) {
+        if (sqlState == null) {
+            return false;
+        }
+        return states.contains(sqlState) || ("23000".equals(sqlState) && mysqlCodes.contains(errorCode));
+    }
+}
@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class InvalidBulkRequestException extends RuntimeException {
+    public InvalidBulkRequestException(String message) {
+        super(message);
+    }
+}
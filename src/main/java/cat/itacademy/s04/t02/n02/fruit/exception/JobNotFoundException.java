@@ -0,0 +1,7 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class JobNotFoundException extends RuntimeException {
+    public JobNotFoundException(String id) {
+        super("Job not found with id: " + id);
+    }
+}
@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class TooManyJobsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyJobsException(int queuedJobs, long queuedItems, long retryAfterSeconds) {
+        super("Too many jobs waiting (" + queuedJobs + " jobs, " + queuedItems + " items), retry in " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,87 @@
+package cat.itacademy.s04.t02.n02.fruit.mapper;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+public final class CursorMapper {
+
+    private CursorMapper() {}
+
+    /**
+     * Position after a row in an order other than plain id: the id breaks ties on {@code value}.
+     */
+    public record Keyset(Long id, String value) {}
+
+    public static String encode(Long id) {
+        return encodeText(id.toString());
+    }
+
+    /**
+     * Returns the id the next page starts after, or 0 for the first page (ids are always positive).
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(decodeText(cursor));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    /**
+     * The cursor records the sort it was issued for, so {@code sort} must match to decode it.
+     */
+    public static String encodeKeyset(String sort, Long id, Object value) {
+        return encodeText(sort + "\n" + id + "\n" + value);
+    }
+
+    /**
+     * Returns the row the next page starts after, or null for the first page.
+     */
+    public static Keyset decodeKeyset(String cursor, String sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            // the value goes last and may itself contain line breaks
+            String[] parts = decodeText(cursor).split("\n", 3);
+            if (parts.length != 3 || !parts[0].equals(sort)) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new Keyset(Long.valueOf(parts[1]), parts[2]);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    /**
+     * Builds a page from a seek query that fetched {@code pageSize + 1} rows: the extra row only
+     * tells us whether there is a next page and is never returned.
+     */
+    public static <T> CursorPageResponseDTO<T> toPage(List<T> rows, int pageSize, Function<T, Long> idOf) {
+        return toPageWithCursor(rows, pageSize, row -> encode(idOf.apply(row)));
+    }
+
+    public static <T> CursorPageResponseDTO<T> toPageWithCursor(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new CursorPageResponseDTO<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new CursorPageResponseDTO<>(items, cursorOf.apply(items.get(pageSize - 1)));
+    }
+
+    private static String encodeText(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeText(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
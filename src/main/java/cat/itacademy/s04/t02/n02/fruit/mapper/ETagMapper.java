@@ -0,0 +1,36 @@
+package cat.itacademy.s04.t02.n02.fruit.mapper;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+
+public final class ETagMapper {
+
+    private ETagMapper() {}
+
+    public static String toETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static String toETag(CollectionVersionDTO version) {
+        return "\"" + version.count() + "-" + Long.toHexString(version.idSum()) + "-" + Long.toHexString(version.versionSum()) + "\"";
+    }
+
+    /**
+     * Returns the version an {@code If-Match} header asks for, or {@code null} when the header is
+     * absent or {@code *}. Anything that is not one of our strong ETags can never match.
+     */
+    public static Long toExpectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.strip();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new PreconditionFailedException("If-Match " + ifMatch + " does not match the current version");
+        }
+    }
+}
@@ -18,7 +18,12 @@ public final class FruitMapper {
                entity.getId(),
                entity.getName(),
                entity.getWeightInKilos(),
-               entity.getProvider().getId()
+               entity.getProvider().getId(),
+               entity.getVersion()
         );
     }
+
+    public static FruitResponseDTO toResponseDTO(Long id, FruitRequestDTO dto, long version) {
+        return new FruitResponseDTO(id, dto.name(), dto.weightInKilos(), dto.providerId(), version);
+    }
 }
@@ -1,9 +1,15 @@
 package cat.itacademy.s04.t02.n02.fruit.mapper;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderInclude;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 
+import java.util.List;
+
 public final class ProviderMapper {
 
     private ProviderMapper() {}
@@ -13,6 +19,32 @@ public final class ProviderMapper {
     }
 
     public static ProviderResponseDTO toResponseDTO(Provider entity) {
-        return new ProviderResponseDTO(entity.getId(), entity.getName(), entity.getCountry());
+        return new ProviderResponseDTO(entity.getId(), entity.getName(), entity.getCountry(), entity.getVersion());
+    }
+
+    public static ProviderResponseDTO toResponseDTO(Long id, ProviderRequestDTO dto, long version) {
+        return new ProviderResponseDTO(id, dto.name(), dto.country(), version);
+    }
+
+    public static ProviderDetailsDTO toDetailsDTO(ProviderResponseDTO provider, List<FruitResponseDTO> fruits, ProviderInclude include) {
+        Long fruitCount = null;
+        Long totalKilos = null;
+        if (include.counts()) {
+            fruitCount = (long) fruits.size();
+            totalKilos = fruits.stream().mapToLong(FruitResponseDTO::weightInKilos).sum();
+        }
+        return new ProviderDetailsDTO(provider.id(), provider.name(), provider.country(), provider.version(),
+                fruitCount, totalKilos, include.fruits() ? fruits : null);
+    }
+
+    // Same fingerprint ProviderRepository#findCollectionVersion computes in SQL
+    public static CollectionVersionDTO toCollectionVersion(List<ProviderResponseDTO> providers) {
+        long idSum = 0;
+        long versionSum = 0;
+        for (ProviderResponseDTO provider : providers) {
+            idSum += provider.id();
+            versionSum += provider.version();
+        }
+        return new CollectionVersionDTO((long) providers.size(), idSum, versionSum);
     }
 }
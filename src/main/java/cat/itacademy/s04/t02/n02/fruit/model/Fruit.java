@@ -4,15 +4,23 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "fruits")
+// Composite indexes for GET /fruits/search: each ends in id so keyset pages seek within the index.
+// provider_id leads the last one, which also serves the foreign key.
+@Table(name = "fruits", indexes = {
+        @Index(name = "idx_fruits_name", columnList = "name, id"),
+        @Index(name = "idx_fruits_weight", columnList = "weight_in_kilos, id"),
+        @Index(name = "idx_fruits_provider_weight", columnList = "provider_id, weight_in_kilos, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Fruit {
 
+    // IDENTITY would force one INSERT round trip per row; a pooled sequence (a table on MySQL) lets Hibernate batch them
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fruits_seq")
+    @SequenceGenerator(name = "fruits_seq", sequenceName = "fruits_seq", allocationSize = 100)
     private Long id;
 
     @Column(nullable = false)
@@ -25,6 +33,11 @@ public class Fruit {
     @JoinColumn(name = "provider_id", nullable = false)
     private Provider provider;
 
+    // Bumped on every change; backs the ETag and If-Match handling of the REST API
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public Fruit(String name, int weightInKilos, Provider provider) {
         this.name = name;
         this.weightInKilos = weightInKilos;
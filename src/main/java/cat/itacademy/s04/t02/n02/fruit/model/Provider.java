@@ -7,7 +7,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "providers")
+// Resolves the provider ids of one country for GET /fruits/search?country=
+@Table(name = "providers", indexes = @Index(name = "idx_providers_country", columnList = "country, id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +16,8 @@ import lombok.Setter;
 public class Provider {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "providers_seq")
+    @SequenceGenerator(name = "providers_seq", sequenceName = "providers_seq", allocationSize = 100)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -24,6 +26,10 @@ public class Provider {
     @Column(nullable = false)
     private String country;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public Provider(String name, String country){
         this.name = name;
         this.country = country;
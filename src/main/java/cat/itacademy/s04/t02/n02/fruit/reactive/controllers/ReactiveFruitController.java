@@ -0,0 +1,84 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ETagMapper;
+import cat.itacademy.s04.t02.n02.fruit.reactive.services.ReactiveFruitService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/fruits")
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveFruitController {
+
+    private final ReactiveFruitService service;
+
+    @PostMapping
+    public Mono<ResponseEntity<FruitResponseDTO>> createFruit(@Valid @RequestBody FruitRequestDTO request) {
+        return service.createFruit(request)
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).eTag(ETagMapper.toETag(response.version())).body(response));
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<FruitResponseDTO>>> createFruits(@Valid @RequestBody FruitBatchRequestDTO request) {
+        return service.createFruits(request.items())
+                .collectList()
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<FruitResponseDTO>> getFruitById(@PathVariable Long id) {
+        return service.getFruitById(id)
+                .map(response -> ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response));
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<Flux<FruitResponseDTO>>> getFruits(@RequestParam(required = false) Long providerId, ServerWebExchange exchange) {
+        return service.getFruitsVersion(providerId)
+                .map(ETagMapper::toETag)
+                // a match completes empty with the 304 already set: the list is neither queried nor serialized
+                .filter(eTag -> !exchange.checkNotModified(eTag))
+                .map(eTag -> ResponseEntity.ok().eTag(eTag).body(providerId == null
+                        ? service.getAllFruits()
+                        : service.getFruitsByProviderId(providerId)));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<CursorPageResponseDTO<FruitResponseDTO>>> getFruitsPage(@RequestParam(required = false) Long providerId,
+                                                                                      @RequestParam(required = false) String after,
+                                                                                      @RequestParam int limit) {
+        return service.getFruitsPage(providerId, after, limit).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<FruitResponseDTO> exportFruits() {
+        return service.getAllFruits();
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<FruitResponseDTO>> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return service.updateFruit(id, request, ETagMapper.toExpectedVersion(ifMatch))
+                .map(response -> ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteFruit(@PathVariable Long id) {
+        return service.deleteFruit(id).thenReturn(ResponseEntity.noContent().build());
+    }
+}
@@ -0,0 +1,68 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ETagMapper;
+import cat.itacademy.s04.t02.n02.fruit.reactive.services.ReactiveProviderService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/providers")
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveProviderController {
+
+    private final ReactiveProviderService providerService;
+
+    @PostMapping
+    public Mono<ResponseEntity<ProviderResponseDTO>> createProvider(@Valid @RequestBody ProviderRequestDTO request) {
+        return providerService.createProvider(request)
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).eTag(ETagMapper.toETag(response.version())).body(response));
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<List<ProviderResponseDTO>>> createProviders(@Valid @RequestBody ProviderBatchRequestDTO request) {
+        return providerService.createProviders(request.items())
+                .collectList()
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<Flux<ProviderResponseDTO>>> getAllProviders(ServerWebExchange exchange) {
+        return providerService.getProvidersVersion()
+                .map(ETagMapper::toETag)
+                .filter(eTag -> !exchange.checkNotModified(eTag))
+                .map(eTag -> ResponseEntity.ok().eTag(eTag).body(providerService.getAllProviders()));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<CursorPageResponseDTO<ProviderResponseDTO>>> getProvidersPage(@RequestParam(required = false) String after,
+                                                                                            @RequestParam int limit) {
+        return providerService.getProvidersPage(after, limit).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<ProviderResponseDTO>> updateProvider(@PathVariable Long id, @Valid @RequestBody ProviderRequestDTO request,
+                                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return providerService.updateProvider(id, request, ETagMapper.toExpectedVersion(ifMatch))
+                .map(response -> ResponseEntity.ok().eTag(ETagMapper.toETag(response.version())).body(response));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteProvider(@PathVariable Long id) {
+        return providerService.deleteProvider(id).thenReturn(ResponseEntity.noContent().build());
+    }
+}
@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The {@code fruits} table as Spring Data R2DBC sees it; same columns as the JPA {@code Fruit}.
+ */
+@Table("fruits")
+public record FruitRow(@Id Long id, String name, int weightInKilos, Long providerId, @Version long version) {
+}
@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * The {@code providers} table as Spring Data R2DBC sees it; same columns as the JPA {@code Provider}.
+ */
+@Table("providers")
+public record ProviderRow(@Id Long id, String name, String country, @Version long version) {
+}
@@ -0,0 +1,60 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.reactive.model.FruitRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC counterpart of {@code FruitRepository}: the same queries in SQL, emitting rows as they arrive.
+ */
+@Repository
+public interface ReactiveFruitRepository extends R2dbcRepository<FruitRow, Long> {
+
+    String SELECT_DTO = "select id, name, weight_in_kilos, provider_id, version from fruits ";
+
+    String SELECT_COLLECTION_VERSION = "select count(*) as count, coalesce(sum(id), 0) as id_sum, coalesce(sum(version), 0) as version_sum from fruits ";
+
+    @Query(SELECT_DTO + "where id = :id")
+    Mono<FruitResponseDTO> findDtoById(Long id);
+
+    @Query(SELECT_DTO + "order by id")
+    Flux<FruitResponseDTO> findAllDtos();
+
+    @Query(SELECT_DTO + "where provider_id = :providerId order by id")
+    Flux<FruitResponseDTO> findDtosByProviderId(Long providerId);
+
+    @Query(SELECT_DTO + "where id > :after order by id limit :limit")
+    Flux<FruitResponseDTO> findDtosAfter(Long after, int limit);
+
+    @Query(SELECT_DTO + "where provider_id = :providerId and id > :after order by id limit :limit")
+    Flux<FruitResponseDTO> findDtosByProviderIdAfter(Long providerId, Long after, int limit);
+
+    @Query(SELECT_COLLECTION_VERSION)
+    Mono<CollectionVersionDTO> findCollectionVersion();
+
+    @Query(SELECT_COLLECTION_VERSION + "where provider_id = :providerId")
+    Mono<CollectionVersionDTO> findCollectionVersionByProviderId(Long providerId);
+
+    // ids come from SequenceIdAllocator, so an insert is a single statement with no generated-key round trip
+    @Modifying
+    @Query("insert into fruits (id, name, weight_in_kilos, provider_id, version) values (:id, :name, :weightInKilos, :providerId, 0)")
+    Mono<Integer> insert(Long id, String name, int weightInKilos, Long providerId);
+
+    @Modifying
+    @Query("update fruits set name = :name, weight_in_kilos = :weightInKilos, provider_id = :providerId, version = version + 1 where id = :id")
+    Mono<Integer> updateById(Long id, String name, int weightInKilos, Long providerId);
+
+    @Modifying
+    @Query("update fruits set name = :name, weight_in_kilos = :weightInKilos, provider_id = :providerId, version = version + 1 where id = :id and version = :version")
+    Mono<Integer> updateByIdAndVersion(Long id, long version, String name, int weightInKilos, Long providerId);
+
+    @Modifying
+    @Query("delete from fruits where id = :id")
+    Mono<Integer> deleteByIdReturningCount(Long id);
+}
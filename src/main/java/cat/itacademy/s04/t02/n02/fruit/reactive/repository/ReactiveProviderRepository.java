@@ -0,0 +1,56 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.reactive.model.ProviderRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * R2DBC counterpart of {@code ProviderRepository}.
+ */
+@Repository
+public interface ReactiveProviderRepository extends R2dbcRepository<ProviderRow, Long> {
+
+    String SELECT_DTO = "select id, name, country, version from providers ";
+
+    @Query(SELECT_DTO + "where id = :id")
+    Mono<ProviderResponseDTO> findDtoById(Long id);
+
+    @Query(SELECT_DTO + "order by id")
+    Flux<ProviderResponseDTO> findAllDtos();
+
+    @Query(SELECT_DTO + "where id > :after order by id limit :limit")
+    Flux<ProviderResponseDTO> findDtosAfter(Long after, int limit);
+
+    @Query("select count(*) as count, coalesce(sum(id), 0) as id_sum, coalesce(sum(version), 0) as version_sum from providers")
+    Mono<CollectionVersionDTO> findCollectionVersion();
+
+    @Query("select name from providers where name in (:names)")
+    Flux<String> findExistingNames(Collection<String> names);
+
+    @Query("select id from providers where id in (:ids)")
+    Flux<Long> findExistingIds(Collection<Long> ids);
+
+    @Modifying
+    @Query("insert into providers (id, name, country, version) values (:id, :name, :country, 0)")
+    Mono<Integer> insert(Long id, String name, String country);
+
+    @Modifying
+    @Query("update providers set name = :name, country = :country, version = version + 1 where id = :id")
+    Mono<Integer> updateById(Long id, String name, String country);
+
+    @Modifying
+    @Query("update providers set name = :name, country = :country, version = version + 1 where id = :id and version = :version")
+    Mono<Integer> updateByIdAndVersion(Long id, long version, String name, String country);
+
+    @Modifying
+    @Query("delete from providers where id = :id")
+    Mono<Integer> deleteByIdReturningCount(Long id);
+}
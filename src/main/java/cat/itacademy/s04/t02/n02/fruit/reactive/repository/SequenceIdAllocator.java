@@ -0,0 +1,97 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hands out ids from the table-backed sequences ({@code fruits_seq}, {@code providers_seq}) that
+ * Hibernate uses for Fruit and Provider on MySQL, so both stacks can write to the same schema.
+ * <p>
+ * Like Hibernate's pooled optimizer, reading {@code next_val = H} and moving it to {@code H + 100}
+ * reserves the ids {@code H - 99 .. H}; the block is then served from memory. The reservation runs
+ * in its own transaction so a rolled-back insert never hands the same block out twice.
+ */
+@Component
+@Profile("reactive")
+public class SequenceIdAllocator {
+
+    public static final String FRUITS = "fruits_seq";
+    public static final String PROVIDERS = "providers_seq";
+
+    // allocationSize of the @SequenceGenerator on Fruit and Provider
+    static final int BLOCK_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator newTransaction;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public SequenceIdAllocator(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager) {
+        this.databaseClient = databaseClient;
+        this.newTransaction = TransactionalOperator.create(transactionManager,
+                new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    public Mono<Long> nextId(String sequence) {
+        return Mono.defer(() -> {
+            Block current = blocks.get(sequence);
+            long id = current == null ? -1 : current.take();
+            if (id > 0) {
+                return Mono.just(id);
+            }
+            // concurrent callers may each reserve a block; the one replaced first only leaves a gap
+            return reserveBlock(sequence).map(block -> {
+                long first = block.take();
+                blocks.put(sequence, block);
+                return first;
+            });
+        });
+    }
+
+    private Mono<Block> reserveBlock(String sequence) {
+        // sequence is one of the constants above, never client input
+        return databaseClient.sql("select next_val from " + sequence)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(high -> databaseClient.sql("update " + sequence + " set next_val = :next where next_val = :high")
+                        .bind("next", high + BLOCK_SIZE)
+                        .bind("high", high)
+                        .fetch()
+                        .rowsUpdated()
+                        // another writer moved the sequence in between: read it again
+                        .filter(updated -> updated == 1)
+                        .map(updated -> new Block(Math.max(1, high - BLOCK_SIZE + 1), high)))
+                .as(newTransaction::transactional)
+                .repeatWhenEmpty(MAX_ATTEMPTS, Function.identity())
+                .onErrorMap(IllegalStateException.class,
+                        ex -> new IllegalStateException("Could not reserve ids from " + sequence, ex));
+    }
+
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long last;
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+
+        // -1 once the block is used up
+        long take() {
+            long id = next.getAndIncrement();
+            return id <= last ? id : -1;
+        }
+    }
+}
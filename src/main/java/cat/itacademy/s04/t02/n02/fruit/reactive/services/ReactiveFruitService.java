@@ -0,0 +1,140 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConstraintViolations;
+import cat.itacademy.s04.t02.n02.fruit.exception.FruitNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.mapper.FruitMapper;
+import cat.itacademy.s04.t02.n02.fruit.reactive.repository.ReactiveFruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.reactive.repository.ReactiveProviderRepository;
+import cat.itacademy.s04.t02.n02.fruit.reactive.repository.SequenceIdAllocator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The operations of {@code FruitService} on R2DBC. List reads return the repository's {@link Flux}
+ * untouched, so rows are written to the response as the driver emits them.
+ */
+@Service
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveFruitService {
+
+    private final ReactiveFruitRepository repository;
+    private final ReactiveProviderRepository providerRepository;
+    private final SequenceIdAllocator idAllocator;
+    private final PaginationProperties pagination;
+
+    public Mono<FruitResponseDTO> createFruit(FruitRequestDTO dto) {
+        return insert(dto);
+    }
+
+    /**
+     * Checks every referenced provider with a single IN query before inserting.
+     */
+    @Transactional
+    public Flux<FruitResponseDTO> createFruits(List<FruitRequestDTO> dtos) {
+        Set<Long> providerIds = dtos.stream()
+                .map(FruitRequestDTO::providerId)
+                .collect(Collectors.toSet());
+
+        return providerRepository.findExistingIds(providerIds)
+                .collect(Collectors.toSet())
+                .flatMapMany(existing -> {
+                    Set<Long> missing = new HashSet<>(providerIds);
+                    missing.removeAll(existing);
+                    if (!missing.isEmpty()) {
+                        return Flux.error(new ProviderNotFoundException(missing.iterator().next()));
+                    }
+                    return Flux.fromIterable(dtos).concatMap(this::insert);
+                });
+    }
+
+    public Mono<FruitResponseDTO> getFruitById(Long id) {
+        return repository.findDtoById(id)
+                .switchIfEmpty(Mono.error(() -> new FruitNotFoundException(id)));
+    }
+
+    public Flux<FruitResponseDTO> getFruitsByProviderId(Long providerId) {
+        return requireProvider(providerId).thenMany(repository.findDtosByProviderId(providerId));
+    }
+
+    public Flux<FruitResponseDTO> getAllFruits() {
+        return repository.findAllDtos();
+    }
+
+    public Mono<CollectionVersionDTO> getFruitsVersion(Long providerId) {
+        if (providerId == null) {
+            return repository.findCollectionVersion();
+        }
+        return requireProvider(providerId).then(repository.findCollectionVersionByProviderId(providerId));
+    }
+
+    public Mono<CursorPageResponseDTO<FruitResponseDTO>> getFruitsPage(Long providerId, String after, int limit) {
+        return Mono.defer(() -> {
+            Long afterId = CursorMapper.decode(after);
+            int pageSize = pagination.clamp(limit);
+
+            Flux<FruitResponseDTO> rows = providerId == null
+                    ? repository.findDtosAfter(afterId, pageSize + 1)
+                    : requireProvider(providerId).thenMany(repository.findDtosByProviderIdAfter(providerId, afterId, pageSize + 1));
+
+            return rows.collectList().map(items -> CursorMapper.toPage(items, pageSize, FruitResponseDTO::id));
+        });
+    }
+
+    public Mono<FruitResponseDTO> updateFruit(Long id, FruitRequestDTO dto, Long expectedVersion) {
+        Mono<Integer> update = expectedVersion == null
+                ? repository.updateById(id, dto.name(), dto.weightInKilos(), dto.providerId())
+                : repository.updateByIdAndVersion(id, expectedVersion, dto.name(), dto.weightInKilos(), dto.providerId());
+
+        return update
+                .onErrorMap(ConstraintViolations::isForeignKey, ex -> new ProviderNotFoundException(dto.providerId()))
+                .flatMap(updated -> {
+                    if (updated == 0) {
+                        return expectedVersion == null
+                                ? Mono.error(new FruitNotFoundException(id))
+                                : repository.existsById(id).flatMap(exists -> Mono.error(exists
+                                        ? new PreconditionFailedException("Fruit with id: " + id + " has changed since version " + expectedVersion)
+                                        : new FruitNotFoundException(id)));
+                    }
+                    if (expectedVersion == null) {
+                        // without If-Match the version the update produced is unknown, so read it back
+                        return getFruitById(id);
+                    }
+                    return Mono.just(FruitMapper.toResponseDTO(id, dto, expectedVersion + 1));
+                });
+    }
+
+    public Mono<Void> deleteFruit(Long id) {
+        return repository.deleteByIdReturningCount(id)
+                .flatMap(deleted -> deleted == 0 ? Mono.error(new FruitNotFoundException(id)) : Mono.empty());
+    }
+
+    private Mono<Void> requireProvider(Long providerId) {
+        return providerRepository.existsById(providerId)
+                .flatMap(exists -> exists ? Mono.empty() : Mono.error(new ProviderNotFoundException(providerId)));
+    }
+
+    private Mono<FruitResponseDTO> insert(FruitRequestDTO dto) {
+        return idAllocator.nextId(SequenceIdAllocator.FRUITS)
+                .flatMap(id -> repository.insert(id, dto.name(), dto.weightInKilos(), dto.providerId())
+                        .thenReturn(FruitMapper.toResponseDTO(id, dto, 0)))
+                .onErrorMap(ConstraintViolations::isForeignKey, ex -> new ProviderNotFoundException(dto.providerId()));
+    }
+}
@@ -0,0 +1,20 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReactiveProviderService {
+    Mono<ProviderResponseDTO> createProvider(ProviderRequestDTO dto);
+    Flux<ProviderResponseDTO> createProviders(List<ProviderRequestDTO> dtos);
+    Flux<ProviderResponseDTO> getAllProviders();
+    Mono<CursorPageResponseDTO<ProviderResponseDTO>> getProvidersPage(String after, int limit);
+    Mono<CollectionVersionDTO> getProvidersVersion();
+    Mono<ProviderResponseDTO> updateProvider(Long id, ProviderRequestDTO dto, Long expectedVersion);
+    Mono<Void> deleteProvider(Long id);
+}
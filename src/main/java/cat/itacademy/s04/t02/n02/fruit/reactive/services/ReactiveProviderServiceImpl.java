@@ -0,0 +1,121 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConstraintViolations;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.mapper.ProviderMapper;
+import cat.itacademy.s04.t02.n02.fruit.reactive.repository.ReactiveProviderRepository;
+import cat.itacademy.s04.t02.n02.fruit.reactive.repository.SequenceIdAllocator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Same rules as {@code ProviderServiceImpl}, without the provider cache: every read goes to the database.
+ */
+@RequiredArgsConstructor
+@Service
+@Profile("reactive")
+public class ReactiveProviderServiceImpl implements ReactiveProviderService {
+
+    private final ReactiveProviderRepository providerRepository;
+    private final SequenceIdAllocator idAllocator;
+    private final PaginationProperties pagination;
+
+    @Override
+    public Mono<ProviderResponseDTO> createProvider(ProviderRequestDTO dto) {
+        return insert(dto);
+    }
+
+    @Override
+    @Transactional
+    public Flux<ProviderResponseDTO> createProviders(List<ProviderRequestDTO> dtos) {
+        Set<String> names = new HashSet<>();
+        for (ProviderRequestDTO dto : dtos) {
+            if (!names.add(dto.name())) {
+                return Flux.error(new ConflictException("Provider with name: " + dto.name() + " is repeated in the batch"));
+            }
+        }
+
+        return providerRepository.findExistingNames(names)
+                .next()
+                .flatMap(existing -> Mono.<ProviderResponseDTO>error(new ConflictException("Provider with name: " + existing + " already exists")))
+                .thenMany(Flux.fromIterable(dtos).concatMap(this::insert));
+    }
+
+    @Override
+    public Flux<ProviderResponseDTO> getAllProviders() {
+        return providerRepository.findAllDtos();
+    }
+
+    @Override
+    public Mono<CursorPageResponseDTO<ProviderResponseDTO>> getProvidersPage(String after, int limit) {
+        return Mono.defer(() -> {
+            int pageSize = pagination.clamp(limit);
+            return providerRepository.findDtosAfter(CursorMapper.decode(after), pageSize + 1)
+                    .collectList()
+                    .map(items -> CursorMapper.toPage(items, pageSize, ProviderResponseDTO::id));
+        });
+    }
+
+    @Override
+    public Mono<CollectionVersionDTO> getProvidersVersion() {
+        return providerRepository.findCollectionVersion();
+    }
+
+    @Override
+    public Mono<ProviderResponseDTO> updateProvider(Long id, ProviderRequestDTO dto, Long expectedVersion) {
+        Mono<Integer> update = expectedVersion == null
+                ? providerRepository.updateById(id, dto.name(), dto.country())
+                : providerRepository.updateByIdAndVersion(id, expectedVersion, dto.name(), dto.country());
+
+        return update
+                .onErrorMap(ConstraintViolations::isUniqueKey,
+                        ex -> new ConflictException("Provider with name: " + dto.name() + " already exists"))
+                .flatMap(updated -> {
+                    if (updated == 0) {
+                        return expectedVersion == null
+                                ? Mono.error(new ProviderNotFoundException(id))
+                                : providerRepository.existsById(id).flatMap(exists -> Mono.error(exists
+                                        ? new PreconditionFailedException("Provider with id: " + id + " has changed since version " + expectedVersion)
+                                        : new ProviderNotFoundException(id)));
+                    }
+                    if (expectedVersion == null) {
+                        // without If-Match the version the update produced is unknown, so read it back
+                        return providerRepository.findDtoById(id).switchIfEmpty(Mono.error(() -> new ProviderNotFoundException(id)));
+                    }
+                    return Mono.just(ProviderMapper.toResponseDTO(id, dto, expectedVersion + 1));
+                });
+    }
+
+    @Override
+    public Mono<Void> deleteProvider(Long id) {
+        return providerRepository.deleteByIdReturningCount(id)
+                // fruits.provider_id references the row
+                .onErrorMap(ConstraintViolations::isForeignKey,
+                        ex -> new ConflictException("Provider with id: " + id + " cannot be deleted because it has associated fruits"))
+                .flatMap(deleted -> deleted == 0 ? Mono.error(new ProviderNotFoundException(id)) : Mono.empty());
+    }
+
+    private Mono<ProviderResponseDTO> insert(ProviderRequestDTO dto) {
+        return idAllocator.nextId(SequenceIdAllocator.PROVIDERS)
+                .flatMap(id -> providerRepository.insert(id, dto.name(), dto.country())
+                        .thenReturn(ProviderMapper.toResponseDTO(id, dto, 0)))
+                .onErrorMap(ConstraintViolations::isUniqueKey,
+                        ex -> new ConflictException("Provider with name: " + dto.name() + " already exists"));
+    }
+}
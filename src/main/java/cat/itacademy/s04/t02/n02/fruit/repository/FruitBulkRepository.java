@@ -0,0 +1,22 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRefDTO;
+
+import java.util.List;
+
+/**
+ * Set-based writes: each call is a single UPDATE or DELETE over every fruit the filter matches,
+ * whatever their number. Like the {@code @Modifying} queries, they flush pending changes first and
+ * clear the persistence context afterwards, and updates bump the version of every row they touch.
+ */
+public interface FruitBulkRepository {
+
+    // locks the matching rows until the transaction ends
+    List<FruitRefDTO> findRefsForUpdate(FruitFilterDTO where);
+
+    int updateMatching(FruitFilterDTO where, FruitChangesDTO set);
+
+    int deleteMatching(FruitFilterDTO where);
+}
@@ -0,0 +1,82 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRefDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+// Picked up by Spring Data as the implementation of the FruitBulkRepository fragment of FruitRepository
+@RequiredArgsConstructor
+class FruitBulkRepositoryImpl implements FruitBulkRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<FruitRefDTO> findRefsForUpdate(FruitFilterDTO where) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FruitRefDTO> query = cb.createQuery(FruitRefDTO.class);
+        Root<Fruit> fruit = query.from(Fruit.class);
+        query.select(cb.construct(FruitRefDTO.class, fruit.get("id"), fruit.get("provider").get("id")))
+                .where(matching(cb, fruit, where));
+        return entityManager.createQuery(query).setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList();
+    }
+
+    @Override
+    public int updateMatching(FruitFilterDTO where, FruitChangesDTO set) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Fruit> update = cb.createCriteriaUpdate(Fruit.class);
+        Root<Fruit> fruit = update.from(Fruit.class);
+        Path<Long> version = fruit.get("version");
+        if (set.weightInKilos() != null) {
+            update.set(fruit.<Integer>get("weightInKilos"), set.weightInKilos());
+        }
+        if (set.providerId() != null) {
+            update.set(fruit.<Provider>get("provider"), entityManager.getReference(Provider.class, set.providerId()));
+        }
+        update.set(version, cb.sum(version, 1L)).where(matching(cb, fruit, where));
+        return execute(() -> entityManager.createQuery(update).executeUpdate());
+    }
+
+    @Override
+    public int deleteMatching(FruitFilterDTO where) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaDelete<Fruit> delete = cb.createCriteriaDelete(Fruit.class);
+        Root<Fruit> fruit = delete.from(Fruit.class);
+        delete.where(matching(cb, fruit, where));
+        return execute(() -> entityManager.createQuery(delete).executeUpdate());
+    }
+
+    // provider_id is read from the fruits row itself; no join to providers
+    private static Predicate[] matching(CriteriaBuilder cb, Root<Fruit> fruit, FruitFilterDTO where) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (where.hasIds()) {
+            predicates.add(fruit.get("id").in(where.ids()));
+        }
+        if (where.providerId() != null) {
+            predicates.add(cb.equal(fruit.get("provider").get("id"), where.providerId()));
+        }
+        return predicates.toArray(Predicate[]::new);
+    }
+
+    private int execute(IntSupplier statement) {
+        entityManager.flush();
+        int affected = statement.getAsInt();
+        entityManager.clear();
+        return affected;
+    }
+}
@@ -1,13 +1,106 @@
 package cat.itacademy.s04.t02.n02.fruit.repository;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitNameDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStockDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface FruitRepository extends JpaRepository<Fruit, Long> {
-    List<Fruit> findByProviderId(Long providerId);
-    boolean existsByProviderId(Long providerId);
+public interface FruitRepository extends JpaRepository<Fruit, Long>, FruitSearchRepository, FruitBulkRepository {
+
+    // Read paths project straight into the response record: no managed entities, no dirty-checking snapshots
+    String SELECT_DTO = "select new cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO(f.id, f.name, f.weightInKilos, f.provider.id, f.version) from Fruit f ";
+
+    String SELECT_COLLECTION_VERSION = "select new cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO(count(f), coalesce(sum(f.id), 0L), coalesce(sum(f.version), 0L)) from Fruit f ";
+
+    @Query(SELECT_DTO + "where f.id = :id")
+    Optional<FruitResponseDTO> findDtoById(Long id);
+
+    // also called outside any transaction by FruitLookupBatcher, on behalf of several requests
+    @Transactional(readOnly = true)
+    @Query(SELECT_DTO + "where f.id in :ids")
+    List<FruitResponseDTO> findDtosByIdIn(Collection<Long> ids);
+
+    @Query(SELECT_DTO + "order by f.id")
+    List<FruitResponseDTO> findAllDtos();
+
+    // The provider check and the list in one round trip: no row means no such provider, and a
+    // provider without fruits comes back as a single row with a null id
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO(f.id, f.name, f.weightInKilos, p.id, f.version) " +
+            "from Provider p left join Fruit f on f.provider = p where p.id = :providerId order by f.id")
+    List<FruitResponseDTO> findDtosOfProvider(Long providerId);
+
+    @Query(SELECT_DTO + "where f.provider.id in :providerIds order by f.id")
+    List<FruitResponseDTO> findDtosByProviderIdIn(Collection<Long> providerIds);
+
+    @Query(SELECT_DTO + "where f.id > :after order by f.id")
+    List<FruitResponseDTO> findDtosAfter(Long after, Limit limit);
+
+    @Query(SELECT_DTO + "where f.provider.id = :providerId and f.id > :after order by f.id")
+    List<FruitResponseDTO> findDtosByProviderIdAfter(Long providerId, Long after, Limit limit);
+
+    @Query(SELECT_COLLECTION_VERSION)
+    CollectionVersionDTO findCollectionVersion();
+
+    // empty when the provider does not exist, so no separate existence check is needed
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO(count(f), coalesce(sum(f.id), 0L), coalesce(sum(f.version), 0L)) " +
+            "from Provider p left join Fruit f on f.provider = p where p.id = :providerId group by p.id")
+    Optional<CollectionVersionDTO> findCollectionVersionOfProvider(Long providerId);
+
+    // Locks the row so concurrent writes to one fruit report consistent stock deltas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitStockDTO(f.provider.id, f.weightInKilos) from Fruit f where f.id = :id")
+    Optional<FruitStockDTO> findStockByIdForUpdate(Long id);
+
+    // MySQL only honours a positive fetch size with useCursorFetch=true on the JDBC URL
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Fruit> streamAllByOrderByIdAsc();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitNameDTO(f.id, f.name) from Fruit f")
+    Stream<FruitNameDTO> streamNames();
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Fruit f set f.name = :name, f.weightInKilos = :weightInKilos, f.provider = :provider, f.version = f.version + 1 where f.id = :id")
+    int updateById(Long id, String name, int weightInKilos, Provider provider);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Fruit f set f.name = :name, f.weightInKilos = :weightInKilos, f.provider = :provider, f.version = f.version + 1 where f.id = :id and f.version = :version")
+    int updateByIdAndVersion(Long id, long version, String name, int weightInKilos, Provider provider);
+
+    // weight + delta computed by the database under the row lock, so concurrent adjustments never overwrite each other;
+    // the guard adds them as bigints, so a sum past the int column's range is refused instead of overflowing
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Fruit f set f.weightInKilos = f.weightInKilos + :delta, f.version = f.version + 1 where f.id = :id"
+            + " and cast(f.weightInKilos as Long) + cast(:delta as Long) between 0 and " + Integer.MAX_VALUE)
+    int adjustWeight(Long id, int delta);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Fruit f where f.id = :id")
+    int deleteByIdReturningCount(Long id);
 }
@@ -0,0 +1,17 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+
+import java.util.List;
+
+public interface FruitSearchRepository {
+
+    /**
+     * Seeks past {@code after} (null for the first page) in the criteria's sort order and returns at
+     * most {@code limit} rows. The WHERE clause only contains the filters that are set, so each
+     * combination can use the composite index declared for it on {@code Fruit} and {@code Provider}.
+     */
+    List<FruitResponseDTO> search(FruitSearchCriteria criteria, CursorMapper.Keyset after, int limit);
+}
@@ -0,0 +1,118 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSort;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidSearchException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Picked up by Spring Data as the implementation of the FruitSearchRepository fragment of FruitRepository
+@RequiredArgsConstructor
+class FruitSearchRepositoryImpl implements FruitSearchRepository {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<FruitResponseDTO> search(FruitSearchCriteria criteria, CursorMapper.Keyset after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FruitResponseDTO> query = cb.createQuery(FruitResponseDTO.class);
+        Root<Fruit> fruit = query.from(Fruit.class);
+        Path<Long> id = fruit.get("id");
+        Path<Long> providerId = fruit.get("provider").get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (criteria.namePrefix() != null && !criteria.namePrefix().isEmpty()) {
+            where.add(cb.like(fruit.get("name"), escapeLike(criteria.namePrefix()) + "%", LIKE_ESCAPE));
+        }
+        if (criteria.minKg() != null) {
+            where.add(cb.greaterThanOrEqualTo(fruit.get("weightInKilos"), criteria.minKg()));
+        }
+        if (criteria.maxKg() != null) {
+            where.add(cb.lessThanOrEqualTo(fruit.get("weightInKilos"), criteria.maxKg()));
+        }
+        if (criteria.providerIds() != null && !criteria.providerIds().isEmpty()) {
+            where.add(providerId.in(criteria.providerIds()));
+        }
+        if (criteria.country() != null) {
+            // the only filter that needs the provider row; the others stay on fruits alone
+            Join<Fruit, Provider> provider = fruit.join("provider");
+            where.add(cb.equal(provider.get("country"), criteria.country()));
+        }
+
+        FruitSort sort = criteria.sort();
+        if (after != null) {
+            where.add(seekPredicate(cb, fruit, sort, after));
+        }
+
+        query.select(cb.construct(FruitResponseDTO.class,
+                        id, fruit.get("name"), fruit.get("weightInKilos"), providerId, fruit.get("version")))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(orderBy(cb, fruit, sort));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * {@code (value, id) > (:value, :id)} spelled out with OR, which MySQL turns into a range scan on
+     * the {@code (value, id)} index; row constructors are not always optimised that way.
+     */
+    private static Predicate seekPredicate(CriteriaBuilder cb, Root<Fruit> fruit, FruitSort sort, CursorMapper.Keyset after) {
+        Path<Long> id = fruit.get("id");
+        try {
+            return switch (sort.field()) {
+                case ID -> after(cb, id, after.id(), sort.descending());
+                case NAME -> seek(cb, fruit.get("name"), after.value(), id, after.id(), sort.descending());
+                case WEIGHT -> seek(cb, fruit.get("weightInKilos"), Integer.valueOf(after.value()), id, after.id(), sort.descending());
+            };
+        } catch (NumberFormatException ex) {
+            throw new InvalidSearchException("Cursor does not match sort: " + sort.key());
+        }
+    }
+
+    private static <T extends Comparable<? super T>> Predicate seek(CriteriaBuilder cb, Expression<T> column, T value,
+                                                                    Path<Long> id, Long afterId, boolean descending) {
+        return cb.or(after(cb, column, value, descending),
+                cb.and(cb.equal(column, value), after(cb, id, afterId, descending)));
+    }
+
+    private static <T extends Comparable<? super T>> Predicate after(CriteriaBuilder cb, Expression<T> column, T value, boolean descending) {
+        return descending ? cb.lessThan(column, value) : cb.greaterThan(column, value);
+    }
+
+    private static List<Order> orderBy(CriteriaBuilder cb, Root<Fruit> fruit, FruitSort sort) {
+        Path<Long> id = fruit.get("id");
+        List<Order> order = new ArrayList<>();
+        switch (sort.field()) {
+            case NAME -> order.add(direction(cb, fruit.get("name"), sort.descending()));
+            case WEIGHT -> order.add(direction(cb, fruit.get("weightInKilos"), sort.descending()));
+            case ID -> { }
+        }
+        order.add(direction(cb, id, sort.descending()));
+        return order;
+    }
+
+    private static Order direction(CriteriaBuilder cb, Expression<?> column, boolean descending) {
+        return descending ? cb.desc(column) : cb.asc(column);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,12 +1,73 @@
 package cat.itacademy.s04.t02.n02.fruit.repository;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProviderRepository extends JpaRepository<Provider, Long> {
-    boolean existsByName(String name);
 
-    boolean existsByNameAndIdNot(String name, Long id);
+    String SELECT_DTO = "select new cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO(p.id, p.name, p.country, p.version) from Provider p ";
+
+    // providers without fruits get zero totals
+    String SELECT_STATS = "select new cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO(p.id, p.country, count(f), coalesce(sum(f.weightInKilos), 0L)) " +
+            "from Provider p left join Fruit f on f.provider = p ";
+
+    @Query(SELECT_DTO + "where p.id = :id")
+    Optional<ProviderResponseDTO> findDtoById(Long id);
+
+    @Query(SELECT_DTO + "order by p.id")
+    List<ProviderResponseDTO> findAllDtos();
+
+    // GET /providers?include=counts: every provider with its totals in one grouped query
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO(p.id, p.name, p.country, p.version, count(f), coalesce(sum(f.weightInKilos), 0L)) " +
+            "from Provider p left join Fruit f on f.provider = p group by p.id, p.name, p.country, p.version order by p.id")
+    List<ProviderDetailsDTO> findAllDetailsWithCounts();
+
+    @Query(SELECT_DTO + "where p.id > :after order by p.id")
+    List<ProviderResponseDTO> findDtosAfter(Long after, Limit limit);
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO(count(p), coalesce(sum(p.id), 0L), coalesce(sum(p.version), 0L)) from Provider p")
+    CollectionVersionDTO findCollectionVersion();
+
+    // seeds and reconciles ProviderStatsAggregate
+    @Query(SELECT_STATS + "group by p.id, p.country")
+    List<ProviderStatsDTO> findAllStats();
+
+    // refreshes ProviderStatsAggregate for the providers a bulk fruit write touched
+    @Query(SELECT_STATS + "where p.id in :ids group by p.id, p.country")
+    List<ProviderStatsDTO> findStatsByIds(Collection<Long> ids);
+
+    @Query("select p.name from Provider p where p.name in :names")
+    List<String> findExistingNames(Collection<String> names);
+
+    @Query("select p.id from Provider p where p.id in :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Provider p set p.name = :name, p.country = :country, p.version = p.version + 1 where p.id = :id")
+    int updateById(Long id, String name, String country);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Provider p set p.name = :name, p.country = :country, p.version = p.version + 1 where p.id = :id and p.version = :version")
+    int updateByIdAndVersion(Long id, long version, String name, String country);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Provider p where p.id = :id")
+    int deleteByIdReturningCount(Long id);
 }
@@ -0,0 +1,58 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.mapper.FruitMapper;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole fruit catalog as newline-delimited JSON while scrolling a forward-only cursor,
+ * so memory stays constant no matter how many rows the table holds.
+ */
+@Service
+@RequiredArgsConstructor
+@Profile("!reactive")
+@Timed("service.invocations")
+public class FruitExportService {
+
+    static final int CHUNK_SIZE = 500;
+
+    private final FruitRepository repository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportFruits(OutputStream out) throws IOException {
+        try (Stream<Fruit> fruits = repository.streamAllByOrderByIdAsc();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            int written = 0;
+            Iterator<Fruit> iterator = fruits.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(FruitMapper.toResponseDTO(iterator.next()));
+                generator.writeRaw('\n');
+
+                if (++written % CHUNK_SIZE == 0) {
+                    // Nothing is ever modified here, so clearing only drops the rows already written.
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.FruitImportProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportErrorDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports fruits from a CSV stream with a {@code name,weightInKilos,providerId} header (columns in
+ * any order, others ignored) while reading it, so memory stays bounded by one chunk whatever the
+ * size of the file.
+ * <p>
+ * Each record is checked against the rules of {@link FruitRequestDTO}. Valid rows are inserted
+ * {@code fruit.import.chunk-size} at a time, one transaction per chunk, and the persistence context
+ * is flushed and cleared after each. Provider ids are checked with one query per chunk, in the
+ * chunk's transaction and only for the ids no earlier chunk resolved; the inserts then use
+ * references to them through {@link FruitService#createFruits(List, Map)} without loading them.
+ * Rows that fail are skipped and reported by line; the rows of the chunks already committed stay
+ * imported. A chunk the database still refuses after its providers were resolved again is inserted
+ * row by row, so only the rows at fault are lost.
+ */
+@Slf4j
+@Service
+@Profile("!reactive")
+@Timed("service.invocations")
+public class FruitImportService {
+
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final FruitService fruitService;
+    private final ProviderRepository providerRepository;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final FruitImportProperties properties;
+    private final TransactionTemplate transactions;
+
+    public FruitImportService(FruitService fruitService, ProviderRepository providerRepository, EntityManager entityManager,
+                              Validator validator, FruitImportProperties properties, PlatformTransactionManager transactionManager) {
+        this.fruitService = fruitService;
+        this.providerRepository = providerRepository;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.properties = properties;
+        this.transactions = new TransactionTemplate(transactionManager);
+    }
+
+    public FruitImportResultDTO importFruits(InputStream csv) throws IOException {
+        CsvReader records = new CsvReader(
+                new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8), READ_BUFFER), properties.maxRecordLength());
+        Import state = new Import();
+        List<Row> chunk = new ArrayList<>(properties.chunkSize());
+
+        try {
+            List<String> header = records.next();
+            if (header == null) {
+                return state.result();
+            }
+            Columns columns = Columns.of(header);
+
+            List<String> record;
+            while ((record = records.next()) != null) {
+                state.rows++;
+                Row row = parse(records.recordLine(), record, columns, state);
+                if (row != null) {
+                    chunk.add(row);
+                }
+                if (chunk.size() == properties.chunkSize()) {
+                    insert(chunk, state);
+                    chunk.clear();
+                }
+            }
+            insert(chunk, state);
+        } catch (CsvReader.MalformedCsvException ex) {
+            // nothing after a broken record can be told apart reliably, so the rest of the file is dropped;
+            // the valid rows read before it are still inserted
+            insert(chunk, state);
+            state.rows++;
+            state.fail(ex.line(), Map.of("csv", ex.getMessage()));
+        }
+        return state.result();
+    }
+
+    private Row parse(long line, List<String> record, Columns columns, Import state) {
+        Map<String, String> errors = new TreeMap<>();
+        String name = columns.name(record);
+        Integer weightInKilos = parseNumber(columns.weightInKilos(record), "weightInKilos", "Weight must be a whole number", errors,
+                Integer::valueOf);
+        Long providerId = parseNumber(columns.providerId(record), "providerId", "Provider id must be a whole number", errors,
+                Long::valueOf);
+
+        FruitRequestDTO request = new FruitRequestDTO(name, weightInKilos, providerId);
+        validator.validate(request).forEach(violation ->
+                errors.putIfAbsent(violation.getPropertyPath().toString(), violation.getMessage()));
+        if (!errors.isEmpty()) {
+            state.fail(line, errors);
+            return null;
+        }
+        return new Row(line, request);
+    }
+
+    private static <N> N parseNumber(String value, String column, String message, Map<String, String> errors,
+                                     Function<String, N> parser) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return parser.apply(value.strip());
+        } catch (NumberFormatException ex) {
+            errors.put(column, message);
+            return null;
+        }
+    }
+
+    private void insert(List<Row> chunk, Import state) {
+        insert(chunk, state, true);
+    }
+
+    private void insert(List<Row> chunk, Import state, boolean firstAttempt) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Row> valid;
+        try {
+            // the provider check runs in the chunk's transaction and hands the inserts the ids it found
+            valid = transactions.execute(status -> {
+                resolveProviders(chunk, state);
+                List<Row> rows = chunk.stream()
+                        .filter(row -> !state.missingProviders.contains(row.request().providerId()))
+                        .toList();
+                if (!rows.isEmpty()) {
+                    Map<Long, Provider> providers = rows.stream()
+                            .map(row -> row.request().providerId())
+                            .distinct()
+                            .collect(Collectors.toMap(Function.identity(), providerRepository::getReferenceById));
+                    fruitService.createFruits(rows.stream().map(Row::request).toList(), providers);
+                    entityManager.clear();
+                }
+                return rows;
+            });
+        } catch (DataIntegrityViolationException ex) {
+            if (firstAttempt) {
+                // a provider was deleted after it was resolved: resolve the chunk's providers again
+                chunk.forEach(row -> state.knownProviders.remove(row.request().providerId()));
+                insert(chunk, state, false);
+            } else {
+                // refused again: find the rows at fault instead of dropping the rest of the file
+                insertOneByOne(chunk, state);
+            }
+            return;
+        }
+
+        for (Row row : chunk) {
+            if (state.missingProviders.contains(row.request().providerId())) {
+                failMissingProvider(row, state);
+            }
+        }
+        state.imported += valid.size();
+    }
+
+    // each row in a transaction of its own; only the ones the database refuses are reported
+    private void insertOneByOne(List<Row> chunk, Import state) {
+        for (Row row : chunk) {
+            Long providerId = row.request().providerId();
+            if (state.missingProviders.contains(providerId)) {
+                failMissingProvider(row, state);
+                continue;
+            }
+            try {
+                fruitService.createFruit(row.request());
+                state.imported++;
+            } catch (ProviderNotFoundException ex) {
+                state.knownProviders.remove(providerId);
+                state.missingProviders.add(providerId);
+                failMissingProvider(row, state);
+            } catch (DataIntegrityViolationException ex) {
+                log.warn("CSV import: the database refused the row at line {}", row.line(), ex);
+                state.fail(row.line(), Map.of("row", "Refused by the database"));
+            }
+        }
+    }
+
+    private static void failMissingProvider(Row row, Import state) {
+        state.fail(row.line(), Map.of("providerId", "Provider with id " + row.request().providerId() + " not found"));
+    }
+
+    private void resolveProviders(List<Row> chunk, Import state) {
+        Set<Long> unresolved = chunk.stream()
+                .map(row -> row.request().providerId())
+                .filter(id -> !state.knownProviders.contains(id) && !state.missingProviders.contains(id))
+                .collect(Collectors.toSet());
+        if (!unresolved.isEmpty()) {
+            List<Long> existing = providerRepository.findExistingIds(unresolved);
+            state.knownProviders.addAll(existing);
+            existing.forEach(unresolved::remove);
+            state.missingProviders.addAll(unresolved);
+        }
+    }
+
+    private record Row(long line, FruitRequestDTO request) {
+    }
+
+    // index of each expected column in the header; a record too short for one reads it as empty
+    private record Columns(int name, int weightInKilos, int providerId) {
+
+        static Columns of(List<String> header) {
+            List<String> names = header.stream()
+                    .map(column -> column.replace("\uFEFF", "").strip())
+                    .toList();
+            int name = names.indexOf("name");
+            int weightInKilos = names.indexOf("weightInKilos");
+            int providerId = names.indexOf("providerId");
+            if (name < 0 || weightInKilos < 0 || providerId < 0) {
+                throw new InvalidBulkRequestException("The CSV header must name the columns name, weightInKilos and providerId");
+            }
+            return new Columns(name, weightInKilos, providerId);
+        }
+
+        String name(List<String> record) {
+            return field(record, name);
+        }
+
+        String weightInKilos(List<String> record) {
+            return field(record, weightInKilos);
+        }
+
+        String providerId(List<String> record) {
+            return field(record, providerId);
+        }
+
+        private static String field(List<String> record, int index) {
+            return index < record.size() ? record.get(index) : null;
+        }
+    }
+
+    private final class Import {
+
+        final Set<Long> knownProviders = new HashSet<>();
+        final Set<Long> missingProviders = new HashSet<>();
+        final List<FruitImportErrorDTO> errors = new ArrayList<>();
+        long rows;
+        long imported;
+        long failed;
+
+        void fail(long line, Map<String, String> rowErrors) {
+            failed++;
+            if (errors.size() < properties.maxReportedErrors()) {
+                errors.add(new FruitImportErrorDTO(line, rowErrors));
+            }
+        }
+
+        FruitImportResultDTO result() {
+            // rows with a missing provider are only found once their chunk is inserted, after later parse errors
+            List<FruitImportErrorDTO> byLine = errors.stream().sorted(Comparator.comparingLong(FruitImportErrorDTO::line)).toList();
+            return new FruitImportResultDTO(rows, imported, failed, byLine, failed > errors.size());
+        }
+    }
+}
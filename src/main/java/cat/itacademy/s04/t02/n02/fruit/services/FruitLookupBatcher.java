@@ -0,0 +1,145 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.FruitLookupProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * DataLoader-style batching of single-fruit lookups. A lookup that finds no query in flight is sent
+ * at once, so a caller alone never waits. Lookups arriving while a query runs open the next batch
+ * and join it; its first lookup sends it, as one IN query on its own thread, when the query ahead
+ * finishes or after {@code fruit.lookup.batch-window} at most, and hands every caller its row. A
+ * batch that reaches {@code fruit.lookup.max-batch-size} distinct ids is sent straight away;
+ * repeated ids share one slot. The size of every batch sent is recorded in the
+ * {@code fruit.lookup.batch.size} summary.
+ */
+@Component
+@Profile("!reactive")
+public class FruitLookupBatcher {
+
+    private final FruitRepository repository;
+    private final FruitLookupProperties properties;
+    private final DistributionSummary batchSizes;
+
+    // guarded by this: the batch still accepting ids, if any, and the last one sent while its query runs
+    private Batch collecting;
+    private Batch querying;
+
+    public FruitLookupBatcher(FruitRepository repository, FruitLookupProperties properties, MeterRegistry registry) {
+        this.repository = repository;
+        this.properties = properties;
+        this.batchSizes = DistributionSummary.builder("fruit.lookup.batch.size")
+                .description("Distinct ids resolved by each batched by-id query")
+                .baseUnit("ids")
+                .register(registry);
+    }
+
+    public Optional<FruitResponseDTO> findById(Long id) {
+        if (!properties.batchingEnabled() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // inside a transaction the row must be read by that transaction, not by another caller's batch
+            return repository.findDtoById(id);
+        }
+
+        Batch batch;
+        boolean leader;
+        CompletableFuture<Optional<FruitResponseDTO>> result;
+        synchronized (this) {
+            leader = collecting == null;
+            if (leader) {
+                collecting = new Batch();
+                if (querying == null) {
+                    collecting.ready.countDown();
+                } else {
+                    querying.next = collecting;
+                }
+            }
+            batch = collecting;
+            result = batch.add(id);
+            if (batch.size() >= properties.maxBatchSize()) {
+                collecting = null;
+                batch.ready.countDown();
+            }
+        }
+
+        if (leader) {
+            batch.awaitReadyOr(properties.batchWindow().toNanos());
+            synchronized (this) {
+                if (collecting == batch) {
+                    collecting = null;
+                }
+                querying = batch;
+            }
+            try {
+                dispatch(batch);
+            } finally {
+                synchronized (this) {
+                    if (querying == batch) {
+                        querying = null;
+                    }
+                    if (batch.next != null) {
+                        batch.next.ready.countDown();
+                    }
+                }
+            }
+        }
+
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    // the batch is closed by now, so nobody else touches its map
+    private void dispatch(Batch batch) {
+        batchSizes.record(batch.results.size());
+        try {
+            Map<Long, FruitResponseDTO> found = repository.findDtosByIdIn(batch.results.keySet()).stream()
+                    .collect(Collectors.toMap(FruitResponseDTO::id, Function.identity()));
+            batch.results.forEach((id, result) -> result.complete(Optional.ofNullable(found.get(id))));
+        } catch (RuntimeException ex) {
+            batch.results.values().forEach(result -> result.completeExceptionally(ex));
+        }
+    }
+
+    private static final class Batch {
+
+        private final Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> results = new HashMap<>();
+        // counted down once the batch may be sent: nothing ahead of it, the query ahead done, or full
+        private final CountDownLatch ready = new CountDownLatch(1);
+        // guarded by the batcher: the batch opened while this one was being queried
+        private Batch next;
+
+        private CompletableFuture<Optional<FruitResponseDTO>> add(Long id) {
+            return results.computeIfAbsent(id, key -> new CompletableFuture<>());
+        }
+
+        private int size() {
+            return results.size();
+        }
+
+        private void awaitReadyOr(long timeoutNanos) {
+            try {
+                ready.await(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                // send what has been collected; the callers are waiting on it
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
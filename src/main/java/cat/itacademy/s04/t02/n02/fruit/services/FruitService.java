@@ -1,78 +1,406 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.Catalog;
+import cat.itacademy.s04.t02.n02.fruit.cache.CatalogSnapshot;
+import cat.itacademy.s04.t02.n02.fruit.cache.FruitNameIndex;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderStatsAggregate;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight;
+import cat.itacademy.s04.t02.n02.fruit.config.FruitLookupProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.BulkResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRefDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSort;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStockDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SnapshotCheckDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConstraintViolations;
 import cat.itacademy.s04.t02.n02.fruit.exception.FruitNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidSearchException;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
 import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
 import cat.itacademy.s04.t02.n02.fruit.mapper.FruitMapper;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight.FRUITS;
 
 @Service
 @RequiredArgsConstructor
+@Profile("!reactive")
+@Timed("service.invocations")
 public class FruitService {
 
     private final FruitRepository repository;
     private final ProviderRepository providerRepository;
+    private final ProviderCache providerCache;
+    private final ProviderStatsAggregate providerStats;
+    private final FruitNameIndex nameIndex;
+    private final FruitLookupBatcher lookups;
+    private final SingleFlight reads;
+    private final CatalogSnapshot snapshot;
+    private final ResponseCache responses;
+    private final PaginationProperties pagination;
+    private final FruitLookupProperties lookupProperties;
 
+    // a transaction of its own rather than saveAndFlush's, so the stats delta is applied with the commit
+    @Transactional
     public FruitResponseDTO createFruit(FruitRequestDTO dto) {
-        Provider provider = providerRepository.findById(dto.providerId())
-                .orElseThrow(() -> new ProviderNotFoundException(dto.providerId()));
+        Fruit fruit = FruitMapper.toEntity(dto, providerRepository.getReferenceById(dto.providerId()));
+        Fruit saved;
+        try {
+            saved = repository.saveAndFlush(fruit);
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isForeignKey(ex)) {
+                throw ex;
+            }
+            throw new ProviderNotFoundException(dto.providerId());
+        }
+        providerStats.fruitAdded(dto.providerId(), dto.weightInKilos());
+        nameIndex.put(saved.getId(), saved.getName());
+        reads.fence(FRUITS);
+        FruitResponseDTO response = FruitMapper.toResponseDTO(saved);
+        snapshot.fruitSaved(response);
+        responses.fruitsChanged(List.of(dto.providerId()));
+        return response;
+    }
+
+    /**
+     * Resolves every referenced provider with a single IN query and lets Hibernate send the
+     * inserts as JDBC batches when the transaction flushes.
+     */
+    @Transactional
+    public List<FruitResponseDTO> createFruits(List<FruitRequestDTO> dtos) {
+        Set<Long> providerIds = dtos.stream()
+                .map(FruitRequestDTO::providerId)
+                .collect(Collectors.toSet());
+
+        Map<Long, Provider> providers = providerRepository.findAllById(providerIds)
+                .stream()
+                .collect(Collectors.toMap(Provider::getId, Function.identity()));
+
+        providerIds.stream()
+                .filter(providerId -> !providers.containsKey(providerId))
+                .findFirst()
+                .ifPresent(providerId -> {
+                    throw new ProviderNotFoundException(providerId);
+                });
+
+        List<FruitResponseDTO> response = repository.saveAll(toEntities(dtos, providers))
+                .stream()
+                .map(FruitMapper::toResponseDTO)
+                .toList();
+        return fruitsCreated(dtos, providerIds, response);
+    }
+
+    /**
+     * For callers that have already checked the providers exist, such as the CSV import: the fruits
+     * are inserted against the references given, without reading the providers again. The batch is
+     * flushed here, so a provider deleted since surfaces as a
+     * {@link DataIntegrityViolationException} on its foreign key.
+     */
+    @Transactional
+    public List<FruitResponseDTO> createFruits(List<FruitRequestDTO> dtos, Map<Long, Provider> providers) {
+        List<Fruit> saved = repository.saveAll(toEntities(dtos, providers));
+        repository.flush();
+        return fruitsCreated(dtos, providers.keySet(), saved.stream().map(FruitMapper::toResponseDTO).toList());
+    }
+
+    private static List<Fruit> toEntities(List<FruitRequestDTO> dtos, Map<Long, Provider> providers) {
+        return dtos.stream()
+                .map(dto -> FruitMapper.toEntity(dto, providers.get(dto.providerId())))
+                .toList();
+    }
 
-        Fruit fruit = FruitMapper.toEntity(dto, provider);
-        Fruit saved = repository.save(fruit);
-        return FruitMapper.toResponseDTO(saved);
+    private List<FruitResponseDTO> fruitsCreated(List<FruitRequestDTO> dtos, Collection<Long> providerIds,
+                                                List<FruitResponseDTO> response) {
+        dtos.forEach(dto -> providerStats.fruitAdded(dto.providerId(), dto.weightInKilos()));
+        response.forEach(fruit -> nameIndex.put(fruit.id(), fruit.name()));
+        reads.fence(FRUITS);
+        snapshot.fruitsSaved(response);
+        responses.fruitsChanged(providerIds);
+        return response;
     }
 
+    // not transactional: a caller waiting for its batch must not hold a connection meanwhile
     public FruitResponseDTO getFruitById(Long id) {
-        Fruit fruit = repository.findById(id)
+        return lookups.findById(id)
                 .orElseThrow(() -> new FruitNotFoundException(id));
+    }
 
-        return FruitMapper.toResponseDTO(fruit);
+    /**
+     * One IN query for every id; the fruits come back in the order asked for, without duplicates,
+     * and ids that do not exist are left out.
+     */
+    @Transactional(readOnly = true)
+    public List<FruitResponseDTO> getFruitsByIds(List<Long> ids) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.size() > lookupProperties.maxIds()) {
+            throw new InvalidSearchException("At most " + lookupProperties.maxIds() + " ids can be fetched at once");
+        }
+        Map<Long, FruitResponseDTO> found = repository.findDtosByIdIn(distinct).stream()
+                .collect(Collectors.toMap(FruitResponseDTO::id, Function.identity()));
+        return distinct.stream().map(found::get).filter(Objects::nonNull).toList();
     }
 
+    // the list reads come from the catalog snapshot when it is enabled; otherwise concurrent identical
+    // requests share one query (see SingleFlight), which also tells whether the provider exists
     public List<FruitResponseDTO> getFruitsByProviderId(Long providerId) {
-        if (!providerRepository.existsById(providerId)) {
-            throw new ProviderNotFoundException(providerId);
+        Optional<Catalog> catalog = snapshot.current();
+        if (catalog.isPresent()) {
+            return catalog.get().fruitsOf(providerId).orElseThrow(() -> new ProviderNotFoundException(providerId));
         }
-
-        return repository.findByProviderId(providerId)
-                .stream()
-                .map(FruitMapper::toResponseDTO)
-                .toList();
+        return reads.execute(FRUITS, "provider:" + providerId, () -> {
+            List<FruitResponseDTO> rows = repository.findDtosOfProvider(providerId);
+            if (rows.isEmpty()) {
+                throw new ProviderNotFoundException(providerId);
+            }
+            return rows.stream().filter(row -> row.id() != null).toList();
+        });
     }
 
     public List<FruitResponseDTO> getAllFruits() {
-        return repository.findAll()
-                .stream()
-                .map(FruitMapper::toResponseDTO)
-                .toList();
+        return snapshot.current()
+                .map(Catalog::fruits)
+                .orElseGet(() -> reads.execute(FRUITS, "all", repository::findAllDtos));
+    }
+
+    public CollectionVersionDTO getFruitsVersion(Long providerId) {
+        Optional<Catalog> catalog = snapshot.current();
+        if (catalog.isPresent()) {
+            return providerId == null
+                    ? catalog.get().fruitsVersion()
+                    : catalog.get().fruitsVersion(providerId).orElseThrow(() -> new ProviderNotFoundException(providerId));
+        }
+        if (providerId == null) {
+            return reads.execute(FRUITS, "version", repository::findCollectionVersion);
+        }
+        return reads.execute(FRUITS, "version:" + providerId, () -> repository.findCollectionVersionOfProvider(providerId)
+                .orElseThrow(() -> new ProviderNotFoundException(providerId)));
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<FruitResponseDTO> getFruitsPage(Long providerId, String after, int limit) {
+        Long afterId = CursorMapper.decode(after);
+        int pageSize = pagination.clamp(limit);
+
+        List<FruitResponseDTO> rows;
+        if (providerId == null) {
+            rows = repository.findDtosAfter(afterId, Limit.of(pageSize + 1));
+        } else {
+            if (!providerCache.existsById(providerId)) {
+                throw new ProviderNotFoundException(providerId);
+            }
+            rows = repository.findDtosByProviderIdAfter(providerId, afterId, Limit.of(pageSize + 1));
+        }
+
+        return CursorMapper.toPage(rows, pageSize, FruitResponseDTO::id);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<FruitResponseDTO> searchFruits(FruitSearchCriteria criteria, String after, int limit) {
+        if (criteria.minKg() != null && criteria.maxKg() != null && criteria.minKg() > criteria.maxKg()) {
+            throw new InvalidSearchException("minKg cannot be greater than maxKg");
+        }
+        FruitSort sort = criteria.sort();
+        int pageSize = pagination.clamp(limit);
+
+        List<FruitResponseDTO> rows = repository.search(criteria, CursorMapper.decodeKeyset(after, sort.key()), pageSize + 1);
+
+        return CursorMapper.toPageWithCursor(rows, pageSize,
+                row -> CursorMapper.encodeKeyset(sort.key(), row.id(), sort.field().valueOf(row)));
+    }
+
+    public SnapshotCheckDTO checkSnapshot() {
+        return snapshot.check();
+    }
+
+    // answered from FruitNameIndex, without a database round trip
+    public List<FruitSuggestionDTO> suggestFruits(String query, int limit) {
+        return nameIndex.suggest(query, limit);
     }
 
     public FruitResponseDTO updateFruit(Long id, FruitRequestDTO dto) {
-        Fruit fruit = repository.findById(id)
+        return updateFruit(id, dto, null);
+    }
+
+    /**
+     * With an expected version the update only applies while the row still carries it, so a client
+     * holding a stale representation gets a 412 instead of silently overwriting a newer change.
+     * The row is read (and locked) first so the provider stats can move the old weight to the new
+     * provider.
+     */
+    @Transactional
+    public FruitResponseDTO updateFruit(Long id, FruitRequestDTO dto, Long expectedVersion) {
+        FruitStockDTO before = repository.findStockByIdForUpdate(id)
+                .orElseThrow(() -> new FruitNotFoundException(id));
+        Provider provider = providerRepository.getReferenceById(dto.providerId());
+
+        int updated;
+        try {
+            updated = expectedVersion == null
+                    ? repository.updateById(id, dto.name(), dto.weightInKilos(), provider)
+                    : repository.updateByIdAndVersion(id, expectedVersion, dto.name(), dto.weightInKilos(), provider);
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isForeignKey(ex)) {
+                throw ex;
+            }
+            throw new ProviderNotFoundException(dto.providerId());
+        }
+        if (updated == 0) {
+            // the row exists and is locked, so only the version can have failed to match
+            throw new PreconditionFailedException("Fruit with id: " + id + " has changed since version " + expectedVersion);
+        }
+        providerStats.fruitChanged(before.providerId(), before.weightInKilos(), dto.providerId(), dto.weightInKilos());
+        nameIndex.put(id, dto.name());
+        reads.fence(FRUITS);
+
+        // without If-Match the version the update produced is unknown, so read it back
+        FruitResponseDTO response = expectedVersion == null
+                ? repository.findDtoById(id).orElseThrow(() -> new FruitNotFoundException(id))
+                : FruitMapper.toResponseDTO(id, dto, expectedVersion + 1);
+        snapshot.fruitSaved(response);
+        responses.fruitsChanged(List.of(before.providerId(), dto.providerId()));
+        return response;
+    }
+
+    /**
+     * Adds a signed delta to the stock with a single {@code weight = weight + delta} UPDATE that
+     * refuses to go below zero or past what the column holds, instead of reading the weight and
+     * writing it back. MySQL has no
+     * UPDATE ... RETURNING, so the row is read back afterwards: the UPDATE still holds its lock,
+     * so the read sees exactly the value it wrote. When the guard stopped the UPDATE, the same read
+     * tells a missing fruit (404) from insufficient stock (409).
+     */
+    @Transactional
+    public FruitResponseDTO adjustFruit(Long id, int deltaKilos) {
+        int updated = repository.adjustWeight(id, deltaKilos);
+        FruitResponseDTO fruit = repository.findDtoById(id)
                 .orElseThrow(() -> new FruitNotFoundException(id));
+        if (updated == 0) {
+            throw new ConflictException("Fruit with id: " + id + " has " + fruit.weightInKilos()
+                    + " kg in stock, cannot adjust by " + deltaKilos);
+        }
+        providerStats.fruitAdjusted(fruit.providerId(), deltaKilos);
+        reads.fence(FRUITS);
+        snapshot.fruitSaved(fruit);
+        responses.fruitsChanged(List.of(fruit.providerId()));
+        return fruit;
+    }
 
-        Provider provider = providerRepository.findById(dto.providerId())
-                .orElseThrow(() -> new ProviderNotFoundException(dto.providerId()));
+    /**
+     * One UPDATE over every matching fruit. Moving all the fruits of one provider to another
+     * ({@code where.providerId} plus {@code set.providerId}) is that single statement and nothing
+     * else; an id list is first read (and locked) to learn which providers lose fruits.
+     */
+    @Transactional
+    public BulkResultDTO updateFruits(FruitFilterDTO where, FruitChangesDTO set) {
+        checkFilter(where);
+        if (set.weightInKilos() == null && set.providerId() == null) {
+            throw new InvalidBulkRequestException("Nothing to update: set weightInKilos and/or providerId");
+        }
 
-        fruit.setName(dto.name());
-        fruit.setWeightInKilos(dto.weightInKilos());
-        fruit.setProvider(provider);
+        Set<Long> touchedProviders = new HashSet<>();
+        if (where.providerId() != null) {
+            touchedProviders.add(where.providerId());
+        } else {
+            repository.findRefsForUpdate(where).forEach(fruit -> touchedProviders.add(fruit.providerId()));
+        }
+        if (set.providerId() != null) {
+            touchedProviders.add(set.providerId());
+        }
 
-        Fruit saved = repository.save(fruit);
-        return FruitMapper.toResponseDTO(saved);
+        int updated;
+        try {
+            updated = repository.updateMatching(where, set);
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isForeignKey(ex)) {
+                throw ex;
+            }
+            throw new ProviderNotFoundException(set.providerId());
+        }
+        if (updated > 0) {
+            providerStats.refresh(touchedProviders);
+            reads.fence(FRUITS);
+            snapshot.refreshProviders(touchedProviders);
+            responses.fruitsChanged(touchedProviders);
+        }
+        return new BulkResultDTO(updated);
     }
 
+    /**
+     * The matching rows are read (and locked) for their ids, which the name index has to drop, then
+     * removed with one DELETE.
+     */
+    @Transactional
+    public BulkResultDTO deleteFruits(FruitFilterDTO where) {
+        checkFilter(where);
+        List<FruitRefDTO> fruits = repository.findRefsForUpdate(where);
+        if (fruits.isEmpty()) {
+            return new BulkResultDTO(0);
+        }
+
+        int deleted = repository.deleteMatching(where);
+        Set<Long> providerIds = fruits.stream().map(FruitRefDTO::providerId).collect(Collectors.toSet());
+        providerStats.refresh(providerIds);
+        List<Long> ids = fruits.stream().map(FruitRefDTO::id).toList();
+        nameIndex.removeAll(ids);
+        reads.fence(FRUITS);
+        snapshot.fruitsRemoved(ids);
+        responses.fruitsChanged(providerIds);
+        return new BulkResultDTO(deleted);
+    }
+
+    @Transactional
     public void deleteFruit(Long id) {
-        Fruit fruit = repository.findById(id)
+        FruitStockDTO before = repository.findStockByIdForUpdate(id)
                 .orElseThrow(() -> new FruitNotFoundException(id));
-        repository.delete(fruit);
+        repository.deleteByIdReturningCount(id);
+        providerStats.fruitRemoved(before.providerId(), before.weightInKilos());
+        nameIndex.remove(id);
+        reads.fence(FRUITS);
+        snapshot.fruitsRemoved(List.of(id));
+        responses.fruitsChanged(List.of(before.providerId()));
+    }
+
+    // an empty filter would match the whole table, which is never what a bulk request means
+    private static void checkFilter(FruitFilterDTO where) {
+        if (!where.hasIds() && where.providerId() == null) {
+            throw new InvalidBulkRequestException("A bulk operation needs ids and/or a providerId to select fruits");
+        }
+        if (where.hasIds() && where.ids().size() > FruitFilterDTO.MAX_IDS) {
+            throw new InvalidBulkRequestException("A bulk operation must not list more than " + FruitFilterDTO.MAX_IDS + " ids");
+        }
     }
-}
\ No newline at end of file
+}
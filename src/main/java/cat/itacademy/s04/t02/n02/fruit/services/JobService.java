@@ -0,0 +1,310 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.JobProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobChunkErrorDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobState;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobStatusDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobType;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.FruitNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import cat.itacademy.s04.t02.n02.fruit.exception.JobNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.TooManyJobsException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs bulk operations in the background, so the request that submits one returns at once. A job
+ * is cut into chunks of {@code fruit.jobs.chunk-size} items, each applied by the same
+ * {@link FruitService} or {@link ProviderService} method the synchronous endpoints use, in a
+ * transaction of its own: a chunk breaking a rule is rolled back and reported, and the job moves
+ * on to the next one. Any other failure is reported without its message, which may carry internals,
+ * and is logged instead.
+ * <p>
+ * {@code fruit.jobs.workers} threads run jobs and at most {@code fruit.jobs.queue-capacity} wait for
+ * one, holding at most {@code fruit.jobs.max-queued-items} items between them; a submission beyond
+ * either is refused with {@link TooManyJobsException} rather than queued.
+ * Finished jobs can be looked up for {@code fruit.jobs.retention}. Jobs live in memory only, so a
+ * restart loses them, and the ones running are stopped between two chunks.
+ */
+@Slf4j
+@Service
+@Profile("!reactive")
+public class JobService implements MeterBinder {
+
+    private final FruitService fruitService;
+    private final ProviderService providerService;
+    private final JobProperties properties;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // items of the jobs queued or running, released when a job finishes and drops them
+    private final AtomicLong queuedItems = new AtomicLong();
+
+    public JobService(FruitService fruitService, ProviderService providerService, JobProperties properties) {
+        this.fruitService = fruitService;
+        this.providerService = providerService;
+        this.properties = properties;
+        this.workers = new ThreadPoolExecutor(properties.workers(), properties.workers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()), Thread.ofPlatform().name("job-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Checks the request, queues the job and returns it as {@code QUEUED}.
+     */
+    public JobStatusDTO submit(JobRequestDTO request) {
+        JobType type = JobType.parse(request.type());
+        Job job = new Job(UUID.randomUUID().toString(), type, plan(type, request), Instant.now());
+        if (queuedItems.addAndGet(job.items) > properties.maxQueuedItems()) {
+            queuedItems.addAndGet(-job.items);
+            throw tooManyJobs();
+        }
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> job.run(() -> queuedItems.addAndGet(-job.items)));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.id);
+            queuedItems.addAndGet(-job.items);
+            throw tooManyJobs();
+        }
+        return job.status();
+    }
+
+    public JobStatusDTO getJob(String id) {
+        return Optional.ofNullable(jobs.get(id))
+                .map(Job::status)
+                .orElseThrow(() -> new JobNotFoundException(id));
+    }
+
+    @Scheduled(initialDelayString = "${fruit.jobs.retention}", fixedDelayString = "${fruit.jobs.retention}")
+    public void forgetExpiredJobs() {
+        Instant expired = Instant.now().minus(properties.retention());
+        jobs.values().removeIf(job -> job.finishedBefore(expired));
+    }
+
+    /**
+     * The client is told to come back once the running jobs, at the rate they are going, should
+     * have worked through the items already queued; a second while none has measured a rate yet.
+     */
+    private TooManyJobsException tooManyJobs() {
+        List<JobStatusDTO> running = jobs.values().stream()
+                .map(Job::status)
+                .filter(job -> job.state() == JobState.RUNNING)
+                .toList();
+        long queued = queuedItems.get();
+        long left = Math.max(0, queued - running.stream().mapToLong(JobStatusDTO::processedItems).sum());
+        double itemsPerSecond = running.stream().mapToDouble(JobStatusDTO::itemsPerSecond).sum();
+        long retryAfterSeconds = itemsPerSecond > 0 ? Math.max(1, (long) Math.ceil(left / itemsPerSecond)) : 1;
+        return new TooManyJobsException(workers.getQueue().size(), queued, retryAfterSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // fruit.jobs.queued / fruit.jobs.running / fruit.jobs.items on the metrics endpoint
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("fruit.jobs.queued", workers, executor -> executor.getQueue().size())
+                .description("Bulk jobs waiting for a worker")
+                .register(registry);
+        Gauge.builder("fruit.jobs.running", workers, ThreadPoolExecutor::getActiveCount)
+                .description("Bulk jobs being run")
+                .register(registry);
+        Gauge.builder("fruit.jobs.items", queuedItems, AtomicLong::get)
+                .description("Items held by the bulk jobs queued or running")
+                .register(registry);
+    }
+
+    private List<Chunk> plan(JobType type, JobRequestDTO request) {
+        return switch (type) {
+            case CREATE_FRUITS -> chunks(items(type, request.fruits(), "fruits"), fruits -> fruitService.createFruits(fruits).size());
+            case CREATE_PROVIDERS ->
+                    chunks(items(type, request.providers(), "providers"), providers -> providerService.createProviders(providers).size());
+            case UPDATE_FRUITS -> {
+                FruitChangesDTO set = request.set();
+                if (set == null || (set.weightInKilos() == null && set.providerId() == null)) {
+                    throw new InvalidBulkRequestException("Nothing to update: set weightInKilos and/or providerId");
+                }
+                yield byFilter(type, request.where(), where -> fruitService.updateFruits(where, set).affected());
+            }
+            case DELETE_FRUITS -> byFilter(type, request.where(), where -> fruitService.deleteFruits(where).affected());
+        };
+    }
+
+    private <T> List<T> items(JobType type, List<T> items, String field) {
+        if (items == null || items.isEmpty()) {
+            throw new InvalidBulkRequestException("A " + type.param() + " job needs " + field);
+        }
+        if (items.size() > properties.maxItems()) {
+            throw new InvalidBulkRequestException("A job must not carry more than " + properties.maxItems() + " items");
+        }
+        return items;
+    }
+
+    private <T> List<Chunk> chunks(List<T> items, ToIntFunction<List<T>> apply) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += properties.chunkSize()) {
+            List<T> slice = items.subList(from, Math.min(items.size(), from + properties.chunkSize()));
+            chunks.add(new Chunk(from, slice.size(), () -> apply.applyAsInt(slice)));
+        }
+        return chunks;
+    }
+
+    private List<Chunk> byFilter(JobType type, FruitFilterDTO where, ToIntFunction<FruitFilterDTO> apply) {
+        if (where == null || (!where.hasIds() && where.providerId() == null)) {
+            throw new InvalidBulkRequestException("A " + type.param() + " job needs ids and/or a providerId to select fruits");
+        }
+        if (!where.hasIds()) {
+            // the fruits of one provider are a single set-based statement however many there are
+            return List.of(new Chunk(null, 0, () -> apply.applyAsInt(where)));
+        }
+        return chunks(items(type, where.ids(), "ids"), ids -> apply.applyAsInt(new FruitFilterDTO(ids, where.providerId())));
+    }
+
+    // first is the position of the chunk's first item in the request; null with no items listed
+    private record Chunk(Integer first, int size, IntSupplier apply) {
+
+        Integer last() {
+            return first == null ? null : first + size - 1;
+        }
+    }
+
+    private static final class Job {
+
+        final String id;
+        final JobType type;
+        final Instant submittedAt;
+        final int totalChunks;
+        final long items;
+
+        // guarded by this, like every field below: written by the worker, read by status()
+        private List<Chunk> chunks;
+        private JobState state = JobState.QUEUED;
+        private Instant startedAt;
+        private Instant finishedAt;
+        private int completedChunks;
+        private int failedChunks;
+        private long processedItems;
+        private long affectedRows;
+        private final List<JobChunkErrorDTO> errors = new ArrayList<>();
+
+        Job(String id, JobType type, List<Chunk> chunks, Instant submittedAt) {
+            this.id = id;
+            this.type = type;
+            this.chunks = chunks;
+            this.totalChunks = chunks.size();
+            this.items = chunks.stream().mapToLong(Chunk::size).sum();
+            this.submittedAt = submittedAt;
+        }
+
+        // released is called once the items are dropped, before the job is seen to be finished
+        void run(Runnable released) {
+            List<Chunk> work;
+            synchronized (this) {
+                state = JobState.RUNNING;
+                startedAt = Instant.now();
+                work = chunks;
+            }
+            int i = 0;
+            try {
+                for (; i < work.size(); i++) {
+                    Chunk chunk = work.get(i);
+                    if (Thread.currentThread().isInterrupted()) {
+                        stopped(i, chunk, "the application is shutting down");
+                        break;
+                    }
+                    try {
+                        int rows = chunk.apply().getAsInt();
+                        applied(chunk, rows);
+                    } catch (RuntimeException ex) {
+                        failed(i, chunk, describe(ex));
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    if (completedChunks + failedChunks < totalChunks) {
+                        // an Error escaped a chunk: it and the ones after it are not applied
+                        stopped(i, work.get(i), "an unexpected error");
+                    }
+                    // the request items are not needed any more; only the counters are kept
+                    chunks = null;
+                    released.run();
+                    finishedAt = Instant.now();
+                    state = failedChunks == 0 ? JobState.SUCCEEDED
+                            : completedChunks == 0 ? JobState.FAILED
+                            : JobState.PARTIALLY_FAILED;
+                }
+            }
+        }
+
+        synchronized boolean finishedBefore(Instant instant) {
+            return finishedAt != null && finishedAt.isBefore(instant);
+        }
+
+        synchronized JobStatusDTO status() {
+            double progress = totalChunks == 0 ? 1 : (double) (completedChunks + failedChunks) / totalChunks;
+            double seconds = startedAt == null ? 0
+                    : Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toNanos() / 1e9;
+            double itemsPerSecond = seconds > 0 ? processedItems / seconds : 0;
+            return new JobStatusDTO(id, type, state, totalChunks, completedChunks, failedChunks, processedItems, affectedRows,
+                    progress, itemsPerSecond, submittedAt, startedAt, finishedAt, List.copyOf(errors));
+        }
+
+        private synchronized void applied(Chunk chunk, int rows) {
+            completedChunks++;
+            // a chunk selecting by provider lists no items: the rows it touched are what it processed
+            processedItems += chunk.size() > 0 ? chunk.size() : rows;
+            affectedRows += rows;
+        }
+
+        private synchronized void failed(int index, Chunk chunk, String error) {
+            failedChunks++;
+            processedItems += chunk.size();
+            errors.add(new JobChunkErrorDTO(index, chunk.first(), chunk.last(), error));
+        }
+
+        private synchronized void stopped(int index, Chunk first, String reason) {
+            int remaining = totalChunks - index;
+            failedChunks += remaining;
+            errors.add(new JobChunkErrorDTO(index, first.first(), null, "Stopped with " + remaining + " chunks left: " + reason));
+        }
+
+        // the rules a chunk can break are the client's to read; anything else may carry internals
+        private String describe(RuntimeException ex) {
+            if (ex instanceof ProviderNotFoundException || ex instanceof FruitNotFoundException
+                    || ex instanceof ConflictException || ex instanceof InvalidBulkRequestException) {
+                return ex.getMessage();
+            }
+            log.warn("Chunk of job {} failed", id, ex);
+            return "Unexpected error, see the application log";
+        }
+    }
+}
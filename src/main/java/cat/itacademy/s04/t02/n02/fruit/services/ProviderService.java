@@ -1,13 +1,27 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CacheStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderInclude;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.StockStatsDTO;
 
 import java.util.List;
 
 public interface ProviderService {
     ProviderResponseDTO createProvider(ProviderRequestDTO dto);
+    List<ProviderResponseDTO> createProviders(List<ProviderRequestDTO> dtos);
     List<ProviderResponseDTO> getAllProviders();
-    ProviderResponseDTO updateProvider(Long id, ProviderRequestDTO dto);
+    List<ProviderDetailsDTO> getProviders(ProviderInclude include);
+    CursorPageResponseDTO<ProviderResponseDTO> getProvidersPage(String after, int limit);
+    CollectionVersionDTO getProvidersVersion();
+    ProviderResponseDTO updateProvider(Long id, ProviderRequestDTO dto, Long expectedVersion);
     void deleteProvider(Long id);
+    StockStatsDTO getStockStats();
+    ProviderStatsDTO getStockStats(Long id);
+    CacheStatsDTO getCacheStats();
 }
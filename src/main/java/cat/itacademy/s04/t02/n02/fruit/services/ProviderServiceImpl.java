@@ -1,66 +1,251 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.Catalog;
+import cat.itacademy.s04.t02.n02.fruit.cache.CatalogSnapshot;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderStatsAggregate;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight;
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CacheStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderDetailsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderInclude;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.StockStatsDTO;
 import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConstraintViolations;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
 import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
 import cat.itacademy.s04.t02.n02.fruit.mapper.ProviderMapper;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight.FRUITS;
+import static cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight.PROVIDERS;
 
 @RequiredArgsConstructor
 @Service
+@Profile("!reactive")
+@Timed("service.invocations")
 public class ProviderServiceImpl implements ProviderService {
 
     private final ProviderRepository providerRepository;
     private final FruitRepository fruitRepository;
+    private final ProviderCache providerCache;
+    private final ProviderStatsAggregate providerStats;
+    private final SingleFlight reads;
+    private final CatalogSnapshot snapshot;
+    private final ResponseCache responses;
+    private final PaginationProperties pagination;
 
+    // every write runs in a transaction: the stats deltas are applied when it commits, and a reconcile
+    // racing with that commit waits for them instead of counting the row twice
     @Override
+    @Transactional
     public ProviderResponseDTO createProvider(ProviderRequestDTO dto){
-        if(providerRepository.existsByName(dto.name())) {
+        Provider entity = ProviderMapper.toEntity(dto);
+        Provider saved;
+        try {
+            saved = providerRepository.saveAndFlush(entity);
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isUniqueKey(ex)) {
+                throw ex;
+            }
             throw new ConflictException("Provider with name: " + dto.name() + " already exists");
         }
+        ProviderResponseDTO response = ProviderMapper.toResponseDTO(saved);
+        providerCache.put(response);
+        providerStats.providerSaved(response.id(), response.country());
+        snapshot.providerSaved(response);
+        responses.providersChanged();
+        fenceReads();
+        return response;
+    }
 
-        Provider entity = ProviderMapper.toEntity(dto);
-        Provider saved = providerRepository.save(entity);
-        return ProviderMapper.toResponseDTO(saved);
+    @Override
+    @Transactional
+    public List<ProviderResponseDTO> createProviders(List<ProviderRequestDTO> dtos) {
+        Set<String> names = new HashSet<>();
+        for (ProviderRequestDTO dto : dtos) {
+            if (!names.add(dto.name())) {
+                throw new ConflictException("Provider with name: " + dto.name() + " is repeated in the batch");
+            }
+        }
+
+        List<String> existing = providerRepository.findExistingNames(names);
+        if (!existing.isEmpty()) {
+            throw new ConflictException("Provider with name: " + existing.getFirst() + " already exists");
+        }
+
+        List<Provider> entities = dtos.stream().map(ProviderMapper::toEntity).toList();
+        List<ProviderResponseDTO> response = providerRepository.saveAll(entities).stream().map(ProviderMapper::toResponseDTO).toList();
+        response.forEach(provider -> {
+            providerCache.put(provider);
+            providerStats.providerSaved(provider.id(), provider.country());
+            snapshot.providerSaved(provider);
+        });
+        responses.providersChanged();
+        fenceReads();
+        return response;
     }
 
+    // like the fruit lists: from the catalog snapshot when enabled, otherwise a cold cache is loaded
+    // by one query however many callers ask
     @Override
     public List<ProviderResponseDTO> getAllProviders() {
-        return providerRepository.findAll().stream().map(ProviderMapper::toResponseDTO).toList();
+        return snapshot.current()
+                .map(Catalog::providers)
+                .orElseGet(() -> reads.execute(PROVIDERS, "all", providerCache::findAll));
     }
 
+    /**
+     * Every provider with its fruits and/or totals embedded, in at most two queries however many
+     * providers there are: the providers, grouped with their totals when only counts are asked for,
+     * then every fruit, whose totals are summed in memory. Served from the catalog snapshot when it
+     * is enabled. Read in the fruit scope, which every fruit and provider write fences.
+     */
     @Override
-    public ProviderResponseDTO updateProvider(Long id, ProviderRequestDTO dto){
-        Provider provider = providerRepository.findById(id)
-                .orElseThrow(() -> new ProviderNotFoundException(id));
+    public List<ProviderDetailsDTO> getProviders(ProviderInclude include) {
+        Optional<Catalog> catalog = snapshot.current();
+        if (catalog.isPresent()) {
+            return catalog.get().providers().stream()
+                    .map(provider -> ProviderMapper.toDetailsDTO(provider, catalog.get().fruitsOf(provider.id()).orElse(List.of()), include))
+                    .toList();
+        }
+        return reads.execute(FRUITS, "providers:" + include, () -> {
+            if (include.counts() && !include.fruits()) {
+                return providerRepository.findAllDetailsWithCounts();
+            }
+            Map<Long, List<FruitResponseDTO>> fruits = include.fruits()
+                    ? fruitRepository.findAllDtos().stream().collect(Collectors.groupingBy(FruitResponseDTO::providerId))
+                    : Map.of();
+            return providerRepository.findAllDtos().stream()
+                    .map(provider -> ProviderMapper.toDetailsDTO(provider, fruits.getOrDefault(provider.id(), List.of()), include))
+                    .toList();
+        });
+    }
 
-        if (providerRepository.existsByNameAndIdNot(dto.name(),id)){
-            throw new ConflictException("Provider with name: " + dto.name() + " already exists");
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponseDTO<ProviderResponseDTO> getProvidersPage(String after, int limit) {
+        int pageSize = pagination.clamp(limit);
+        List<ProviderResponseDTO> items = providerRepository.findDtosAfter(CursorMapper.decode(after), Limit.of(pageSize + 1));
+        return CursorMapper.toPage(items, pageSize, ProviderResponseDTO::id);
+    }
+
+    @Override
+    public CollectionVersionDTO getProvidersVersion() {
+        Optional<Catalog> catalog = snapshot.current();
+        if (catalog.isPresent()) {
+            return catalog.get().providersVersion();
         }
+        return reads.execute(PROVIDERS, "version", () -> providerCache.findAllIfComplete()
+                .map(ProviderMapper::toCollectionVersion)
+                .orElseGet(providerRepository::findCollectionVersion));
+    }
 
-        provider.setName(dto.name());
-        provider.setCountry(dto.country());
+    /**
+     * Like {@code FruitService.updateFruit}, the update and the read-back share one transaction: the
+     * UPDATE holds the row lock until commit, so the body and ETag returned are the ones this write
+     * produced, never another writer's, and a concurrent delete cannot make it answer 404.
+     */
+    @Override
+    @Transactional
+    public ProviderResponseDTO updateProvider(Long id, ProviderRequestDTO dto, Long expectedVersion){
+        int updated;
+        try {
+            updated = expectedVersion == null
+                    ? providerRepository.updateById(id, dto.name(), dto.country())
+                    : providerRepository.updateByIdAndVersion(id, expectedVersion, dto.name(), dto.country());
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isUniqueKey(ex)) {
+                throw ex;
+            }
+            throw new ConflictException("Provider with name: " + dto.name() + " already exists");
+        }
+        if (updated == 0) {
+            if (expectedVersion == null || !providerRepository.existsById(id)) {
+                throw new ProviderNotFoundException(id);
+            }
+            throw new PreconditionFailedException("Provider with id: " + id + " has changed since version " + expectedVersion);
+        }
 
-        Provider saved = providerRepository.save(provider);
-        return ProviderMapper.toResponseDTO(saved);
+        providerCache.evictAndMarkIncomplete(id);
+        providerStats.providerSaved(id, dto.country());
+        fenceReads();
+        // without If-Match the version the update produced is unknown, so read it back
+        ProviderResponseDTO response = expectedVersion == null
+                ? providerRepository.findDtoById(id).orElseThrow(() -> new ProviderNotFoundException(id))
+                : ProviderMapper.toResponseDTO(id, dto, expectedVersion + 1);
+        snapshot.providerSaved(response);
+        responses.providersChanged();
+        return response;
     }
 
     @Override
+    @Transactional
     public void deleteProvider(Long id) {
-        Provider provider = providerRepository.findById(id)
-                .orElseThrow(() -> new ProviderNotFoundException(id));
-
-        if (fruitRepository.existsByProviderId(id)) {
+        int deleted;
+        try {
+            deleted = providerRepository.deleteByIdReturningCount(id);
+        } catch (DataIntegrityViolationException ex) {
+            if (!ConstraintViolations.isForeignKey(ex)) {
+                throw ex;
+            }
+            // fruits.provider_id references the row
             throw new ConflictException("Provider with id: " + id + " cannot be deleted because it has associated fruits");
         }
+        if (deleted == 0) {
+            throw new ProviderNotFoundException(id);
+        }
+
+        providerCache.evict(id);
+        providerStats.providerRemoved(id);
+        snapshot.providerRemoved(id);
+        responses.providerRemoved(id);
+        fenceReads();
+    }
+
+    @Override
+    public StockStatsDTO getStockStats() {
+        return providerStats.findAll();
+    }
+
+    @Override
+    public ProviderStatsDTO getStockStats(Long id) {
+        return providerStats.findByProviderId(id).orElseThrow(() -> new ProviderNotFoundException(id));
+    }
+
+    @Override
+    public CacheStatsDTO getCacheStats() {
+        return providerCache.stats();
+    }
 
-        providerRepository.delete(provider);
+    // a provider appearing or disappearing also changes whether its fruit list is found, and the
+    // provider lists with embedded fruits (read in the fruit scope) show every provider column
+    private void fenceReads() {
+        reads.fence(PROVIDERS);
+        reads.fence(FRUITS);
     }
 }
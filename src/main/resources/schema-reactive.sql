@@ -0,0 +1,30 @@
+-- Tables of the reactive profile, matching what Hibernate generates for Provider and Fruit on MySQL.
+-- The *_seq tables back the pooled id sequences both stacks allocate from (see SequenceIdAllocator).
+create table if not exists providers (
+    id bigint not null,
+    country varchar(255) not null,
+    name varchar(255) not null,
+    version bigint not null,
+    primary key (id),
+    constraint uk_providers_name unique (name),
+    index idx_providers_country (country, id)
+);
+
+create table if not exists fruits (
+    id bigint not null,
+    name varchar(255) not null,
+    provider_id bigint not null,
+    version bigint not null,
+    weight_in_kilos integer not null,
+    primary key (id),
+    index idx_fruits_name (name, id),
+    index idx_fruits_weight (weight_in_kilos, id),
+    index idx_fruits_provider_weight (provider_id, weight_in_kilos, id),
+    constraint fk_fruits_provider foreign key (provider_id) references providers (id)
+);
+
+create table if not exists providers_seq (next_val bigint);
+insert into providers_seq (next_val) select 1 from dual where not exists (select * from providers_seq);
+
+create table if not exists fruits_seq (next_val bigint);
+insert into fruits_seq (next_val) select 1 from dual where not exists (select * from fruits_seq);
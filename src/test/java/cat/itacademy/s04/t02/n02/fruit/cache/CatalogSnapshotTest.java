@@ -0,0 +1,168 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.CatalogSnapshotProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SnapshotCheckDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogSnapshotTest {
+
+    @Mock
+    private FruitRepository fruitRepository;
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void aDisabledSnapshotShouldNeverLoadNorServe() {
+        CatalogSnapshot snapshot = snapshot(false);
+
+        snapshot.reload();
+        snapshot.fruitSaved(fruit(1L, 10L, 0L));
+
+        assertTrue(snapshot.current().isEmpty());
+        assertThrows(ConflictException.class, snapshot::check);
+        verifyNoInteractions(fruitRepository, providerRepository);
+    }
+
+    @Test
+    void committedWritesShouldBePublishedAsNewCatalogs() {
+        CatalogSnapshot snapshot = loaded(List.of(fruit(1L, 10L, 0L)), List.of(provider(10L), provider(20L)));
+        Catalog before = snapshot.current().orElseThrow();
+
+        snapshot.fruitSaved(fruit(2L, 20L, 0L));
+        snapshot.fruitSaved(fruit(1L, 20L, 1L));
+        snapshot.providerSaved(provider(30L));
+
+        Catalog after = snapshot.current().orElseThrow();
+        assertEquals(List.of(1L, 2L), ids(after.fruitsOf(20L).orElseThrow()));
+        assertEquals(List.of(), after.fruitsOf(10L).orElseThrow());
+        assertEquals(3, after.providers().size());
+        assertEquals(List.of(1L), ids(before.fruits()));
+    }
+
+    @Test
+    void aDeletedFruitShouldNotComeBackFromALateWrite() {
+        CatalogSnapshot snapshot = loaded(List.of(fruit(1L, 10L, 0L)), List.of(provider(10L)));
+
+        snapshot.fruitsRemoved(List.of(1L));
+        // the hook of an update that committed before the delete runs last
+        snapshot.fruitSaved(fruit(1L, 10L, 1L));
+
+        assertEquals(List.of(), snapshot.current().orElseThrow().fruits());
+    }
+
+    @Test
+    void aDeletedProviderShouldNotComeBackFromALateWrite() {
+        CatalogSnapshot snapshot = loaded(List.of(), List.of(provider(10L), provider(20L)));
+
+        snapshot.providerRemoved(10L);
+        // the hook of an update that committed before the delete runs last
+        snapshot.providerSaved(provider(10L));
+
+        Catalog catalog = snapshot.current().orElseThrow();
+        assertEquals(List.of(provider(20L)), catalog.providers());
+        assertTrue(catalog.provider(10L).isEmpty());
+    }
+
+    @Test
+    void writesCommittedDuringALoadShouldBeReplayedOnIt() {
+        CatalogSnapshot snapshot = snapshot(true);
+        when(providerRepository.findAllDtos()).thenReturn(List.of(provider(10L)));
+        when(fruitRepository.findAllDtos()).thenAnswer(invocation -> {
+            // commits while the table is read: the rows returned may or may not include it
+            snapshot.fruitSaved(fruit(2L, 10L, 0L));
+            snapshot.fruitSaved(fruit(1L, 10L, 1L));
+            return List.of(fruit(1L, 10L, 0L));
+        });
+
+        snapshot.reload();
+
+        Catalog catalog = snapshot.current().orElseThrow();
+        assertEquals(List.of(1L, 2L), ids(catalog.fruits()));
+        assertEquals(1L, catalog.fruitsOf(10L).orElseThrow().getFirst().version());
+    }
+
+    @Test
+    void aBulkUpdateShouldReReadTheFruitsOfTheProvidersItTouched() {
+        CatalogSnapshot snapshot = loaded(List.of(fruit(1L, 10L, 0L), fruit(2L, 10L, 0L)), List.of(provider(10L), provider(20L)));
+        when(fruitRepository.findDtosByProviderIdIn(Set.of(10L, 20L))).thenReturn(List.of(fruit(1L, 20L, 1L), fruit(2L, 20L, 1L)));
+
+        snapshot.refreshProviders(List.of(10L, 20L));
+
+        Catalog catalog = snapshot.current().orElseThrow();
+        assertEquals(List.of(), catalog.fruitsOf(10L).orElseThrow());
+        assertEquals(List.of(1L, 2L), ids(catalog.fruitsOf(20L).orElseThrow()));
+    }
+
+    @Test
+    void checkShouldReportOnlyTheRowsThatStillDifferWhenReadAgain() {
+        CatalogSnapshot snapshot = loaded(List.of(fruit(1L, 10L, 0L), fruit(2L, 10L, 0L)), List.of(provider(10L)));
+        // fruit 1 was changed behind the application's back; fruit 3 is missing from the snapshot
+        // the first time round only, as its write hook runs meanwhile
+        when(fruitRepository.findAllDtos()).thenReturn(List.of(fruit(1L, 10L, 5L), fruit(2L, 10L, 0L), fruit(3L, 10L, 0L)));
+        when(fruitRepository.findDtosByIdIn(Set.of(1L, 3L))).thenAnswer(invocation -> {
+            snapshot.fruitSaved(fruit(3L, 10L, 0L));
+            return List.of(fruit(1L, 10L, 5L), fruit(3L, 10L, 0L));
+        });
+
+        SnapshotCheckDTO check = snapshot.check();
+
+        assertFalse(check.consistent());
+        assertEquals(List.of(1L), check.mismatchedFruitIds());
+        assertEquals(List.of(), check.mismatchedProviderIds());
+        assertEquals(3, check.fruits());
+    }
+
+    @Test
+    void checkShouldPassWhenTheSnapshotMatches() {
+        CatalogSnapshot snapshot = loaded(List.of(fruit(1L, 10L, 0L)), List.of(provider(10L)));
+
+        SnapshotCheckDTO check = snapshot.check();
+
+        assertTrue(check.consistent());
+        verify(fruitRepository, never()).findDtosByIdIn(any());
+    }
+
+    private CatalogSnapshot loaded(List<FruitResponseDTO> fruits, List<ProviderResponseDTO> providers) {
+        CatalogSnapshot snapshot = snapshot(true);
+        when(fruitRepository.findAllDtos()).thenReturn(fruits);
+        when(providerRepository.findAllDtos()).thenReturn(providers);
+        snapshot.reload();
+        return snapshot;
+    }
+
+    private CatalogSnapshot snapshot(boolean enabled) {
+        return new CatalogSnapshot(fruitRepository, providerRepository, new CatalogSnapshotProperties(enabled), transactionManager);
+    }
+
+    private static List<Long> ids(List<FruitResponseDTO> fruits) {
+        return fruits.stream().map(FruitResponseDTO::id).toList();
+    }
+
+    private static FruitResponseDTO fruit(Long id, Long providerId, Long version) {
+        return new FruitResponseDTO(id, "Fruit-" + id, 1, providerId, version);
+    }
+
+    private static ProviderResponseDTO provider(Long id) {
+        return new ProviderResponseDTO(id, "Provider-" + id, "Spain", 0L);
+    }
+}
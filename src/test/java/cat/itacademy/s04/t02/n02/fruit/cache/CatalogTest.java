@@ -0,0 +1,89 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogTest {
+
+    private final Catalog catalog = Catalog.of(
+            List.of(fruit(1L, 10L, 0L), fruit(2L, 20L, 0L), fruit(3L, 10L, 0L)),
+            List.of(provider(10L, 0L), provider(20L, 0L), provider(30L, 0L)));
+
+    @Test
+    void shouldGroupFruitsByProviderInIdOrder() {
+        assertEquals(List.of(1L, 2L, 3L), ids(catalog.fruits()));
+        assertEquals(List.of(1L, 3L), ids(catalog.fruitsOf(10L).orElseThrow()));
+        assertEquals(List.of(), catalog.fruitsOf(30L).orElseThrow());
+        assertTrue(catalog.fruitsOf(99L).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> catalog.fruits().set(0, fruit(9L, 10L, 0L)));
+    }
+
+    @Test
+    void insertedAndMovedFruitsShouldLandInTheRightListsWithoutTouchingTheOriginal() {
+        Catalog next = catalog.withFruits(List.of(fruit(4L, 20L, 0L), fruit(1L, 20L, 1L)));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(next.fruits()));
+        assertEquals(List.of(3L), ids(next.fruitsOf(10L).orElseThrow()));
+        assertEquals(List.of(1L, 2L, 4L), ids(next.fruitsOf(20L).orElseThrow()));
+        assertEquals(fingerprint(next.fruits()), next.fruitsVersion());
+        assertEquals(fingerprint(next.fruitsOf(20L).orElseThrow()), next.fruitsVersion(20L).orElseThrow());
+
+        assertEquals(List.of(1L, 3L), ids(catalog.fruitsOf(10L).orElseThrow()));
+        assertEquals(new CollectionVersionDTO(3L, 6L, 0L), catalog.fruitsVersion());
+    }
+
+    @Test
+    void aRowNoNewerThanTheOneHeldShouldBeIgnored() {
+        Catalog updated = catalog.withFruits(List.of(fruit(1L, 20L, 2L)));
+
+        assertSame(updated, updated.withFruits(List.of(fruit(1L, 10L, 1L))));
+        assertSame(updated, updated.withFruits(List.of(fruit(1L, 10L, 2L))));
+        assertEquals(20L, updated.fruit(1L).orElseThrow().providerId());
+    }
+
+    @Test
+    void removedFruitsShouldLeaveEveryList() {
+        Catalog next = catalog.withoutFruits(List.of(1L, 2L, 99L));
+
+        assertEquals(List.of(3L), ids(next.fruits()));
+        assertEquals(List.of(3L), ids(next.fruitsOf(10L).orElseThrow()));
+        assertEquals(List.of(), next.fruitsOf(20L).orElseThrow());
+        assertEquals(fingerprint(next.fruits()), next.fruitsVersion());
+        assertSame(next, next.withoutFruits(List.of(1L)));
+    }
+
+    @Test
+    void providersShouldBeAddedReplacedAndRemoved() {
+        Catalog next = catalog.withProvider(provider(40L, 0L)).withProvider(provider(10L, 1L)).withoutProvider(30L);
+
+        assertEquals(List.of(10L, 20L, 40L), next.providers().stream().map(ProviderResponseDTO::id).toList());
+        assertEquals(1L, next.provider(10L).orElseThrow().version());
+        assertEquals(List.of(), next.fruitsOf(40L).orElseThrow());
+        assertTrue(next.fruitsOf(30L).isEmpty());
+        assertEquals(new CollectionVersionDTO(3L, 70L, 1L), next.providersVersion());
+    }
+
+    private static CollectionVersionDTO fingerprint(List<FruitResponseDTO> fruits) {
+        return new CollectionVersionDTO((long) fruits.size(),
+                fruits.stream().mapToLong(FruitResponseDTO::id).sum(),
+                fruits.stream().mapToLong(FruitResponseDTO::version).sum());
+    }
+
+    private static List<Long> ids(List<FruitResponseDTO> fruits) {
+        return fruits.stream().map(FruitResponseDTO::id).toList();
+    }
+
+    private static FruitResponseDTO fruit(Long id, Long providerId, Long version) {
+        return new FruitResponseDTO(id, "Fruit-" + id, 1, providerId, version);
+    }
+
+    private static ProviderResponseDTO provider(Long id, Long version) {
+        return new ProviderResponseDTO(id, "Provider-" + id, "Spain", version);
+    }
+}
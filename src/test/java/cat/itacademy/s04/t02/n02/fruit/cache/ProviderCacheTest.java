@@ -0,0 +1,123 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ProviderCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.CacheStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProviderCacheTest {
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    private ProviderCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ProviderCache(providerRepository, new ProviderCacheProperties(2, Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void shouldLoadProviderOnceAndServeHitsFromMemory() {
+        when(providerRepository.findDtoById(1L)).thenReturn(Optional.of(provider(1L, "P1")));
+
+        assertTrue(cache.existsById(1L));
+        assertTrue(cache.existsById(1L));
+        assertEquals("P1", cache.findById(1L).orElseThrow().name());
+
+        verify(providerRepository, times(1)).findDtoById(1L);
+        CacheStatsDTO stats = cache.stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    @Test
+    void shouldNotCacheMissingProviders() {
+        when(providerRepository.findDtoById(9L)).thenReturn(Optional.empty());
+
+        assertFalse(cache.existsById(9L));
+        assertFalse(cache.existsById(9L));
+
+        verify(providerRepository, times(2)).findDtoById(9L);
+    }
+
+    @Test
+    void shouldServeFindAllFromMemoryOnceComplete() {
+        when(providerRepository.findAllDtos()).thenReturn(List.of(provider(2L, "P2"), provider(1L, "P1")));
+
+        cache.findAll();
+        List<ProviderResponseDTO> second = cache.findAll();
+
+        assertEquals(List.of(1L, 2L), second.stream().map(ProviderResponseDTO::id).toList());
+        assertTrue(cache.stats().complete());
+        verify(providerRepository, times(1)).findAllDtos();
+        verify(providerRepository, never()).findDtoById(any());
+    }
+
+    @Test
+    void shouldKeepCompletenessWhenProvidersAreAddedOrDeleted() {
+        when(providerRepository.findAllDtos()).thenReturn(List.of(provider(1L, "P1")));
+        cache.findAll();
+
+        cache.put(new ProviderResponseDTO(2L, "P2", "Spain", 0L));
+        cache.evict(1L);
+
+        assertEquals(List.of(2L), cache.findAll().stream().map(ProviderResponseDTO::id).toList());
+        verify(providerRepository, times(1)).findAllDtos();
+    }
+
+    @Test
+    void shouldNotCacheRowsOfALoadThatRacedWithADelete() {
+        when(providerRepository.findAllDtos()).thenAnswer(invocation -> {
+            cache.evict(1L);
+            return List.of(provider(1L, "P1"));
+        });
+        when(providerRepository.findDtoById(1L)).thenReturn(Optional.empty());
+
+        cache.findAll();
+
+        assertFalse(cache.existsById(1L));
+        assertFalse(cache.stats().complete());
+        verify(providerRepository).findDtoById(1L);
+    }
+
+    @Test
+    void shouldGoBackToDatabaseAfterUpdate() {
+        when(providerRepository.findAllDtos()).thenReturn(List.of(provider(1L, "P1")));
+        cache.findAll();
+
+        cache.evictAndMarkIncomplete(1L);
+        cache.findAll();
+
+        verify(providerRepository, times(2)).findAllDtos();
+    }
+
+    @Test
+    void shouldLoseCompletenessWhenEntriesAreEvicted() {
+        when(providerRepository.findAllDtos()).thenReturn(List.of(provider(1L, "P1"), provider(2L, "P2")));
+        cache.findAll();
+
+        cache.put(new ProviderResponseDTO(3L, "P3", "Spain", 0L));
+        cache.findAll();
+
+        assertTrue(cache.stats().evictionCount() > 0);
+        verify(providerRepository, times(2)).findAllDtos();
+    }
+
+    private static ProviderResponseDTO provider(Long id, String name) {
+        return new ProviderResponseDTO(id, name, "Spain", 0L);
+    }
+}
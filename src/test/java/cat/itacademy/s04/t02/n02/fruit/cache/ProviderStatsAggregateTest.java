@@ -0,0 +1,146 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CountryStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.StockStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// no transaction is active here unless a test opens one, so every delta applies immediately
+@ExtendWith(MockitoExtension.class)
+public class ProviderStatsAggregateTest {
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    private ProviderStatsAggregate stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new ProviderStatsAggregate(providerRepository);
+        when(providerRepository.findAllStats()).thenReturn(List.of(
+                new ProviderStatsDTO(1L, "Spain", 2L, 10L),
+                new ProviderStatsDTO(2L, "Spain", 1L, 4L),
+                new ProviderStatsDTO(3L, "France", 0L, 0L)));
+        stats.reconcile();
+    }
+
+    @Test
+    void shouldSeedProviderAndCountryTotalsFromTheGroupBy() {
+        StockStatsDTO all = stats.findAll();
+
+        assertEquals(3, all.providers().size());
+        assertEquals(List.of(
+                new CountryStatsDTO("France", 1L, 0L, 0L),
+                new CountryStatsDTO("Spain", 2L, 3L, 14L)), all.countries());
+        assertEquals(new ProviderStatsDTO(2L, "Spain", 1L, 4L), stats.findByProviderId(2L).orElseThrow());
+        assertTrue(stats.findByProviderId(9L).isEmpty());
+    }
+
+    @Test
+    void shouldMoveFruitBetweenProvidersAndCountriesOnReassignment() {
+        stats.fruitChanged(1L, 5, 3L, 7);
+
+        assertEquals(new ProviderStatsDTO(1L, "Spain", 1L, 5L), stats.findByProviderId(1L).orElseThrow());
+        assertEquals(new ProviderStatsDTO(3L, "France", 1L, 7L), stats.findByProviderId(3L).orElseThrow());
+        assertEquals(List.of(
+                new CountryStatsDTO("France", 1L, 1L, 7L),
+                new CountryStatsDTO("Spain", 2L, 2L, 9L)), stats.findAll().countries());
+    }
+
+    @Test
+    void shouldTrackAddedAndRemovedFruits() {
+        stats.fruitAdded(2L, 6);
+        stats.fruitRemoved(1L, 4);
+
+        assertEquals(new ProviderStatsDTO(1L, "Spain", 1L, 6L), stats.findByProviderId(1L).orElseThrow());
+        assertEquals(new ProviderStatsDTO(2L, "Spain", 2L, 10L), stats.findByProviderId(2L).orElseThrow());
+    }
+
+    @Test
+    void shouldCarryTotalsWhenAProviderChangesCountry() {
+        stats.providerSaved(1L, "Italy");
+
+        assertEquals(List.of(
+                new CountryStatsDTO("France", 1L, 0L, 0L),
+                new CountryStatsDTO("Italy", 1L, 2L, 10L),
+                new CountryStatsDTO("Spain", 1L, 1L, 4L)), stats.findAll().countries());
+    }
+
+    @Test
+    void shouldDropCountryWhenItsLastProviderIsRemoved() {
+        stats.providerSaved(4L, "Portugal");
+        assertEquals(new ProviderStatsDTO(4L, "Portugal", 0L, 0L), stats.findByProviderId(4L).orElseThrow());
+
+        stats.providerRemoved(3L);
+
+        assertTrue(stats.findByProviderId(3L).isEmpty());
+        assertEquals(List.of("Portugal", "Spain"),
+                stats.findAll().countries().stream().map(CountryStatsDTO::country).toList());
+    }
+
+    @Test
+    void reconcileShouldReplaceDriftedTotals() {
+        stats.fruitAdded(1L, 100);
+        when(providerRepository.findAllStats()).thenReturn(List.of(new ProviderStatsDTO(1L, "Spain", 2L, 10L)));
+
+        stats.reconcile();
+
+        assertEquals(new ProviderStatsDTO(1L, "Spain", 2L, 10L), stats.findByProviderId(1L).orElseThrow());
+        assertEquals(List.of(new CountryStatsDTO("Spain", 1L, 2L, 10L)), stats.findAll().countries());
+        verify(providerRepository, times(2)).findAllStats();
+    }
+
+    @Test
+    void reconcileShouldNotCountAWriteWhoseDeltaIsStillLanding() {
+        // the write has reached the database, and the query would see it, but its delta is not applied yet
+        when(providerRepository.findAllStats()).thenReturn(List.of(new ProviderStatsDTO(1L, "Spain", 3L, 15L)));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stats.fruitAdded(1L, 5);
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+            stats.reconcile();
+            assertEquals(new ProviderStatsDTO(1L, "Spain", 2L, 10L), stats.findByProviderId(1L).orElseThrow());
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(new ProviderStatsDTO(1L, "Spain", 3L, 15L), stats.findByProviderId(1L).orElseThrow());
+
+        stats.reconcile();
+
+        assertEquals(new ProviderStatsDTO(1L, "Spain", 3L, 15L), stats.findByProviderId(1L).orElseThrow());
+    }
+
+    @Test
+    void refreshShouldReplaceOnlyTheGivenProvidersAndTheirCountries() {
+        // a bulk reassignment moved both fruits of provider 1 to provider 3
+        when(providerRepository.findStatsByIds(Set.of(1L, 3L))).thenReturn(List.of(
+                new ProviderStatsDTO(1L, "Spain", 0L, 0L),
+                new ProviderStatsDTO(3L, "France", 2L, 10L)));
+
+        stats.refresh(List.of(1L, 3L));
+
+        assertEquals(new ProviderStatsDTO(2L, "Spain", 1L, 4L), stats.findByProviderId(2L).orElseThrow());
+        assertEquals(new ProviderStatsDTO(3L, "France", 2L, 10L), stats.findByProviderId(3L).orElseThrow());
+        assertEquals(List.of(
+                new CountryStatsDTO("France", 1L, 2L, 10L),
+                new CountryStatsDTO("Spain", 2L, 1L, 4L)), stats.findAll().countries());
+    }
+}
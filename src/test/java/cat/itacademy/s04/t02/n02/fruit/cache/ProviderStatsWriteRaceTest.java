@@ -0,0 +1,90 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * A reconciliation landing after a write committed but before its delta was applied must not count
+ * the row twice. The commits have to be real, so this class is not transactional and cleans up after itself.
+ */
+@SpringBootTest
+public class ProviderStatsWriteRaceTest {
+
+    @Autowired
+    private FruitService fruitService;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @MockitoSpyBean
+    private ProviderStatsAggregate stats;
+
+    private final List<Long> providerIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        providerIds.forEach(id -> {
+            fruitService.deleteFruits(new FruitFilterDTO(null, id));
+            providerService.deleteProvider(id);
+        });
+    }
+
+    @Test
+    void aReconcileBetweenTheCommitAndTheDeltaShouldNotCountACreatedFruitTwice() throws Exception {
+        Long providerId = providerService.createProvider(new ProviderRequestDTO("Provider-Race", "Spain")).id();
+        providerIds.add(providerId);
+        doAnswer(invocation -> {
+            reconcileOnceCommitted();
+            return invocation.callRealMethod();
+        }).when(stats).fruitAdded(any(), anyInt());
+
+        fruitService.createFruit(new FruitRequestDTO("Apple", 3, providerId));
+
+        assertEquals(new ProviderStatsDTO(providerId, "Spain", 1L, 3L), stats.findByProviderId(providerId).orElseThrow());
+        stats.reconcile();
+        assertEquals(new ProviderStatsDTO(providerId, "Spain", 1L, 3L), stats.findByProviderId(providerId).orElseThrow());
+    }
+
+    // right after the commit, from another thread as the scheduler would; at once if the write already committed
+    private void reconcileOnceCommitted() throws InterruptedException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reconcileElsewhere();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    reconcileElsewhere();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private void reconcileElsewhere() throws InterruptedException {
+        Thread reconcile = new Thread(stats::reconcile);
+        reconcile.start();
+        reconcile.join();
+    }
+}
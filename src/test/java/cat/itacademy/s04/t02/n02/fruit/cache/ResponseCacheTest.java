@@ -0,0 +1,169 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ResponseCacheProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void aRepeatedReadAtTheSameETagShouldNotLoadNorEncodeAgain() throws IOException {
+        ResponseCache cache = cache(true, DataSize.ofMegabytes(1));
+        Counting<FruitResponseDTO> rows = new Counting<>(fruits(10L, 3));
+
+        EncodedResponse first = cache.fruits(10L, "\"a\"", rows);
+        EncodedResponse second = cache.fruits(10L, "\"a\"", rows);
+
+        assertSame(first, second);
+        assertEquals(1, rows.calls.get());
+        assertEquals(3, objectMapper.readTree(first.json()).size());
+    }
+
+    @Test
+    void anEntryShouldOnlyBeServedForTheETagItWasEncodedAt() {
+        ResponseCache cache = cache(true, DataSize.ofMegabytes(1));
+        Counting<FruitResponseDTO> rows = new Counting<>(fruits(10L, 3));
+
+        cache.fruits(null, "\"a\"", rows);
+        EncodedResponse changed = cache.fruits(null, "\"b\"", rows);
+
+        assertEquals("\"b\"", changed.eTag());
+        assertEquals(2, rows.calls.get());
+    }
+
+    @Test
+    void aWriteShouldDropOnlyTheListsItAffects() {
+        ResponseCache cache = cache(true, DataSize.ofMegabytes(1));
+        Counting<FruitResponseDTO> all = new Counting<>(fruits(10L, 3));
+        Counting<FruitResponseDTO> ofTen = new Counting<>(fruits(10L, 3));
+        Counting<FruitResponseDTO> ofTwenty = new Counting<>(fruits(20L, 2));
+        Counting<ProviderResponseDTO> providers = new Counting<>(List.of(new ProviderResponseDTO(10L, "P10", "Spain", 0L)));
+        Runnable readAll = () -> {
+            cache.fruits(null, "\"a\"", all);
+            cache.fruits(10L, "\"a\"", ofTen);
+            cache.fruits(20L, "\"a\"", ofTwenty);
+            cache.providers("\"a\"", providers);
+        };
+
+        readAll.run();
+        cache.fruitsChanged(List.of(10L));
+        readAll.run();
+        cache.providerRemoved(20L);
+        readAll.run();
+
+        assertEquals(2, all.calls.get());
+        assertEquals(2, ofTen.calls.get());
+        assertEquals(2, ofTwenty.calls.get());
+        assertEquals(2, providers.calls.get());
+    }
+
+    @Test
+    void aResponseEncodedWhileAWriteCommittedShouldNotBeKept() {
+        ResponseCache cache = cache(true, DataSize.ofMegabytes(1));
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<FruitResponseDTO>> racing = () -> {
+            if (calls.incrementAndGet() == 1) {
+                cache.fruitsChanged(List.of(10L));
+            }
+            return fruits(10L, 1);
+        };
+
+        cache.fruits(10L, "\"a\"", racing);
+        cache.fruits(10L, "\"a\"", racing);
+        cache.fruits(10L, "\"a\"", racing);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void largeBodiesShouldAlsoBeKeptGzippedForClientsThatAcceptIt() throws IOException {
+        ResponseCache cache = cache(true, DataSize.ofMegabytes(1));
+
+        EncodedResponse large = cache.fruits(10L, "\"a\"", () -> fruits(10L, 50));
+        EncodedResponse small = cache.fruits(20L, "\"a\"", () -> fruits(20L, 1));
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(large.gzip()))) {
+            assertArrayEquals(large.json(), in.readAllBytes());
+        }
+        ResponseEntity<byte[]> gzipped = large.toResponseEntity("deflate, gzip;q=0.8");
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(large.gzip(), gzipped.getBody());
+        assertEquals("\"a-gz\"", gzipped.getHeaders().getETag());
+
+        ResponseEntity<byte[]> refused = large.toResponseEntity("gzip;q=0");
+        assertNull(refused.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(large.json(), refused.getBody());
+        assertEquals("\"a\"", refused.getHeaders().getETag());
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), refused.getHeaders().getVary());
+
+        assertNull(small.gzip());
+        assertNull(small.toResponseEntity("gzip").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void theCacheShouldHoldNoMoreBytesThanConfigured() {
+        // each list is about 700 bytes, so only one fits
+        ResponseCache cache = cache(false, DataSize.ofKilobytes(1));
+        Counting<FruitResponseDTO> ofTen = new Counting<>(fruits(10L, 10));
+        Counting<FruitResponseDTO> ofTwenty = new Counting<>(fruits(20L, 10));
+
+        for (int i = 0; i < 3; i++) {
+            cache.fruits(10L, "\"a\"", ofTen);
+            cache.fruits(20L, "\"a\"", ofTwenty);
+        }
+
+        assertTrue(ofTen.calls.get() + ofTwenty.calls.get() > 2);
+    }
+
+    @Test
+    void aDisabledCacheShouldEncodeEveryTime() {
+        ResponseCache cache = new ResponseCache(objectMapper,
+                new ResponseCacheProperties(false, DataSize.ofMegabytes(1), true, DataSize.ofKilobytes(1)));
+        Counting<FruitResponseDTO> rows = new Counting<>(fruits(10L, 3));
+
+        cache.fruits(10L, "\"a\"", rows);
+        cache.fruits(10L, "\"a\"", rows);
+
+        assertEquals(2, rows.calls.get());
+    }
+
+    private ResponseCache cache(boolean gzip, DataSize maximumSize) {
+        return new ResponseCache(objectMapper, new ResponseCacheProperties(true, maximumSize, gzip, DataSize.ofKilobytes(1)));
+    }
+
+    private static List<FruitResponseDTO> fruits(Long providerId, int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> new FruitResponseDTO(providerId * 1000 + id, "Fruit-" + id, 1, providerId, 0L))
+                .toList();
+    }
+
+    private record Counting<T>(List<T> rows, AtomicInteger calls) implements Supplier<List<T>> {
+
+        Counting(List<T> rows) {
+            this(rows, new AtomicInteger());
+        }
+
+        @Override
+        public List<T> get() {
+            calls.incrementAndGet();
+            return rows;
+        }
+    }
+}
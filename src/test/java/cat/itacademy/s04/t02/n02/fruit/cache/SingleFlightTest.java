@@ -0,0 +1,158 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight.FRUITS;
+import static cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight.PROVIDERS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SingleFlightTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private SingleFlight reads;
+
+    @BeforeEach
+    void setUp() {
+        reads = new SingleFlight(transactionManager);
+        reads.bindTo(registry);
+    }
+
+    @Test
+    void concurrentIdenticalReadsShouldShareOneQuery() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> reads.execute(FRUITS, "all", blockedQuery())));
+                awaitCalls(i + 1);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("result-1", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, queries.get());
+        assertEquals(1, calls("leader"));
+        assertEquals(7, calls("follower"));
+        verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void differentKeysShouldNotShareAQuery() {
+        assertEquals("all", reads.execute(FRUITS, "all", () -> "all"));
+        assertEquals("provider", reads.execute(FRUITS, "provider:1", () -> "provider"));
+
+        assertEquals(2, calls("leader"));
+    }
+
+    @Test
+    void aReadStartedAfterAWriteShouldNotJoinAQueryThatStartedBefore() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> before = executor.submit(() -> reads.execute(FRUITS, "all", blockedQuery()));
+            awaitCalls(1);
+
+            // a write to another scope leaves the flight open
+            reads.fence(PROVIDERS);
+            Future<String> joined = executor.submit(() -> reads.execute(FRUITS, "all", blockedQuery()));
+            awaitCalls(2);
+
+            reads.fence(FRUITS);
+            assertEquals("result-2", reads.execute(FRUITS, "all", blockedQuery()));
+
+            release.countDown();
+            assertEquals("result-1", before.get(5, TimeUnit.SECONDS));
+            assertEquals("result-1", joined.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void aFailedQueryShouldFailEveryCallerWaitingForIt() throws Exception {
+        Supplier<String> failing = () -> {
+            blockedQuery().get();
+            throw new DataAccessResourceFailureException("database down");
+        };
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> reads.execute(FRUITS, "all", failing));
+            awaitCalls(1);
+            Future<String> follower = executor.submit(() -> reads.execute(FRUITS, "all", failing));
+            awaitCalls(2);
+            release.countDown();
+
+            for (Future<String> caller : List.of(leader, follower)) {
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(DataAccessResourceFailureException.class, failure.getCause());
+            }
+        }
+        // nothing is left behind, so the next read queries again
+        assertEquals("ok", reads.execute(FRUITS, "all", () -> "ok"));
+    }
+
+    @Test
+    void readsInsideATransactionShouldBypassCoalescing() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("own", reads.execute(FRUITS, "all", () -> "own"));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        verifyNoInteractions(transactionManager);
+        assertEquals(0, calls("leader"));
+    }
+
+    // the first query blocks until released; every query returns a result numbered after it
+    private Supplier<String> blockedQuery() {
+        return () -> {
+            int query = queries.incrementAndGet();
+            if (query == 1) {
+                try {
+                    assertTrue(release.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "result-" + query;
+        };
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls("leader") + calls("follower") < expected) {
+            assertTrue(System.nanoTime() < deadline, "Callers did not arrive in time");
+            Thread.sleep(1);
+        }
+    }
+
+    private double calls(String role) {
+        return registry.get("single.flight.calls").tag("role", role).functionCounter().count();
+    }
+}
@@ -0,0 +1,89 @@
+package cat.itacademy.s04.t02.n02.fruit.cache;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSuggestionDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    @Test
+    void shouldRankNamesContainingTheWholeQueryFirst() {
+        index.put(1L, "Pineapple");
+        index.put(2L, "Apple Pie");
+        index.put(3L, "Apple");
+        index.put(4L, "Banana");
+
+        List<FruitSuggestionDTO> result = index.search("appl", 10, 0.5, 1000);
+
+        assertEquals(List.of("Apple", "Apple Pie", "Pineapple"), names(result));
+        assertEquals(1.0, result.getFirst().similarity());
+        assertEquals(3L, result.getFirst().id());
+    }
+
+    @Test
+    void shouldTolerateTyposAccentsAndCase() {
+        index.put(1L, "Plátano de Canarias");
+        index.put(2L, "Melon");
+
+        assertEquals(List.of("Plátano de Canarias"), names(index.search("PLATNO", 10, 0.5, 1000)));
+        assertTrue(index.search("xyz", 10, 0.5, 1000).isEmpty());
+    }
+
+    @Test
+    void shouldReturnAtMostLimitMatches() {
+        for (long id = 1; id <= 20; id++) {
+            index.put(id, "Cherry " + id);
+        }
+
+        assertEquals(5, index.search("cherry", 5, 0.5, 1000).size());
+    }
+
+    @Test
+    void shouldReflectRenamesAndRemovals() {
+        index.put(1L, "Kiwi");
+        index.put(2L, "Kiwano");
+
+        index.put(1L, "Lemon");
+        index.remove(2L);
+
+        assertTrue(index.search("kiw", 10, 0.5, 1000).isEmpty());
+        assertEquals(List.of("Lemon"), names(index.search("lem", 10, 0.5, 1000)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void shouldKeepAnsweringAfterCompactingRemovedNames() {
+        for (long id = 1; id <= 3000; id++) {
+            index.put(id, (id % 2 == 0 ? "Mango " : "Papaya ") + id);
+        }
+        for (long id = 1; id <= 2600; id++) {
+            index.remove(id);
+        }
+
+        List<FruitSuggestionDTO> result = index.search("mango 2998", 3, 0.5, 10_000);
+
+        assertEquals(400, index.size());
+        assertEquals("Mango 2998", result.getFirst().name());
+        assertEquals(2998L, result.getFirst().id());
+        index.put(5000L, "Mango 5000");
+        assertEquals(5000L, index.search("mango 5000", 1, 0.5, 10_000).getFirst().id());
+    }
+
+    @Test
+    void shouldReadNoMorePostingsThanTheCandidateBudget() {
+        for (long id = 1; id <= 100; id++) {
+            index.put(id, "Grape " + id);
+        }
+
+        assertEquals(10, index.search("g", 50, 0.5, 10).size());
+    }
+
+    private static List<String> names(List<FruitSuggestionDTO> suggestions) {
+        return suggestions.stream().map(FruitSuggestionDTO::name).toList();
+    }
+}
@@ -0,0 +1,59 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "fruit.datasource.limiter.max-concurrent=1",
+        "fruit.datasource.limiter.max-queued=0"
+})
+@AutoConfigureMockMvc
+public class DatabaseBusyControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void shouldReturn503WhenNoConnectionPermitIsAvailable() throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (Connection ignored = dataSource.getConnection()) {
+                held.countDown();
+                done.await();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        holder.start();
+        held.await(5, TimeUnit.SECONDS);
+
+        try {
+            mockMvc.perform(get("/fruits/1"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.error").value("Database busy: 0 requests already waiting for a connection"));
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+
+        mockMvc.perform(get("/fruits/999999"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,148 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import cat.itacademy.s04.t02.n02.fruit.support.SqlStatementCounter;
+import cat.itacademy.s04.t02.n02.fruit.support.StatementBudget;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Statement budgets of the endpoints whose cost only shows once their writes commit: the export
+ * stream, the list reads served from the caches and the after-commit hooks of the writes. Runs on
+ * an embedded H2 database in MySQL mode, without a test transaction, and seeds and cleans up through
+ * the services so every cache sees the same changes the database does.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fruit_statements;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureMockMvc
+public class EndpointStatementBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private FruitService fruitService;
+
+    private final List<Long> providerIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        providerIds.forEach(id -> {
+            fruitService.deleteFruits(new FruitFilterDTO(null, id));
+            providerService.deleteProvider(id);
+        });
+    }
+
+    @Test
+    @StatementBudget(select = 1)
+    void exportShouldReadEveryProviderInTheSameSelect() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Long providerId = saveProvider();
+            saveFruit("Apple", 3, providerId);
+            saveFruit("Pear", 2, providerId);
+        }
+        SqlStatementCounter.reset();
+
+        MvcResult result = mockMvc.perform(get("/fruits/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(6, body.split("\n").length);
+    }
+
+    @Test
+    @StatementBudget(select = 3)
+    void aRepeatedListReadShouldOnlyCheckTheCollectionVersion() throws Exception {
+        Long providerId = saveProvider();
+        saveFruit("Apple", 3, providerId);
+        SqlStatementCounter.reset();
+
+        // the version behind the ETag and the list, then the version alone: the body is cached
+        mockMvc.perform(get("/fruits").param("providerId", String.valueOf(providerId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Apple"));
+        mockMvc.perform(get("/fruits").param("providerId", String.valueOf(providerId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Apple"));
+    }
+
+    @Test
+    @StatementBudget(select = 1)
+    void getFruitByIdShouldIssueASingleSelect() throws Exception {
+        FruitResponseDTO fruit = saveFruit("Apple", 3, saveProvider());
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(get("/fruits/" + fruit.id()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Apple"));
+    }
+
+    @Test
+    @StatementBudget(insert = 1)
+    void createFruitShouldCommitASingleInsert() throws Exception {
+        Long providerId = saveProvider();
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Banana", 5, providerId))))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    @StatementBudget(select = 1, update = 1)
+    void updateFruitShouldCommitALockedSelectAndASingleUpdate() throws Exception {
+        Long providerId = saveProvider();
+        FruitResponseDTO fruit = saveFruit("Apple", 3, providerId);
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(put("/fruits/" + fruit.id())
+                        .header(HttpHeaders.IF_MATCH, "\"" + fruit.version() + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Green Apple", 4, providerId))))
+                .andExpect(status().isOk());
+    }
+
+    private Long saveProvider() {
+        Long id = providerService.createProvider(new ProviderRequestDTO("Provider-" + UUID.randomUUID(), "Spain")).id();
+        providerIds.add(id);
+        return id;
+    }
+
+    private FruitResponseDTO saveFruit(String name, int weightInKilos, Long providerId) {
+        return fruitService.createFruit(new FruitRequestDTO(name, weightInKilos, providerId));
+    }
+}
@@ -1,25 +1,43 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
 
+import cat.itacademy.s04.t02.n02.fruit.cache.FruitNameIndex;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitAdjustRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkUpdateRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import cat.itacademy.s04.t02.n02.fruit.support.SqlStatementCounter;
+import cat.itacademy.s04.t02.n02.fruit.support.StatementBudget;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,15 +60,20 @@ public class FruitControllerTest {
     @Autowired
     private ProviderRepository providerRepository;
 
+    @Autowired
+    private FruitNameIndex nameIndex;
+
     @Test
     void shouldCreateFruitWhenDataIsValid() throws Exception {
         Provider provider = saveProvider();
         FruitRequestDTO request = new FruitRequestDTO("Banana", 5, provider.getId());
 
+        startCountingStatements();
         mockMvc.perform(post("/fruits")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isCreated());
+        SqlStatementCounter.assertStatements("insert");
     }
 
     @Test
@@ -58,48 +81,213 @@ public class FruitControllerTest {
         Provider provider = saveProvider();
         FruitRequestDTO request = new FruitRequestDTO("",-1,provider.getId());
 
+        startCountingStatements();
         mockMvc.perform(post("/fruits")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenNameIsLongerThanItsColumn() throws Exception {
+        Provider provider = saveProvider();
+        FruitRequestDTO request = new FruitRequestDTO("A".repeat(256), 3, provider.getId());
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.name").value("Name must be at most 255 characters"));
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
     void shouldReturnBadRequestWhenProviderIdIsMissing() throws Exception {
         FruitRequestDTO request = new FruitRequestDTO("Banana", 5, null);
 
+        startCountingStatements();
         mockMvc.perform(post("/fruits")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
     void shouldReturnNotFoundWhenProviderDoesNotExistOnCreate() throws Exception {
         FruitRequestDTO request = new FruitRequestDTO("Banana", 5, 999999L);
 
+        startCountingStatements();
         mockMvc.perform(post("/fruits")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isNotFound());
+        // no lookup first: the missing provider surfaces as a foreign key violation
+        SqlStatementCounter.assertStatements("insert");
+    }
+
+    @Test
+    void shouldCreateFruitsInBatch() throws Exception {
+        Provider p1 = saveProvider();
+        Provider p2 = saveProvider();
+        FruitBatchRequestDTO request = new FruitBatchRequestDTO(List.of(
+                new FruitRequestDTO("Apple", 3, p1.getId()),
+                new FruitRequestDTO("Pear", 2, p2.getId()),
+                new FruitRequestDTO("Kiwi", 1, p1.getId())));
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[*].id").isNotEmpty())
+                .andExpect(jsonPath("$[1].providerId").value(p2.getId()));
+        repository.flush();
+        SqlStatementCounter.assertStatements("select", "insert");
+
+        assertEquals(3, repository.count());
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenBatchContainsInvalidFruit() throws Exception {
+        Provider provider = saveProvider();
+        FruitBatchRequestDTO request = new FruitBatchRequestDTO(List.of(
+                new FruitRequestDTO("Apple", 3, provider.getId()),
+                new FruitRequestDTO("", 2, provider.getId())));
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['items[1].name']").value("Name must not be blank"));
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturnNotFoundWhenBatchReferencesMissingProvider() throws Exception {
+        Provider provider = saveProvider();
+        FruitBatchRequestDTO request = new FruitBatchRequestDTO(List.of(
+                new FruitRequestDTO("Apple", 3, provider.getId()),
+                new FruitRequestDTO("Pear", 2, 999999L)));
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldImportTheValidRowsOfACsvAndReportTheOthersByLine() throws Exception {
+        Provider provider = saveProvider();
+        long id = provider.getId();
+        String csv = """
+                name,weightInKilos,providerId
+                Apple,3,%d
+                ,2,%d
+                "Pear, Conference",two,%d
+                Kiwi,1,999999
+                "Melon \"\"XL\"\"",-4,%d
+                Plum,5,%d
+                """.formatted(id, id, id, id, id);
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(6))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(4))
+                .andExpect(jsonPath("$.errorsTruncated").value(false))
+                .andExpect(jsonPath("$.errors[*].line", contains(3, 4, 5, 6)))
+                .andExpect(jsonPath("$.errors[0].errors.name").value("Name must not be blank"))
+                .andExpect(jsonPath("$.errors[1].errors.weightInKilos").value("Weight must be a whole number"))
+                .andExpect(jsonPath("$.errors[2].errors.providerId").value("Provider with id 999999 not found"))
+                .andExpect(jsonPath("$.errors[3].errors.weightInKilos").value("Weight must be greater than zero"));
+        SqlStatementCounter.assertStatements("select", "insert");
+
+        assertEquals(List.of("Apple", "Plum"), repository.findAll().stream().map(Fruit::getName).sorted().toList());
+    }
+
+    @Test
+    @StatementBudget(select = 1, insert = 1)
+    void importShouldResolveTheProvidersOnceAndInsertTheChunkInOneBatch() throws Exception {
+        Provider p1 = saveProvider();
+        Provider p2 = saveProvider();
+        String csv = "providerId,name,weightInKilos\n%d,Apple,3\n%d,Pear,2\n%d,Kiwi,1\n".formatted(p1.getId(), p2.getId(), p1.getId());
+        startCountingStatements();
+
+        mockMvc.perform(multipart("/fruits/import")
+                        .file(new MockMultipartFile("file", "stock.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.errors", hasSize(0)));
+    }
+
+    @Test
+    void shouldReturn400WhenTheCsvHeaderLacksAColumn() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/import")
+                        .contentType("text/csv")
+                        .content("name,weight,providerId\nApple,3,1\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("The CSV header must name the columns name, weightInKilos and providerId"));
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void aQuoteLeftOpenShouldEndTheImportKeepingTheRowsReadBeforeIt() throws Exception {
+        Provider provider = saveProvider();
+        long id = provider.getId();
+        String csv = """
+                name,weightInKilos,providerId
+                Apple,3,%d
+                Pear,2,%d
+                "Kiwi,1,%d
+                Plum,5,%d
+                """.formatted(id, id, id, id);
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(3))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(4))
+                .andExpect(jsonPath("$.errors[0].errors.csv").exists());
+        SqlStatementCounter.assertStatements("select", "insert");
+
+        assertEquals(List.of("Apple", "Pear"), repository.findAll().stream().map(Fruit::getName).sorted().toList());
     }
 
     @Test
     void shouldReturnFruitWhenIdExists() throws Exception {
         Fruit saved = saveFruit("Orange", 9);
 
+        startCountingStatements();
         mockMvc.perform(get("/fruits/" + saved.getId()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(saved.getId()))
                 .andExpect(jsonPath("$.name").value(saved.getName()))
                 .andExpect(jsonPath("$.weightInKilos").value(saved.getWeightInKilos()))
                 .andExpect(jsonPath("$.providerId").value(saved.getProvider().getId()));
+        SqlStatementCounter.assertStatements("select");
     }
 
     @Test
     void shouldReturn404WhenFruitDoesNotExist() throws Exception {
+        startCountingStatements();
         mockMvc.perform(get("/fruits/222"))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
     }
 
     @Test
@@ -111,6 +299,7 @@ public class FruitControllerTest {
         saveFruit("Banana", 5, p1);
         saveFruit("Orange", 4, p2);
 
+        startCountingStatements();
         mockMvc.perform(get("/fruits")
                         .param("providerId", String.valueOf(p1.getId()))
                         .contentType(MediaType.APPLICATION_JSON))
@@ -118,14 +307,58 @@ public class FruitControllerTest {
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[*].name", containsInAnyOrder("Apple", "Banana")))
                 .andExpect(jsonPath("$[*].providerId", containsInAnyOrder(p1.getId().intValue(), p1.getId().intValue())));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void listingTheFruitsOfAProviderShouldCheckItInTheSameQueries() throws Exception {
+        Provider provider = saveProvider();
+        Provider empty = saveProvider();
+        saveFruit("Apple", 3, provider);
+        startCountingStatements();
+
+        mockMvc.perform(get("/fruits").param("providerId", String.valueOf(provider.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        // the collection version behind the ETag, then the list
+        SqlStatementCounter.assertStatements("select", "select");
+
+        mockMvc.perform(get("/fruits").param("providerId", String.valueOf(empty.getId())))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void shouldFetchManyFruitsByIdWithASingleQuery() throws Exception {
+        Fruit apple = saveFruit("Apple", 3);
+        saveFruit("Pear", 2);
+        Fruit kiwi = saveFruit("Kiwi", 1);
+        startCountingStatements();
+
+        mockMvc.perform(get("/fruits").param("ids", kiwi.getId() + "," + apple.getId() + ",999999," + kiwi.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(kiwi.getId().intValue(), apple.getId().intValue())));
+
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldReturn400WhenIdsAreCombinedWithLimit() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/fruits").param("ids", "1,2").param("limit", "10"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("ids and limit cannot be combined: the listed fruits come back in one response"));
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
     void shouldReturn404WhenFilteringByNonExistingProvider() throws Exception {
+        startCountingStatements();
         mockMvc.perform(get("/fruits")
                         .param("providerId", "999")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
     }
 
     @Test
@@ -133,6 +366,7 @@ public class FruitControllerTest {
         saveFruit("Banana", 3);
         saveFruit("Lemon", 4);
 
+        startCountingStatements();
         mockMvc.perform(get("/fruits")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -142,14 +376,232 @@ public class FruitControllerTest {
                 .andExpect(jsonPath("$[1].id").isNumber())
                 .andExpect(jsonPath("$[1].name").value("Lemon"))
                 .andExpect(jsonPath("$[1].weightInKilos").value(4));
+        SqlStatementCounter.assertStatements("select", "select");
     }
 
     @Test
     void shouldReturnEmptyListWhenNoFruitsExist() throws Exception {
 
+        startCountingStatements();
         mockMvc.perform(get("/fruits"))
                 .andExpect(status().isOk())
                 .andExpect(content().json("[]"));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void largeListsShouldBeSentGzippedToClientsThatAcceptIt() throws Exception {
+        Provider provider = saveProvider();
+        for (int i = 0; i < 30; i++) {
+            saveFruit("Fruit-" + i, i + 1, provider);
+        }
+
+        startCountingStatements();
+        MockHttpServletResponse gzipped = mockMvc.perform(get("/fruits")
+                        .param("providerId", String.valueOf(provider.getId()))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+            assertEquals(30, objectMapper.readTree(in).size());
+        }
+        String identityETag = mockMvc.perform(get("/fruits").param("providerId", String.valueOf(provider.getId())))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(30)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // each representation has its own strong validator, and either one is still fresh
+        String gzipETag = gzipped.getHeader(HttpHeaders.ETAG);
+        assertEquals(identityETag.substring(0, identityETag.length() - 1) + "-gz\"", gzipETag);
+        mockMvc.perform(get("/fruits")
+                        .param("providerId", String.valueOf(provider.getId()))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, gzipETag));
+        mockMvc.perform(get("/fruits")
+                        .param("providerId", String.valueOf(provider.getId()))
+                        .header(HttpHeaders.IF_NONE_MATCH, identityETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, identityETag));
+        // two full lists at ETag probe + rows each, then a probe per 304
+        SqlStatementCounter.assertStatements("select", "select", "select", "select", "select", "select");
+    }
+
+    @Test
+    void shouldPageThroughFruitsWithCursor() throws Exception {
+        saveFruit("Apple", 1);
+        saveFruit("Banana", 2);
+        saveFruit("Cherry", 3);
+
+        startCountingStatements();
+        String body = mockMvc.perform(get("/fruits").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].name").value("Apple"))
+                .andExpect(jsonPath("$.items[1].name").value("Banana"))
+                .andExpect(jsonPath("$.nextCursor").isString())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/fruits").param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name").value("Cherry"))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void shouldPageFruitsFilteredByProviderId() throws Exception {
+        Provider p1 = saveProvider();
+        Provider p2 = saveProvider();
+
+        saveFruit("Apple", 3, p1);
+        saveFruit("Orange", 4, p2);
+        saveFruit("Banana", 5, p1);
+
+        startCountingStatements();
+        mockMvc.perform(get("/fruits")
+                        .param("providerId", String.valueOf(p1.getId()))
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[*].name", containsInAnyOrder("Apple", "Banana")))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void shouldReturn400WhenCursorIsInvalid() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/fruits").param("limit", "10").param("after", "not a cursor"))
+                .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldSearchFruitsCombiningFilters() throws Exception {
+        Provider spanish = saveProvider();
+        Provider french = providerRepository.save(new Provider("Provider-" + UUID.randomUUID(), "France"));
+
+        saveFruit("Apple", 3, spanish);
+        saveFruit("Apricot", 8, spanish);
+        saveFruit("Apple Pink", 4, french);
+        saveFruit("Banana", 4, spanish);
+
+        startCountingStatements();
+        mockMvc.perform(get("/fruits/search")
+                        .param("name", "Ap")
+                        .param("minKg", "2")
+                        .param("maxKg", "5")
+                        .param("country", "Spain"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name").value("Apple"))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+
+        mockMvc.perform(get("/fruits/search")
+                        .param("providerId", String.valueOf(spanish.getId()), String.valueOf(french.getId()))
+                        .param("minKg", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", containsInAnyOrder("Apricot", "Apple Pink", "Banana")));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void shouldPageSearchResultsInSortOrderAcrossTies() throws Exception {
+        Provider provider = saveProvider();
+        saveFruit("Cherry", 2, provider);
+        saveFruit("Apple", 5, provider);
+        saveFruit("Banana", 5, provider);
+        saveFruit("Kiwi", 1, provider);
+
+        startCountingStatements();
+        String body = mockMvc.perform(get("/fruits/search")
+                        .param("providerId", String.valueOf(provider.getId()))
+                        .param("sort", "weightInKilos,desc")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].weightInKilos", contains(5, 5)))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/fruits/search")
+                        .param("providerId", String.valueOf(provider.getId()))
+                        .param("sort", "weightInKilos,desc")
+                        .param("limit", "2")
+                        .param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains("Cherry", "Kiwi")))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+
+        // a cursor only continues the sort it was issued for
+        mockMvc.perform(get("/fruits/search").param("sort", "name").param("after", cursor))
+                .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void shouldTreatSearchNameAsLiteralPrefix() throws Exception {
+        saveFruit("100% Juice", 1);
+        saveFruit("1000 Berries", 1);
+
+        startCountingStatements();
+        mockMvc.perform(get("/fruits/search").param("name", "100%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name", contains("100% Juice")));
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldReturn400WhenSearchSortOrRangeIsInvalid() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/fruits/search").param("sort", "provider"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown sort field: provider"));
+
+        mockMvc.perform(get("/fruits/search").param("minKg", "5").param("maxKg", "2"))
+                .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void snapshotCheckShouldReturn409WhileTheSnapshotIsDisabled() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/fruits/snapshot-check"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").exists());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldSuggestFruitNamesWithoutQueryingTheDatabase() throws Exception {
+        Provider provider = saveProvider();
+        saveFruit("Strawberry", 1, provider);
+        saveFruit("Raspberry", 1, provider);
+        saveFruit("Blueberry", 1, provider);
+        // writes only reach the index after commit, which never happens in this test
+        repository.flush();
+        nameIndex.rebuild();
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(get("/fruits/suggest").param("q", "strawbery").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Strawberry"));
+
+        mockMvc.perform(get("/fruits/suggest").param("q", "rasp"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Raspberry"))
+                .andExpect(jsonPath("$[0].similarity").value(1.0));
+
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
@@ -158,12 +610,14 @@ public class FruitControllerTest {
         Provider provider = saveProvider();
         FruitRequestDTO update = new FruitRequestDTO("Green Apple", 4, provider.getId());
 
+        startCountingStatements();
         mockMvc.perform(put("/fruits/" + saved.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name").value("Green Apple"))
                 .andExpect(jsonPath("$.weightInKilos").value(4));
+        SqlStatementCounter.assertStatements("select", "update", "select");
     }
 
     @Test
@@ -171,10 +625,12 @@ public class FruitControllerTest {
         Provider provider = saveProvider();
         FruitRequestDTO update = new FruitRequestDTO("Kiwi", 1, provider.getId());
 
+        startCountingStatements();
         mockMvc.perform(put("/fruits/900")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
     }
 
     @Test
@@ -184,30 +640,426 @@ public class FruitControllerTest {
         Provider provider = saveProvider();
         FruitRequestDTO update = new FruitRequestDTO("", -1, provider.getId());
 
+        startCountingStatements();
         mockMvc.perform(put("/fruits/" + saved.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
     void shouldDeleteFruitWhenIdExists() throws Exception {
         Fruit saved = saveFruit("Apple", 3);
 
+        startCountingStatements();
         mockMvc.perform(delete("/fruits/" + saved.getId()))
                 .andExpect(status().isNoContent());
+        SqlStatementCounter.assertStatements("select", "delete");
 
         assertFalse(repository.findById(saved.getId()).isPresent());
     }
 
     @Test
     void shouldReturn404WhenDeletingNonExistentFruit() throws Exception {
+        startCountingStatements();
         mockMvc.perform(delete("/fruits/999"))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void createFruitShouldIssueASingleInsert() throws Exception {
+        Provider provider = saveProvider();
+        FruitRequestDTO request = new FruitRequestDTO("Banana", 5, provider.getId());
+        startCountingStatements();
+
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+
+        SqlStatementCounter.assertStatements("insert");
+    }
+
+    @Test
+    void updateFruitShouldLockTheRowAndIssueASingleUpdate() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+        Provider provider = saveProvider();
+        FruitRequestDTO update = new FruitRequestDTO("Green Apple", 4, provider.getId());
+        startCountingStatements();
+
+        mockMvc.perform(put("/fruits/" + saved.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"" + saved.getVersion() + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.providerId").value(provider.getId()));
+
+        // the locked select reads the old provider and weight for the stats deltas
+        SqlStatementCounter.assertStatements("select", "update");
+    }
+
+    @Test
+    @StatementBudget(select = 1, insert = 1)
+    void batchCreateShouldCheckTheProvidersOnceAndInsertInOneJdbcBatch() throws Exception {
+        Provider p1 = saveProvider();
+        Provider p2 = saveProvider();
+        FruitBatchRequestDTO request = new FruitBatchRequestDTO(List.of(
+                new FruitRequestDTO("Apple", 3, p1.getId()),
+                new FruitRequestDTO("Pear", 2, p2.getId()),
+                new FruitRequestDTO("Kiwi", 1, p1.getId())));
+        startCountingStatements();
+
+        mockMvc.perform(post("/fruits/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        repository.flush();
+    }
+
+    @Test
+    @StatementBudget(select = 1)
+    void searchShouldReadAPageWithASingleSelect() throws Exception {
+        Provider spanish = saveProvider();
+        saveFruit("Apple", 3, spanish);
+        saveFruit("Apricot", 4, spanish);
+        startCountingStatements();
+
+        mockMvc.perform(get("/fruits/search").param("name", "Ap").param("country", "Spain").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    @Test
+    @StatementBudget(select = 1)
+    void cursorPagesShouldBeReadWithASingleSelect() throws Exception {
+        saveFruit("Apple", 1);
+        saveFruit("Banana", 2);
+        startCountingStatements();
+
+        mockMvc.perform(get("/fruits").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)));
+    }
+
+    @Test
+    void getFruitByIdShouldReturn304WhenETagMatches() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+
+        startCountingStatements();
+        String eTag = mockMvc.perform(get("/fruits/" + saved.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/fruits/" + saved.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        // the 304 still reads the row: its version is the ETag
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void listETagShouldChangeWhenAFruitOfTheProviderChanges() throws Exception {
+        Provider provider = saveProvider();
+        Fruit saved = saveFruit("Apple", 3, provider);
+        saveFruit("Pear", 2, provider);
+
+        startCountingStatements();
+        String eTag = mockMvc.perform(get("/fruits").param("providerId", provider.getId().toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/fruits").param("providerId", provider.getId().toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(put("/fruits/" + saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Green Apple", 3, provider.getId()))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/fruits").param("providerId", provider.getId().toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        // list: ETag probe + rows; 304: probe only; update: lock, write, re-read; list again
+        SqlStatementCounter.assertStatements("select", "select", "select", "select", "update", "select", "select", "select");
+    }
+
+    @Test
+    void shouldReturn412WhenIfMatchIsStale() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+        Long providerId = saved.getProvider().getId();
+
+        startCountingStatements();
+        mockMvc.perform(put("/fruits/" + saved.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Green Apple", 4, providerId))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(put("/fruits/" + saved.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Red Apple", 5, providerId))))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(get("/fruits/" + saved.getId()))
+                .andExpect(jsonPath("$.name").value("Green Apple"));
+        // both updates lock and write; the stale one is refused by the version in its WHERE clause
+        SqlStatementCounter.assertStatements("select", "update", "select", "update", "select");
+    }
+
+    @Test
+    void shouldReturn404WhenIfMatchTargetsMissingFruit() throws Exception {
+        Provider provider = saveProvider();
+
+        startCountingStatements();
+        mockMvc.perform(put("/fruits/999999")
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Kiwi", 1, provider.getId()))))
+                .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldReturn404WhenUpdatingFruitWithNonExistingProvider() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+        FruitRequestDTO update = new FruitRequestDTO("Green Apple", 4, 999999L);
+
+        startCountingStatements();
+        mockMvc.perform(put("/fruits/" + saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(update)))
+                .andExpect(status().isNotFound());
+        // no lookup first: the missing provider surfaces as a foreign key violation
+        SqlStatementCounter.assertStatements("select", "update");
+    }
+
+    @Test
+    void deleteFruitShouldLockTheRowAndIssueASingleDelete() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+        startCountingStatements();
+
+        mockMvc.perform(delete("/fruits/" + saved.getId()))
+                .andExpect(status().isNoContent());
+
+        SqlStatementCounter.assertStatements("select", "delete");
+    }
+
+    @Test
+    void adjustShouldApplyTheDeltaInOneUpdateAndReturnTheNewWeight() throws Exception {
+        Fruit saved = saveFruit("Apple", 10);
+        startCountingStatements();
+
+        mockMvc.perform(post("/fruits/" + saved.getId() + "/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(-4))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + (saved.getVersion() + 1) + "\""))
+                .andExpect(jsonPath("$.weightInKilos").value(6));
+
+        // no read before the write: the select only returns the value the update produced
+        SqlStatementCounter.assertStatements("update", "select");
+    }
+
+    @Test
+    void adjustShouldReturn409AndKeepTheStockWhenItWouldGoNegative() throws Exception {
+        Fruit saved = saveFruit("Apple", 3);
+
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/" + saved.getId() + "/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(-4))))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/fruits/" + saved.getId() + "/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(-3))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.weightInKilos").value(0));
+        // each adjustment is a guarded update and a read of the outcome, refused or not
+        SqlStatementCounter.assertStatements("update", "select", "update", "select");
+    }
+
+    @Test
+    void adjustShouldReturn409InsteadOfOverflowingTheStock() throws Exception {
+        Fruit saved = saveFruit("Apple", Integer.MAX_VALUE - 1);
+
+        mockMvc.perform(post("/fruits/" + saved.getId() + "/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(Integer.MAX_VALUE))))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/fruits/" + saved.getId() + "/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(1))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.weightInKilos").value(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void adjustShouldReturn404ForMissingFruitAnd400WithoutDelta() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(post("/fruits/999999/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitAdjustRequestDTO(1))))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(post("/fruits/999999/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.deltaKilos").value("Delta is required"));
+        // the 404 is an update that matched nothing plus the read telling it apart from a 409; the 400 issues none
+        SqlStatementCounter.assertStatements("update", "select");
+    }
+
+    @Test
+    void reassigningEveryFruitOfAProviderShouldIssueASingleUpdate() throws Exception {
+        Provider from = saveProvider();
+        Provider to = saveProvider();
+        Fruit apple = saveFruit("Apple", 3, from);
+        saveFruit("Pear", 2, from);
+        Fruit kiwi = saveFruit("Kiwi", 1, to);
+        FruitBulkUpdateRequestDTO request = new FruitBulkUpdateRequestDTO(
+                new FruitFilterDTO(null, from.getId()), new FruitChangesDTO(null, to.getId()));
+        startCountingStatements();
+
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+
+        SqlStatementCounter.assertStatements("update");
+        assertEquals(3, repository.findDtosByProviderIdIn(List.of(to.getId())).size());
+        assertEquals(apple.getVersion() + 1, repository.findDtoById(apple.getId()).orElseThrow().version());
+        assertEquals(kiwi.getVersion(), repository.findDtoById(kiwi.getId()).orElseThrow().version());
+    }
+
+    @Test
+    void shouldBulkUpdateTheWeightOfListedFruits() throws Exception {
+        Provider provider = saveProvider();
+        Fruit apple = saveFruit("Apple", 3, provider);
+        Fruit pear = saveFruit("Pear", 2, provider);
+        Fruit kiwi = saveFruit("Kiwi", 1, provider);
+        FruitBulkUpdateRequestDTO request = new FruitBulkUpdateRequestDTO(
+                new FruitFilterDTO(List.of(apple.getId(), pear.getId(), 999999L), null), new FruitChangesDTO(7, null));
+        startCountingStatements();
+
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+
+        // the locked select finds the providers whose stats have to be refreshed
+        SqlStatementCounter.assertStatements("select", "update");
+        assertEquals(7, repository.findDtoById(pear.getId()).orElseThrow().weightInKilos());
+        assertEquals(1, repository.findDtoById(kiwi.getId()).orElseThrow().weightInKilos());
+    }
+
+    @Test
+    void shouldReturn400WhenBulkUpdateHasNoFilterOrNoChanges() throws Exception {
+        Provider provider = saveProvider();
+
+        startCountingStatements();
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitBulkUpdateRequestDTO(
+                                new FruitFilterDTO(List.of(), null), new FruitChangesDTO(7, null)))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitBulkUpdateRequestDTO(
+                                new FruitFilterDTO(null, provider.getId()), new FruitChangesDTO(null, null)))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitBulkUpdateRequestDTO(
+                                new FruitFilterDTO(null, provider.getId()), new FruitChangesDTO(-1, null)))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['set.weightInKilos']").value("Weight must be greater than zero"));
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturn404WhenReassigningToNonExistingProvider() throws Exception {
+        Provider provider = saveProvider();
+        saveFruit("Apple", 3, provider);
+        FruitBulkUpdateRequestDTO request = new FruitBulkUpdateRequestDTO(
+                new FruitFilterDTO(null, provider.getId()), new FruitChangesDTO(null, 999999L));
+
+        startCountingStatements();
+        mockMvc.perform(patch("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+        // no lookup first: the missing provider surfaces as a foreign key violation
+        SqlStatementCounter.assertStatements("update");
+    }
+
+    @Test
+    void shouldBulkDeleteTheFruitsOfAProvider() throws Exception {
+        Provider gone = saveProvider();
+        Provider kept = saveProvider();
+        saveFruit("Apple", 3, gone);
+        saveFruit("Pear", 2, gone);
+        saveFruit("Kiwi", 1, kept);
+        startCountingStatements();
+
+        mockMvc.perform(delete("/fruits").param("providerId", gone.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+
+        SqlStatementCounter.assertStatements("select", "delete");
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void shouldBulkDeleteListedFruits() throws Exception {
+        Fruit apple = saveFruit("Apple", 3);
+        Fruit pear = saveFruit("Pear", 2);
+        saveFruit("Kiwi", 1);
+
+        startCountingStatements();
+        mockMvc.perform(delete("/fruits").param("ids", apple.getId() + "," + pear.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+        SqlStatementCounter.assertStatements("select", "delete");
+
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void shouldReturn400WhenBulkDeleteHasNoFilter() throws Exception {
+        saveFruit("Apple", 3);
+
+        startCountingStatements();
+        mockMvc.perform(delete("/fruits"))
+                .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
+
+        assertEquals(1, repository.count());
     }
 
     //HELPERS
 
+    private void startCountingStatements() {
+        repository.flush();
+        SqlStatementCounter.reset();
+    }
+
     private Provider saveProvider() {
         return providerRepository.save(new Provider("Provider-" + UUID.randomUUID(), "Spain"));
     }
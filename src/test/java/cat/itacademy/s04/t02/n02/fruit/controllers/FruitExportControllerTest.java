@@ -0,0 +1,83 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The export runs on an async thread with its own connection, so the rows it reads must be
+ * committed: unlike the other controller tests this class is not transactional and cleans up after itself.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class FruitExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FruitRepository repository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+        providerRepository.deleteAll();
+    }
+
+    @Test
+    void shouldExportEveryFruitAsOneJsonLine() throws Exception {
+        Provider provider = providerRepository.save(new Provider("Provider-Export", "Spain"));
+        repository.save(new Fruit("Apple", 3, provider));
+        repository.save(new Fruit("Banana", 5, provider));
+
+        MvcResult result = mockMvc.perform(get("/fruits/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("Apple", first.get("name").asText());
+        assertEquals(provider.getId(), first.get("providerId").asLong());
+        assertEquals("Banana", objectMapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    void shouldExportNothingWhenCatalogIsEmpty() throws Exception {
+        MvcResult result = mockMvc.perform(get("/fruits/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+}
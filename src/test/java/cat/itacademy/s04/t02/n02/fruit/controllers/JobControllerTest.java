@@ -0,0 +1,165 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Jobs run on a worker thread in transactions of their own, so the rows they write must be
+ * committed: like the export tests this class is not transactional, and it cleans up through the
+ * services so every cache sees the same changes the database does.
+ */
+@SpringBootTest(properties = "fruit.jobs.chunk-size=2")
+@AutoConfigureMockMvc
+public class JobControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private FruitService fruitService;
+
+    private final List<Long> providerIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        providerIds.forEach(id -> {
+            fruitService.deleteFruits(new FruitFilterDTO(null, id));
+            providerService.deleteProvider(id);
+        });
+    }
+
+    @Test
+    void aCreateFruitsJobShouldBeAcceptedAndRunInChunks() throws Exception {
+        Long providerId = saveProvider();
+        List<FruitRequestDTO> fruits = List.of(
+                new FruitRequestDTO("Apple", 3, providerId),
+                new FruitRequestDTO("Pear", 2, providerId),
+                new FruitRequestDTO("Kiwi", 1, providerId),
+                new FruitRequestDTO("Plum", 4, 999_999L),
+                new FruitRequestDTO("Fig", 5, providerId));
+
+        MvcResult accepted = mockMvc.perform(post("/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new JobRequestDTO("createFruits", fruits, null, null, null))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.type").value("createFruits"))
+                .andExpect(jsonPath("$.totalChunks").value(3))
+                .andReturn();
+        String location = accepted.getResponse().getHeader("Location");
+        assertEquals("/jobs/" + objectMapper.readTree(accepted.getResponse().getContentAsString()).get("id").asText(), location);
+
+        JsonNode job = awaitFinished(location);
+
+        assertEquals("PARTIALLY_FAILED", job.get("state").asText());
+        assertEquals(2, job.get("completedChunks").asInt());
+        assertEquals(1, job.get("failedChunks").asInt());
+        assertEquals(3, job.get("affectedRows").asInt());
+        JsonNode error = job.get("errors").get(0);
+        assertEquals(1, error.get("chunk").asInt());
+        assertEquals(2, error.get("firstItem").asInt());
+        assertEquals(3, error.get("lastItem").asInt());
+        assertEquals("Provider with id 999999 not found", error.get("error").asText());
+
+        mockMvc.perform(get("/fruits").param("providerId", providerId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void aDeleteFruitsJobShouldSucceedForTheFruitsOfAProvider() throws Exception {
+        Long providerId = saveProvider();
+        fruitService.createFruits(List.of(new FruitRequestDTO("Apple", 3, providerId), new FruitRequestDTO("Pear", 2, providerId)));
+
+        MvcResult accepted = mockMvc.perform(post("/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new JobRequestDTO("deleteFruits", null, null, new FruitFilterDTO(null, providerId), null))))
+                .andExpect(status().isAccepted())
+                .andReturn();
+
+        JsonNode job = awaitFinished(accepted.getResponse().getHeader("Location"));
+
+        assertEquals("SUCCEEDED", job.get("state").asText());
+        assertEquals(2, job.get("affectedRows").asInt());
+        assertEquals(1.0, job.get("progress").asDouble());
+    }
+
+    @Test
+    void anInvalidJobShouldBeRefusedWithBadRequest() throws Exception {
+        mockMvc.perform(post("/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"renameFruits\",\"fruits\":[]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(
+                        "Unknown job type: renameFruits (expected createFruits, createProviders, updateFruits or deleteFruits)"));
+
+        mockMvc.perform(post("/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"createFruits\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("A createFruits job needs fruits"));
+
+        mockMvc.perform(post("/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"createFruits\",\"fruits\":[{\"name\":\"\",\"weightInKilos\":1,\"providerId\":1}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void anUnknownJobShouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/jobs/{id}", UUID.randomUUID()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    private JsonNode awaitFinished(String location) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            JsonNode job = objectMapper.readTree(mockMvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            String state = job.get("state").asText();
+            if (!state.equals("QUEUED") && !state.equals("RUNNING")) {
+                return job;
+            }
+            assertTrue(System.nanoTime() < deadline, "Job still " + state);
+            Thread.sleep(10);
+        }
+    }
+
+    private Long saveProvider() {
+        Long id = providerService.createProvider(new ProviderRequestDTO("Provider-" + UUID.randomUUID(), "Spain")).id();
+        providerIds.add(id);
+        return id;
+    }
+}
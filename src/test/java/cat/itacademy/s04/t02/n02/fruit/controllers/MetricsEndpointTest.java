@@ -0,0 +1,59 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@Transactional
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FruitRepository fruitRepository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Test
+    void prometheusEndpointShouldExposeLayerPoolHibernateAndCacheMetrics() throws Exception {
+        Provider provider = providerRepository.save(new Provider("Provider-Metrics", "Spain"));
+        Fruit fruit = fruitRepository.save(new Fruit("Apple", 3, provider));
+
+        mockMvc.perform(get("/fruits/" + fruit.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/fruits").param("providerId", provider.getId().toString()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("controller_invocations_seconds_bucket{class=\"cat.itacademy.s04.t02.n02.fruit.controllers.FruitController\"")))
+                .andExpect(content().string(containsString("service_invocations_seconds_count{class=\"cat.itacademy.s04.t02.n02.fruit.services.FruitService\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket")))
+                .andExpect(content().string(containsString("method=\"findDtoById\"")))
+                .andExpect(content().string(containsString("hibernate_flushes_total")))
+                .andExpect(content().string(containsString("hibernate_entities_loads_total")))
+                .andExpect(content().string(containsString("hibernate_query_executions_total")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending")))
+                .andExpect(content().string(containsString("hikaricp_connections_acquire_seconds_bucket")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"providers\"")))
+                .andExpect(content().string(containsString("db_limiter_active")));
+    }
+}
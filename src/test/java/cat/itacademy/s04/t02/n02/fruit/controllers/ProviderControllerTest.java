@@ -1,22 +1,32 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderStatsAggregate;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderBatchRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import cat.itacademy.s04.t02.n02.fruit.support.SqlStatementCounter;
+import cat.itacademy.s04.t02.n02.fruit.support.StatementBudget;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
 
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -38,24 +48,45 @@ public class ProviderControllerTest {
     @Autowired
     private FruitRepository fruitRepository;
 
+    @Autowired
+    private ProviderStatsAggregate providerStats;
+
     @Test
     void shouldCreateProviderWhenDataIsValid() throws Exception {
         ProviderRequestDTO request = new ProviderRequestDTO("Banana", "fdfss");
 
+        startCountingStatements();
         mockMvc.perform(post("/providers")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isCreated());
+        SqlStatementCounter.assertStatements("insert");
     }
 
     @Test
     void shouldReturnBadRequestWhenDataIsInvalid() throws Exception {
         ProviderRequestDTO request = new ProviderRequestDTO("","fdfss");
 
+        startCountingStatements();
         mockMvc.perform(post("/providers")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenCountryIsLongerThanItsColumn() throws Exception {
+        Provider saved = repository.save(new Provider("Provider", "Spain"));
+        ProviderRequestDTO request = new ProviderRequestDTO("Provider", "S".repeat(256));
+
+        startCountingStatements();
+        mockMvc.perform(put("/providers/{id}", saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.country").value("Country must be at most 255 characters"));
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
@@ -63,10 +94,105 @@ public class ProviderControllerTest {
         Provider saved = repository.save(new Provider("Provider", "Spain"));
         ProviderRequestDTO request = new ProviderRequestDTO("Provider","England");
 
+        startCountingStatements();
         mockMvc.perform(post("/providers")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isConflict());
+        SqlStatementCounter.assertStatements("insert");
+    }
+
+    @Test
+    void shouldCreateProvidersInBatch() throws Exception {
+        ProviderBatchRequestDTO request = new ProviderBatchRequestDTO(List.of(
+                new ProviderRequestDTO("Provider-A", "Spain"),
+                new ProviderRequestDTO("Provider-B", "France")));
+
+        startCountingStatements();
+        mockMvc.perform(post("/providers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].name").value("Provider-B"));
+        repository.flush();
+        SqlStatementCounter.assertStatements("select", "insert");
+    }
+
+    @Test
+    @StatementBudget(select = 1, insert = 1)
+    void batchCreateShouldCheckTheNamesOnceAndInsertInOneJdbcBatch() throws Exception {
+        ProviderBatchRequestDTO request = new ProviderBatchRequestDTO(List.of(
+                new ProviderRequestDTO("Provider-A", "Spain"),
+                new ProviderRequestDTO("Provider-B", "France"),
+                new ProviderRequestDTO("Provider-C", "Italy")));
+
+        mockMvc.perform(post("/providers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        repository.flush();
+    }
+
+    @Test
+    void shouldReturnIsConflictWhenBatchNameAlreadyExists() throws Exception {
+        repository.save(new Provider("Provider-A", "Spain"));
+        ProviderBatchRequestDTO request = new ProviderBatchRequestDTO(List.of(
+                new ProviderRequestDTO("Provider-B", "France"),
+                new ProviderRequestDTO("Provider-A", "Italy")));
+
+        startCountingStatements();
+        mockMvc.perform(post("/providers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldReturnIsConflictWhenBatchRepeatsName() throws Exception {
+        ProviderBatchRequestDTO request = new ProviderBatchRequestDTO(List.of(
+                new ProviderRequestDTO("Provider-A", "France"),
+                new ProviderRequestDTO("Provider-A", "Italy")));
+
+        startCountingStatements();
+        mockMvc.perform(post("/providers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldPageThroughProvidersWithCursor() throws Exception {
+        repository.save(new Provider("Provider-A", "Spain"));
+        repository.save(new Provider("Provider-B", "France"));
+
+        startCountingStatements();
+        String body = mockMvc.perform(get("/providers").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name").value("Provider-A"))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/providers").param("limit", "1").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name").value("Provider-B"));
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    @StatementBudget(select = 1)
+    void cursorPagesOfProvidersShouldBeReadWithASingleSelect() throws Exception {
+        repository.save(new Provider("Provider-A", "Spain"));
+        repository.save(new Provider("Provider-B", "France"));
+        startCountingStatements();
+
+        mockMvc.perform(get("/providers").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)));
     }
 
     @Test
@@ -75,6 +201,7 @@ public class ProviderControllerTest {
 
         ProviderRequestDTO update = new ProviderRequestDTO("Provider-A-Updated", "France");
 
+        startCountingStatements();
         mockMvc.perform(put("/providers/" + saved.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
@@ -82,16 +209,19 @@ public class ProviderControllerTest {
                 .andExpect(jsonPath("$.id").value(saved.getId()))
                 .andExpect(jsonPath("$.name").value("Provider-A-Updated"))
                 .andExpect(jsonPath("$.country").value("France"));
+        SqlStatementCounter.assertStatements("update", "select");
     }
 
     @Test
     void shouldReturn404WhenUpdatingNonExistingProvider() throws Exception {
         ProviderRequestDTO update = new ProviderRequestDTO("NewName", "Spain");
 
+        startCountingStatements();
         mockMvc.perform(put("/providers/999")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("update");
     }
 
     @Test
@@ -100,10 +230,12 @@ public class ProviderControllerTest {
 
         ProviderRequestDTO update = new ProviderRequestDTO("", "France");
 
+        startCountingStatements();
         mockMvc.perform(put("/providers/" + saved.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isBadRequest());
+        SqlStatementCounter.assertStatements();
     }
 
     @Test
@@ -113,26 +245,32 @@ public class ProviderControllerTest {
 
         ProviderRequestDTO update = new ProviderRequestDTO("Provider-A", "Italy");
 
+        startCountingStatements();
         mockMvc.perform(put("/providers/" + p2.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
                 .andExpect(status().isConflict());
+        SqlStatementCounter.assertStatements("update");
     }
 
     @Test
     void shouldDeleteProviderWhenNoFruitsAssociated() throws Exception {
         Provider saved = repository.save(new Provider("Provider-A", "Spain"));
 
+        startCountingStatements();
         mockMvc.perform(delete("/providers/" + saved.getId()))
                 .andExpect(status().isNoContent());
+        SqlStatementCounter.assertStatements("delete");
 
         assertFalse(repository.findById(saved.getId()).isPresent());
     }
 
     @Test
     void shouldReturn404WhenDeletingNonExistingProvider() throws Exception {
+        startCountingStatements();
         mockMvc.perform(delete("/providers/999"))
                 .andExpect(status().isNotFound());
+        SqlStatementCounter.assertStatements("delete");
     }
 
     @Test
@@ -141,7 +279,196 @@ public class ProviderControllerTest {
 
         fruitRepository.save(new Fruit("Apple", 3, provider));
 
+        startCountingStatements();
         mockMvc.perform(delete("/providers/" + provider.getId()))
                 .andExpect(status().isConflict());
+        SqlStatementCounter.assertStatements("delete");
+    }
+
+    @Test
+    void createProviderShouldIssueASingleInsert() throws Exception {
+        startCountingStatements();
+
+        mockMvc.perform(post("/providers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequestDTO("Provider-A", "Spain"))))
+                .andExpect(status().isCreated());
+
+        SqlStatementCounter.assertStatements("insert");
+    }
+
+    @Test
+    void updateProviderShouldIssueASingleUpdate() throws Exception {
+        Provider saved = repository.save(new Provider("Provider-A", "Spain"));
+        startCountingStatements();
+
+        mockMvc.perform(put("/providers/" + saved.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"" + saved.getVersion() + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequestDTO("Provider-B", "France"))))
+                .andExpect(status().isOk());
+
+        SqlStatementCounter.assertStatements("update");
+    }
+
+    @Test
+    void getAllProvidersShouldReturn304UntilAProviderChanges() throws Exception {
+        Provider saved = repository.save(new Provider("Provider-A", "Spain"));
+
+        startCountingStatements();
+        String eTag = mockMvc.perform(get("/providers"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/providers").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/providers/" + saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequestDTO("Provider-A", "France"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(get("/providers").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+        // list: ETag probe + rows; 304: probe only; update: write + re-read; list again
+        SqlStatementCounter.assertStatements("select", "select", "select", "update", "select", "select", "select");
+    }
+
+    @Test
+    void shouldReturn412WhenUpdatingProviderWithStaleIfMatch() throws Exception {
+        Provider saved = repository.save(new Provider("Provider-A", "Spain"));
+        repository.flush();
+
+        startCountingStatements();
+        mockMvc.perform(put("/providers/" + saved.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequestDTO("Provider-B", "France"))))
+                .andExpect(status().isPreconditionFailed());
+        SqlStatementCounter.assertStatements("update", "select");
+    }
+
+    @Test
+    void deleteProviderShouldIssueASingleDelete() throws Exception {
+        Provider saved = repository.save(new Provider("Provider-A", "Spain"));
+        startCountingStatements();
+
+        mockMvc.perform(delete("/providers/" + saved.getId()))
+                .andExpect(status().isNoContent());
+
+        SqlStatementCounter.assertStatements("delete");
+    }
+
+    @Test
+    void shouldServeStockStatsWithoutQueryingTheDatabase() throws Exception {
+        Provider provider = repository.save(new Provider("Provider-A", "Andorra"));
+        fruitRepository.save(new Fruit("Apple", 3, provider));
+        fruitRepository.save(new Fruit("Pear", 4, provider));
+        // deltas only apply after commit, which never happens in this test, so seed from the GROUP BY
+        startCountingStatements();
+        providerStats.reconcile();
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(get("/providers/" + provider.getId() + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.country").value("Andorra"))
+                .andExpect(jsonPath("$.fruitCount").value(2))
+                .andExpect(jsonPath("$.totalKilos").value(7));
+
+        mockMvc.perform(get("/providers/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.countries[?(@.country == 'Andorra')].providerCount").value(1))
+                .andExpect(jsonPath("$.countries[?(@.country == 'Andorra')].totalKilos").value(7));
+
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldEmbedFruitsAndCountsInTwoQueriesWhateverTheNumberOfProviders() throws Exception {
+        Provider apples = repository.save(new Provider("Provider-A", "Spain"));
+        Provider pears = repository.save(new Provider("Provider-B", "Spain"));
+        Provider empty = repository.save(new Provider("Provider-C", "France"));
+        fruitRepository.save(new Fruit("Apple", 3, apples));
+        fruitRepository.save(new Fruit("Green Apple", 4, apples));
+        fruitRepository.save(new Fruit("Pear", 5, pears));
+        startCountingStatements();
+
+        mockMvc.perform(get("/providers").param("include", "fruits,counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].id").value(apples.getId()))
+                .andExpect(jsonPath("$[0].fruitCount").value(2))
+                .andExpect(jsonPath("$[0].totalKilos").value(7))
+                .andExpect(jsonPath("$[0].fruits[*].name", contains("Apple", "Green Apple")))
+                .andExpect(jsonPath("$[1].fruits[0].providerId").value(pears.getId()))
+                .andExpect(jsonPath("$[2].id").value(empty.getId()))
+                .andExpect(jsonPath("$[2].fruitCount").value(0))
+                .andExpect(jsonPath("$[2].fruits", hasSize(0)));
+
+        SqlStatementCounter.assertStatements("select", "select");
+    }
+
+    @Test
+    void countsAloneShouldComeFromOneGroupedQueryWithoutTheFruits() throws Exception {
+        Provider provider = repository.save(new Provider("Provider-A", "Spain"));
+        fruitRepository.save(new Fruit("Apple", 3, provider));
+        fruitRepository.save(new Fruit("Pear", 4, provider));
+        startCountingStatements();
+
+        mockMvc.perform(get("/providers").param("include", "counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Provider-A"))
+                .andExpect(jsonPath("$[0].fruitCount").value(2))
+                .andExpect(jsonPath("$[0].totalKilos").value(7))
+                .andExpect(jsonPath("$[0].fruits").doesNotExist());
+
+        SqlStatementCounter.assertStatements("select");
+    }
+
+    @Test
+    void shouldReturn400ForAnUnknownInclude() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/providers").param("include", "fruits,owners"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown include: owners (expected fruits and/or counts)"));
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturn400WhenIncludeIsCombinedWithLimit() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/providers").param("include", "fruits").param("limit", "10"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("include and limit cannot be combined: the details list is not paged"));
+        SqlStatementCounter.assertStatements();
+    }
+
+    @Test
+    void shouldReturn400ForAnIncludeNamingNothing() throws Exception {
+        for (String include : List.of("", ",", " , ")) {
+            startCountingStatements();
+            mockMvc.perform(get("/providers").param("include", include))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").value("Nothing to include (expected fruits and/or counts)"));
+            SqlStatementCounter.assertStatements();
+        }
+    }
+
+    @Test
+    void shouldReturn404ForStatsOfNonExistingProvider() throws Exception {
+        startCountingStatements();
+        mockMvc.perform(get("/providers/999/stats"))
+                .andExpect(status().isNotFound());
+        // answered from the in-memory aggregate
+        SqlStatementCounter.assertStatements();
+    }
+
+    //HELPERS
+
+    private void startCountingStatements() {
+        repository.flush();
+        SqlStatementCounter.reset();
     }
 }
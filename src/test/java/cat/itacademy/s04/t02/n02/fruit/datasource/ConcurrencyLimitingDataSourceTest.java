@@ -0,0 +1,99 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConcurrencyLimitingDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        lenient().when(target.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    void shouldReleasePermitOnceWhenConnectionIsClosed() throws Exception {
+        ConcurrencyLimitingDataSource dataSource = new ConcurrencyLimitingDataSource(target, 1, 0, Duration.ZERO);
+
+        Connection first = dataSource.getConnection();
+        first.close();
+        first.close();
+
+        assertNotNull(otherThread(dataSource));
+        assertThrows(DatabaseBusyException.class, () -> otherThread(dataSource));
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    void shouldRejectImmediatelyWhenQueueIsFull() throws Exception {
+        ConcurrencyLimitingDataSource dataSource = new ConcurrencyLimitingDataSource(target, 1, 0, Duration.ofSeconds(30));
+        dataSource.getConnection();
+
+        long start = System.nanoTime();
+        assertThrows(DatabaseBusyException.class, () -> otherThread(dataSource));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 5);
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxWait() throws Exception {
+        ConcurrencyLimitingDataSource dataSource = new ConcurrencyLimitingDataSource(target, 1, 10, Duration.ofMillis(50));
+        dataSource.getConnection();
+
+        DatabaseBusyException ex = assertThrows(DatabaseBusyException.class, () -> otherThread(dataSource));
+
+        assertTrue(ex.getMessage().contains("within 50 ms"));
+    }
+
+    @Test
+    void shouldNotTakeASecondPermitOnTheSameThread() throws SQLException {
+        ConcurrencyLimitingDataSource dataSource = new ConcurrencyLimitingDataSource(target, 1, 0, Duration.ZERO);
+
+        Connection outer = dataSource.getConnection();
+        Connection nested = dataSource.getConnection();
+        nested.close();
+        outer.close();
+
+        verify(target, times(2)).getConnection();
+    }
+
+    @Test
+    void shouldReleasePermitWhenPoolFails() throws Exception {
+        ConcurrencyLimitingDataSource dataSource = new ConcurrencyLimitingDataSource(target, 1, 0, Duration.ZERO);
+        when(target.getConnection()).thenThrow(new SQLException("pool down")).thenReturn(connection);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        assertNotNull(otherThread(dataSource));
+    }
+
+    // permits held by the test thread do not count for another thread
+    private static Connection otherThread(DataSource dataSource) throws Exception {
+        FutureTask<Connection> task = new FutureTask<>(dataSource::getConnection);
+        new Thread(task).start();
+        try {
+            return task.get();
+        } catch (ExecutionException ex) {
+            throw (Exception) ex.getCause();
+        }
+    }
+}
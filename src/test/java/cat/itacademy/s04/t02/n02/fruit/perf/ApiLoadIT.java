@@ -0,0 +1,56 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * End-to-end load test: boots the application on a random port against H2 in MySQL mode, seeds
+ * providers and fruits, then drives every endpoint with a configurable number of concurrent
+ * clients and read/write mix. Reports throughput and p50/p95/p99/p99.9 latency per endpoint on
+ * stdout and as JSON, and fails if any response has an unexpected status.
+ * <p>
+ * Run with {@code ./mvnw -Pperf verify}; the settings are listed in {@link LoadTestSettings}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.profiles.active=perf")
+class ApiLoadIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private FruitService fruitService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void reportsThroughputAndLatencyPerEndpoint() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        LoadScenario scenario = LoadScenario.seed("http://localhost:" + port, objectMapper, providerService, fruitService,
+                settings.providers(), settings.fruits());
+        LoadRunner runner = new LoadRunner(objectMapper);
+
+        runner.run(scenario, settings.concurrency(), settings.writeRatio(), settings.warmup());
+        Map<String, LatencySamples> results = runner.run(scenario, settings.concurrency(), settings.writeRatio(), settings.duration());
+
+        LoadTestReport report = LoadTestReport.of(settings, results);
+        System.out.println(report.toTable());
+        Files.createDirectories(settings.report().toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(settings.report().toFile(), report);
+
+        assertEquals(0, report.unexpected(), "Unexpected responses, first per endpoint: " + report.firstUnexpected());
+    }
+}
@@ -0,0 +1,155 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Uploads a generated CSV of {@code perf.import.rows} fruits (1M by default) to
+ * {@code POST /fruits/import} as one streamed request body, which is never held whole on either
+ * side, and prints the rows imported per second and the heap of the run: the live heap at its peak
+ * (what the collections left behind), the peak including garbage, and what stays afterwards. What
+ * stays is what the application keeps of every row by design, the H2 tables and the name
+ * suggestion index; the import itself should add little more than one chunk on top of it.
+ * <p>
+ * Run with {@code ./mvnw -Pperf verify [-Dperf.import.rows=100000]}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.profiles.active=perf",
+        "spring.datasource.url=jdbc:h2:mem:fruit_import;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+class CsvImportIT {
+
+    private static final int PROVIDERS = 100;
+    private static final String[] NAMES = {"Apple", "Banana", "Cherry", "Fig", "Grape", "Kiwi", "Lemon", "Mango", "Pear", "Plum"};
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void importsAMillionRowsInBoundedMemory() throws Exception {
+        int rows = Integer.getInteger("perf.import.rows", 1_000_000);
+        long[] providerIds = new long[PROVIDERS];
+        for (int i = 0; i < PROVIDERS; i++) {
+            providerIds[i] = providerService.createProvider(new ProviderRequestDTO("Import-" + UUID.randomUUID(), "Spain")).id();
+        }
+
+        List<MemoryPoolMXBean> heap = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        System.gc();
+        long heapBefore = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        // what each collection left behind, i.e. the live heap, sampled while the import runs
+        AtomicLong liveMax = new AtomicLong();
+        Thread sampler = Thread.ofPlatform().daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                liveMax.accumulateAndGet(heap.stream().mapToLong(pool -> pool.getCollectionUsage().getUsed()).sum(), Math::max);
+                LockSupport.parkNanos(10_000_000);
+            }
+        });
+
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/fruits/import"))
+                .header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new GeneratedCsv(rows, providerIds)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sampler.interrupt();
+        long heapPeak = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        System.gc();
+        long heapAfter = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        assertEquals(200, response.statusCode(), response.body());
+        FruitImportResultDTO result = objectMapper.readValue(response.body(), FruitImportResultDTO.class);
+        System.out.printf("CSV import  rows=%d imported=%d failed=%d  %.1f s  %.0f rows/s%n"
+                        + "  heap: before=%d MB  peak live=%d MB  peak with garbage=%d MB  retained after=%d MB%n",
+                result.rows(), result.imported(), result.failed(), seconds, result.imported() / seconds,
+                heapBefore >> 20, liveMax.get() >> 20, heapPeak >> 20, heapAfter >> 20);
+
+        assertEquals(rows, result.rows());
+        assertEquals(rows, result.imported(), () -> "Rows rejected: " + result.errors());
+    }
+
+    // "name,weightInKilos,providerId" and then one row per call, produced as the request body is sent
+    private static final class GeneratedCsv extends InputStream {
+
+        private final int rows;
+        private final long[] providerIds;
+        private byte[] line = "name,weightInKilos,providerId\n".getBytes(StandardCharsets.UTF_8);
+        private int position;
+        private int written;
+
+        GeneratedCsv(int rows, long[] providerIds) {
+            this.rows = rows;
+            this.providerIds = providerIds;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length && !nextLine()) {
+                return -1;
+            }
+            return line[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int copied = 0;
+            while (copied < length) {
+                if (position == line.length && !nextLine()) {
+                    break;
+                }
+                int chunk = Math.min(length - copied, line.length - position);
+                System.arraycopy(line, position, buffer, offset + copied, chunk);
+                position += chunk;
+                copied += chunk;
+            }
+            return copied == 0 ? -1 : copied;
+        }
+
+        private boolean nextLine() {
+            if (written == rows) {
+                return false;
+            }
+            int i = written++;
+            line = (NAMES[i % NAMES.length] + "-" + i + "," + (1 + i % 50) + "," + providerIds[i % providerIds.length] + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import java.util.Arrays;
+
+/**
+ * Every latency of one endpoint, kept raw so percentiles are exact. Each worker thread owns its
+ * own instance; they are merged once the run is over.
+ */
+final class LatencySamples {
+
+    private long[] nanos = new long[1024];
+    private int size;
+    private long unexpected;
+    private long skipped;
+    private long rejected;
+    private String firstUnexpected;
+
+    void record(long elapsedNanos) {
+        if (size == nanos.length) {
+            nanos = Arrays.copyOf(nanos, size * 2);
+        }
+        nanos[size++] = elapsedNanos;
+    }
+
+    void recordUnexpected(long elapsedNanos, String description) {
+        record(elapsedNanos);
+        unexpected++;
+        if (firstUnexpected == null) {
+            firstUnexpected = description;
+        }
+    }
+
+    // rejected requests are counted but kept out of the latency percentiles
+    void recordRejected() {
+        rejected++;
+    }
+
+    void recordSkipped() {
+        skipped++;
+    }
+
+    void merge(LatencySamples other) {
+        for (int i = 0; i < other.size; i++) {
+            record(other.nanos[i]);
+        }
+        unexpected += other.unexpected;
+        skipped += other.skipped;
+        rejected += other.rejected;
+        if (firstUnexpected == null) {
+            firstUnexpected = other.firstUnexpected;
+        }
+    }
+
+    int count() {
+        return size;
+    }
+
+    long unexpected() {
+        return unexpected;
+    }
+
+    long skipped() {
+        return skipped;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+
+    String firstUnexpected() {
+        return firstUnexpected;
+    }
+
+    /**
+     * Nearest-rank percentile in milliseconds; sorts the samples, so call it after the run.
+     */
+    double percentileMillis(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        Arrays.sort(nanos, 0, size);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return nanos[Math.clamp(rank - 1, 0, size - 1)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,107 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.perf.LoadScenario.Operation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a {@link LoadScenario} from a number of closed-loop clients, each sending its next request
+ * as soon as the previous one answers. Clients are virtual threads so that thousands of them cost
+ * little on the load generator side.
+ */
+final class LoadRunner {
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper;
+
+    LoadRunner(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    Map<String, LatencySamples> run(LoadScenario scenario, int clients, double writeRatio, Duration duration) throws Exception {
+        List<Operation> operations = scenario.operations();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<Map<String, LatencySamples>>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                workers.add(executor.submit(() -> work(operations, writeRatio, deadline)));
+            }
+        }
+
+        Map<String, LatencySamples> merged = new TreeMap<>();
+        for (Future<Map<String, LatencySamples>> worker : workers) {
+            worker.get().forEach((name, samples) -> merged.computeIfAbsent(name, key -> new LatencySamples()).merge(samples));
+        }
+        return merged;
+    }
+
+    private Map<String, LatencySamples> work(List<Operation> operations, double writeRatio, long deadline) {
+        List<Operation> reads = operations.stream().filter(operation -> !operation.write()).toList();
+        List<Operation> writes = operations.stream().filter(Operation::write).toList();
+        Map<String, LatencySamples> samples = new HashMap<>();
+
+        while (System.nanoTime() < deadline) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Operation operation = pick(random.nextDouble() < writeRatio ? writes : reads, random);
+            LatencySamples endpoint = samples.computeIfAbsent(operation.name(), name -> new LatencySamples());
+
+            HttpRequest request = operation.request().get();
+            if (request == null) {
+                endpoint.recordSkipped();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() == 503) {
+                    // the database limiter shed the request: expected under overload, reported apart
+                    endpoint.recordRejected();
+                    continue;
+                }
+                long elapsed = System.nanoTime() - start;
+                if (response.statusCode() != operation.expectedStatus()) {
+                    endpoint.recordUnexpected(elapsed, response.statusCode() + " " + new String(response.body()));
+                    continue;
+                }
+                endpoint.record(elapsed);
+                if (operation.onSuccess() != null) {
+                    operation.onSuccess().accept(objectMapper.readTree(response.body()));
+                }
+            } catch (IOException ex) {
+                endpoint.recordUnexpected(System.nanoTime() - start, ex.toString());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return samples;
+    }
+
+    private static Operation pick(List<Operation> operations, ThreadLocalRandom random) {
+        int total = operations.stream().mapToInt(Operation::weight).sum();
+        int ticket = random.nextInt(total);
+        for (Operation operation : operations) {
+            ticket -= operation.weight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("No operation picked");
+    }
+}
@@ -0,0 +1,182 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitAdjustRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * The requests the load test sends: one operation per FruitController and ProviderController
+ * endpoint, weighted within its read or write group.
+ * <p>
+ * Updates and reads target the seeded rows, which are never deleted. Deletes only consume rows
+ * created for that purpose (seeded up front or by the create operations during the run), so every
+ * response status is predictable and anything else counts as an unexpected result.
+ */
+final class LoadScenario {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int BATCH_SIZE = 20;
+    private static final int SEED_CHUNK = 1000;
+
+    record Operation(String name, boolean write, int weight, int expectedStatus,
+                     Supplier<HttpRequest> request, Consumer<JsonNode> onSuccess) {
+    }
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final long[] providerIds;
+    private final long[] fruitIds;
+    private final Queue<Long> deletableProviders = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> deletableFruits = new ConcurrentLinkedQueue<>();
+    private final AtomicLong names = new AtomicLong();
+
+    LoadScenario(String baseUrl, ObjectMapper objectMapper, List<Long> providerIds, List<Long> fruitIds,
+                 List<Long> deletableProviders, List<Long> deletableFruits) {
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.providerIds = providerIds.stream().mapToLong(Long::longValue).toArray();
+        this.fruitIds = fruitIds.stream().mapToLong(Long::longValue).toArray();
+        this.deletableProviders.addAll(deletableProviders);
+        this.deletableFruits.addAll(deletableFruits);
+    }
+
+    /**
+     * Seeds the rows the scenario works on through the services, in chunks so the batch inserts
+     * stay bounded.
+     */
+    static LoadScenario seed(String baseUrl, ObjectMapper objectMapper, ProviderService providerService,
+                             FruitService fruitService, int providerCount, int fruitCount) {
+        List<Long> providers = createProviders(providerService, providerCount);
+        List<Long> deletableProviders = createProviders(providerService, Math.max(providerCount, 1000));
+        List<Long> fruits = createFruits(fruitService, fruitCount, providers);
+        List<Long> deletableFruits = createFruits(fruitService, fruitCount / 5, providers);
+        return new LoadScenario(baseUrl, objectMapper, providers, fruits, deletableProviders, deletableFruits);
+    }
+
+    private static List<Long> createProviders(ProviderService providerService, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int from = 0; from < count; from += SEED_CHUNK) {
+            List<ProviderRequestDTO> chunk = IntStream.range(from, Math.min(count, from + SEED_CHUNK))
+                    .mapToObj(i -> new ProviderRequestDTO("Seed-" + System.nanoTime() + "-" + i, "Spain"))
+                    .toList();
+            providerService.createProviders(chunk).stream().map(ProviderResponseDTO::id).forEach(ids::add);
+        }
+        return ids;
+    }
+
+    private static List<Long> createFruits(FruitService fruitService, int count, List<Long> providers) {
+        List<Long> ids = new ArrayList<>();
+        for (int from = 0; from < count; from += SEED_CHUNK) {
+            List<FruitRequestDTO> chunk = IntStream.range(from, Math.min(count, from + SEED_CHUNK))
+                    .mapToObj(i -> new FruitRequestDTO("Seed-" + i, i % 50 + 1, providers.get(i % providers.size())))
+                    .toList();
+            fruitService.createFruits(chunk).stream().map(FruitResponseDTO::id).forEach(ids::add);
+        }
+        return ids;
+    }
+
+    List<Operation> operations() {
+        return List.of(
+                read("GET /fruits/{id}", 30, () -> get("/fruits/" + randomFruit())),
+                read("GET /fruits?providerId", 15, () -> get("/fruits?providerId=" + randomProvider())),
+                read("GET /fruits?limit", 15, () -> get("/fruits?limit=" + PAGE_SIZE + "&after=" + CursorMapper.encode(randomFruit()))),
+                read("GET /fruits", 2, () -> get("/fruits")),
+                read("GET /fruits/export", 1, () -> get("/fruits/export")),
+                read("GET /providers", 10, () -> get("/providers")),
+                read("GET /providers?limit", 5, () -> get("/providers?limit=" + PAGE_SIZE)),
+                read("GET /providers/cache-stats", 2, () -> get("/providers/cache-stats")),
+
+                write("POST /fruits", 25, 201,
+                        () -> send("POST", "/fruits", newFruit()),
+                        body -> deletableFruits.add(body.get("id").asLong())),
+                write("POST /fruits/batch", 5, 201,
+                        () -> send("POST", "/fruits/batch", new FruitBatchRequestDTO(IntStream.range(0, BATCH_SIZE).mapToObj(i -> newFruit()).toList())),
+                        body -> body.forEach(fruit -> deletableFruits.add(fruit.get("id").asLong()))),
+                write("PUT /fruits/{id}", 25, 200,
+                        () -> send("PUT", "/fruits/" + randomFruit(), newFruit()), null),
+                write("POST /fruits/{id}/adjust", 15, 200,
+                        () -> send("POST", "/fruits/" + randomFruit() + "/adjust",
+                                new FruitAdjustRequestDTO(ThreadLocalRandom.current().nextInt(1, 10))), null),
+                write("DELETE /fruits/{id}", 15, 204,
+                        () -> delete("/fruits/", deletableFruits), null),
+                write("POST /providers", 10, 201,
+                        () -> send("POST", "/providers", newProvider()),
+                        body -> deletableProviders.add(body.get("id").asLong())),
+                write("POST /providers/batch", 5, 201,
+                        () -> send("POST", "/providers/batch", new ProviderBatchRequestDTO(IntStream.range(0, BATCH_SIZE).mapToObj(i -> newProvider()).toList())),
+                        body -> body.forEach(provider -> deletableProviders.add(provider.get("id").asLong()))),
+                write("PUT /providers/{id}", 10, 200,
+                        () -> send("PUT", "/providers/" + randomProvider(), newProvider()), null),
+                write("DELETE /providers/{id}", 5, 204,
+                        () -> delete("/providers/", deletableProviders), null)
+        );
+    }
+
+    private static Operation read(String name, int weight, Supplier<HttpRequest> request) {
+        return new Operation(name, false, weight, 200, request, null);
+    }
+
+    private static Operation write(String name, int weight, int expectedStatus, Supplier<HttpRequest> request, Consumer<JsonNode> onSuccess) {
+        return new Operation(name, true, weight, expectedStatus, request, onSuccess);
+    }
+
+    private FruitRequestDTO newFruit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new FruitRequestDTO("Fruit-" + names.incrementAndGet(), random.nextInt(1, 50), randomProvider());
+    }
+
+    private ProviderRequestDTO newProvider() {
+        return new ProviderRequestDTO("Provider-" + names.incrementAndGet(), "Spain");
+    }
+
+    private long randomFruit() {
+        return fruitIds[ThreadLocalRandom.current().nextInt(fruitIds.length)];
+    }
+
+    private long randomProvider() {
+        return providerIds[ThreadLocalRandom.current().nextInt(providerIds.length)];
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest send(String method, String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // null when nothing is left to delete: the worker records the operation as skipped
+    private HttpRequest delete(String path, Queue<Long> ids) {
+        Long id = ids.poll();
+        return id == null ? null : HttpRequest.newBuilder(URI.create(baseUrl + path + id)).DELETE().build();
+    }
+}
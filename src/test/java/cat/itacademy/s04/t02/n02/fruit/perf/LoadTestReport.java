@@ -0,0 +1,55 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * What a load test run writes to {@code perf.report}; keep these files to compare tuning changes.
+ */
+record LoadTestReport(int concurrency, long durationSeconds, double writeRatio, int providers, int fruits,
+                      long requests, long unexpected, double throughputPerSecond, List<Endpoint> endpoints) {
+
+    record Endpoint(String endpoint, long requests, long unexpected, long skipped, long rejected, double throughputPerSecond,
+                    double p50Ms, double p95Ms, double p99Ms, double p999Ms, double maxMs, String firstUnexpected) {
+    }
+
+    static LoadTestReport of(LoadTestSettings settings, Map<String, LatencySamples> results) {
+        double seconds = settings.duration().toMillis() / 1000.0;
+        List<Endpoint> endpoints = results.entrySet().stream()
+                .map(entry -> {
+                    LatencySamples samples = entry.getValue();
+                    return new Endpoint(entry.getKey(), samples.count(), samples.unexpected(), samples.skipped(), samples.rejected(),
+                            samples.count() / seconds,
+                            samples.percentileMillis(50), samples.percentileMillis(95), samples.percentileMillis(99),
+                            samples.percentileMillis(99.9), samples.percentileMillis(100), samples.firstUnexpected());
+                })
+                .toList();
+
+        long requests = endpoints.stream().mapToLong(Endpoint::requests).sum();
+        long unexpected = endpoints.stream().mapToLong(Endpoint::unexpected).sum();
+        return new LoadTestReport(settings.concurrency(), settings.duration().toSeconds(), settings.writeRatio(),
+                settings.providers(), settings.fruits(), requests, unexpected, requests / seconds, endpoints);
+    }
+
+    String firstUnexpected() {
+        return endpoints.stream()
+                .filter(endpoint -> endpoint.firstUnexpected() != null)
+                .map(endpoint -> endpoint.endpoint() + " -> " + endpoint.firstUnexpected())
+                .collect(Collectors.joining("; "));
+    }
+
+    String toTable() {
+        StringBuilder table = new StringBuilder()
+                .append(String.format("%nLoad test: %d clients, %ds, write ratio %.2f, %d requests, %.1f req/s%n",
+                        concurrency, durationSeconds, writeRatio, requests, throughputPerSecond))
+                .append(String.format("%-28s %9s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+                        "endpoint", "requests", "errors", "503s", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Endpoint endpoint : endpoints) {
+            table.append(String.format("%-28s %9d %6d %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    endpoint.endpoint(), endpoint.requests(), endpoint.unexpected(), endpoint.rejected(), endpoint.throughputPerSecond(),
+                    endpoint.p50Ms(), endpoint.p95Ms(), endpoint.p99Ms(), endpoint.p999Ms(), endpoint.maxMs()));
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Load test knobs, read from system properties so they can be set from the Maven command line
+ * (see the {@code perf} profile in pom.xml).
+ */
+record LoadTestSettings(int concurrency, Duration warmup, Duration duration, double writeRatio,
+                        int providers, int fruits, Path report) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("perf.concurrency", 16),
+                Duration.ofSeconds(Long.getLong("perf.warmup-seconds", 5)),
+                Duration.ofSeconds(Long.getLong("perf.duration-seconds", 20)),
+                Double.parseDouble(System.getProperty("perf.write-ratio", "0.2")),
+                Integer.getInteger("perf.providers", 50),
+                Integer.getInteger("perf.fruits", 5000),
+                Path.of(System.getProperty("perf.report", "target/perf/load-test-report.json")));
+    }
+}
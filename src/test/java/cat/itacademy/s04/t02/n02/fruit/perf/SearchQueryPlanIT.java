@@ -0,0 +1,182 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSort;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.support.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query-plan regression test for {@code GET /fruits/search}: seeds a million fruits (1000 providers
+ * in 20 countries), runs each filter and sort combination through {@link FruitRepository#search},
+ * and EXPLAINs the SQL Hibernate generated to check it reads the composite index meant for it
+ * instead of scanning the table.
+ * <p>
+ * Runs on H2 in MySQL mode by default. Point it at MySQL to check the real optimiser:
+ * {@code ./mvnw -Pperf verify -Dperf.query-plan.url=jdbc:mysql://localhost:3307/fruit_test?rewriteBatchedStatements=true
+ * -Dperf.query-plan.username=user -Dperf.query-plan.password=password}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.profiles.active=perf",
+        "spring.datasource.url=jdbc:h2:mem:fruit_query_plan;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        // criteria values are rendered into the SQL, so the captured statement can be EXPLAINed as is
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SearchQueryPlanIT {
+
+    private static final int PROVIDERS = 1000;
+    private static final int COUNTRIES = 20;
+    private static final int BATCH = 10_000;
+    private static final int PAGE = 51;
+    private static final String[] NAMES = {"Apple", "Banana", "Cherry", "Fig", "Grape", "Kiwi", "Lemon", "Mango", "Pear", "Plum"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FruitRepository repository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private boolean mysql;
+
+    @DynamicPropertySource
+    static void databaseOverride(DynamicPropertyRegistry registry) {
+        String url = System.getProperty("perf.query-plan.url");
+        if (url != null && !url.isBlank()) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.username", () -> System.getProperty("perf.query-plan.username", ""));
+            registry.add("spring.datasource.password", () -> System.getProperty("perf.query-plan.password", ""));
+        }
+    }
+
+    @BeforeAll
+    void seed() {
+        int fruits = Integer.getInteger("perf.query-plan.fruits", 1_000_000);
+        mysql = jdbcTemplate.execute((Connection connection) ->
+                connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql"));
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "insert into providers (id, name, country, version) values (?, ?, ?, 0)",
+                IntStream.rangeClosed(1, PROVIDERS)
+                        .mapToObj(id -> new Object[]{id, "Provider-" + id, country(id)})
+                        .toList()));
+        for (int from = 1; from <= fruits; from += BATCH) {
+            int start = from;
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    "insert into fruits (id, name, weight_in_kilos, provider_id, version) values (?, ?, ?, ?, 0)",
+                    IntStream.range(start, Math.min(start + BATCH, fruits + 1))
+                            .mapToObj(id -> new Object[]{id, NAMES[id % NAMES.length] + "-" + id,
+                                    (int) ((id * 7919L) % 1000) + 1, id % PROVIDERS + 1})
+                            .toList()));
+        }
+        jdbcTemplate.execute(mysql ? "analyze table providers, fruits" : "analyze");
+    }
+
+    @Test
+    void namePrefixSortedByNameUsesTheNameIndex() {
+        List<String> plan = explain(criteria("Fig-1234", null, null, null, null, "name"), null);
+
+        assertUsesIndex(plan, "idx_fruits_name");
+    }
+
+    @Test
+    void nextNamePageSeeksWithinTheNameIndex() {
+        List<String> plan = explain(criteria("Fig", null, null, null, null, "name,desc"), new CursorMapper.Keyset(5000L, "Fig-5000"));
+
+        assertUsesIndex(plan, "idx_fruits_name");
+    }
+
+    @Test
+    void weightRangeSortedByWeightUsesTheWeightIndex() {
+        List<String> plan = explain(criteria(null, 100, 102, null, null, "weightInKilos"), null);
+
+        assertUsesIndex(plan, "idx_fruits_weight");
+    }
+
+    @Test
+    void providerListWithWeightRangeUsesTheProviderWeightIndex() {
+        List<String> plan = explain(criteria(null, 10, 20, List.of(3L, 7L, 11L), null, "weightInKilos"), null);
+
+        assertUsesIndex(plan, "idx_fruits_provider_weight");
+    }
+
+    @Test
+    void countryFilterReachesFruitsThroughTheProviderIndex() {
+        List<String> plan = explain(criteria(null, 500, 501, null, "Country-07", "weightInKilos"), null);
+
+        assertUsesIndex(plan, "idx_providers_country");
+        assertUsesIndex(plan, "idx_fruits_provider_weight");
+    }
+
+    private static FruitSearchCriteria criteria(String name, Integer minKg, Integer maxKg, List<Long> providerIds,
+                                                String country, String sort) {
+        return new FruitSearchCriteria(name, minKg, maxKg, providerIds, country, FruitSort.parse(sort));
+    }
+
+    /**
+     * Runs the search, then EXPLAINs the statement Hibernate sent. Only the row limit is still a bind
+     * parameter at that point.
+     */
+    private List<String> explain(FruitSearchCriteria criteria, CursorMapper.Keyset after) {
+        SqlStatementCounter.reset();
+        transactionTemplate.executeWithoutResult(status -> repository.search(criteria, after, PAGE));
+        List<String> statements = SqlStatementCounter.statements();
+        String sql = statements.getLast();
+
+        List<String> plan = jdbcTemplate.query(connection -> {
+            PreparedStatement explain = connection.prepareStatement("explain " + sql);
+            for (int i = 1; i <= explain.getParameterMetaData().getParameterCount(); i++) {
+                explain.setInt(i, PAGE);
+            }
+            return explain;
+        }, (ResultSet row, int rowNum) -> planRow(row));
+        System.out.println(criteria + "\n  " + String.join("\n  ", plan));
+        return plan;
+    }
+
+    // H2 returns the plan as one annotated SQL text; MySQL returns a row per table with the chosen key
+    private String planRow(ResultSet row) throws SQLException {
+        if (!mysql) {
+            return row.getString(1);
+        }
+        return "table=" + row.getString("table") + " type=" + row.getString("type") + " key=" + row.getString("key");
+    }
+
+    private void assertUsesIndex(List<String> plan, String index) {
+        String text = String.join("\n", plan).toLowerCase(Locale.ROOT);
+        assertTrue(text.contains(index), () -> "Expected " + index + " in plan:\n" + text);
+        assertNoFullScan(plan);
+    }
+
+    private void assertNoFullScan(List<String> plan) {
+        String text = String.join("\n", plan).toLowerCase(Locale.ROOT);
+        assertFalse(text.contains(mysql ? "type=all" : "tablescan"), () -> "Full table scan in plan:\n" + text);
+    }
+
+    private static String country(int providerId) {
+        return String.format("Country-%02d", providerId % COUNTRIES);
+    }
+}
@@ -0,0 +1,169 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitAdjustRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Stress test for {@code POST /fruits/{id}/adjust}: every client hammers the same fruit at once,
+ * which is the worst case for lost updates. Checks that the final weight is the initial weight plus
+ * every accepted delta, that the version moved once per accepted request, that the provider stats
+ * saw the same total, and that clients racing to empty the stock never take it below zero. Prints
+ * the throughput of each run.
+ * <p>
+ * Run with {@code ./mvnw -Pperf verify}: {@code perf.concurrency} clients each send
+ * {@code perf.adjust.requests-per-client} requests.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.profiles.active=perf")
+class StockAdjustmentStressIT {
+
+    record Result(String name, int clients, long accepted, long rejected, long unexpected, long appliedKilos,
+                  double seconds) {
+
+        double throughputPerSecond() {
+            return (accepted + rejected + unexpected) / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s clients=%d accepted=%d rejected=%d unexpected=%d applied=%+d kg  %.0f req/s",
+                    name, clients, accepted, rejected, unexpected, appliedKilos, throughputPerSecond());
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProviderService providerService;
+
+    @Autowired
+    private FruitService fruitService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void concurrentAdjustmentsAreNeverLost() throws Exception {
+        FruitResponseDTO fruit = seedFruit(1_000);
+
+        // +3 and -2 alternate, so the stock only grows and every request is accepted
+        Result result = run("mixed deltas", fruit.id(), i -> i % 2 == 0 ? 3 : -2);
+        System.out.println(result);
+
+        FruitResponseDTO after = fruitService.getFruitById(fruit.id());
+        assertEquals(0, result.unexpected(), "Unexpected responses");
+        assertEquals(0, result.rejected(), "Adjustments rejected although the stock never ran out");
+        assertEquals(fruit.weightInKilos() + result.appliedKilos(), after.weightInKilos().longValue(), "Lost updates");
+        assertEquals(fruit.version() + result.accepted(), after.version().longValue(), "Version bumps lost");
+        assertEquals(after.weightInKilos().longValue(), providerService.getStockStats(fruit.providerId()).totalKilos(),
+                "Stock stats out of step with the row");
+    }
+
+    @Test
+    void concurrentWithdrawalsNeverTakeTheStockBelowZero() throws Exception {
+        int requests = clients() * requestsPerClient();
+        FruitResponseDTO fruit = seedFruit(requests / 2);
+
+        Result result = run("withdrawals of 1 kg", fruit.id(), i -> -1);
+        System.out.println(result);
+
+        assertEquals(0, result.unexpected(), "Unexpected responses");
+        assertEquals(requests / 2, result.accepted(), "Exactly the stock on hand should have been shipped");
+        assertEquals(requests - requests / 2, result.rejected());
+        assertEquals(0, fruitService.getFruitById(fruit.id()).weightInKilos());
+    }
+
+    private FruitResponseDTO seedFruit(int weightInKilos) {
+        Long providerId = providerService.createProvider(new ProviderRequestDTO("Warehouse-" + System.nanoTime(), "Spain")).id();
+        return fruitService.createFruit(new FruitRequestDTO("Stock-" + System.nanoTime(), weightInKilos, providerId));
+    }
+
+    /**
+     * Starts every client at once; client requests are sequential, so at most {@code clients}
+     * adjustments are in flight.
+     */
+    private Result run(String name, Long fruitId, IntUnaryOperator deltaOfRequest) throws Exception {
+        int clients = clients();
+        int perClient = requestsPerClient();
+        URI uri = URI.create("http://localhost:" + port + "/fruits/" + fruitId + "/adjust");
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<long[]>> outcomes = new ArrayList<>();
+        long began;
+        long ended;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                outcomes.add(executor.submit(() -> {
+                    // accepted, rejected, unexpected, applied kilos
+                    long[] counts = new long[4];
+                    start.await();
+                    for (int i = 0; i < perClient; i++) {
+                        int delta = deltaOfRequest.applyAsInt(i);
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(new FruitAdjustRequestDTO(delta))))
+                                .build();
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            counts[0]++;
+                            counts[3] += delta;
+                        } else if (status == 409) {
+                            counts[1]++;
+                        } else {
+                            counts[2]++;
+                        }
+                    }
+                    return counts;
+                }));
+            }
+            began = System.nanoTime();
+            start.countDown();
+            for (Future<long[]> outcome : outcomes) {
+                outcome.get();
+            }
+            ended = System.nanoTime();
+        }
+
+        long[] total = new long[4];
+        for (Future<long[]> outcome : outcomes) {
+            long[] counts = outcome.get();
+            for (int i = 0; i < total.length; i++) {
+                total[i] += counts[i];
+            }
+        }
+        return new Result(name, clients, total[0], total[1], total[2], total[3], (ended - began) / 1e9);
+    }
+
+    private static int clients() {
+        return Integer.getInteger("perf.concurrency", 16);
+    }
+
+    private static int requestsPerClient() {
+        return Integer.getInteger("perf.adjust.requests-per-client", 500);
+    }
+}
@@ -0,0 +1,106 @@
+package cat.itacademy.s04.t02.n02.fruit.perf;
+
+import cat.itacademy.s04.t02.n02.fruit.FruitApiMySqlApplication;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.ProviderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the load scenario against the application twice, once serving requests on Tomcat's
+ * platform thread pool and once on virtual threads, at increasing numbers of concurrent clients
+ * (100, 1000 and 10000 by default). Requests the database limiter sheds with a 503 are counted
+ * apart from errors, so the table shows where each model starts to queue and where it sheds load.
+ * <p>
+ * Run with {@code ./mvnw -Pperf verify -Dperf.thread-comparison=true}; see the {@code perf}
+ * profile in pom.xml for the client levels and the duration of each level.
+ */
+@EnabledIfSystemProperty(named = "perf.thread-comparison", matches = "true")
+class ThreadModelComparisonIT {
+
+    record Result(String threads, int clients, long requests, long rejected, long unexpected,
+                  double throughputPerSecond, double p50Ms, double p99Ms) {
+    }
+
+    @Test
+    void comparesPlatformAndVirtualThreads() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        int[] levels = Arrays.stream(System.getProperty("perf.thread-comparison.clients", "100,1000,10000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Duration duration = Duration.ofSeconds(Long.getLong("perf.thread-comparison.level-seconds", 15));
+        Path report = Path.of(System.getProperty("perf.thread-comparison.report", "target/perf/thread-model-comparison.json"));
+
+        List<Result> results = new ArrayList<>();
+        results.addAll(measure("platform", false, settings, levels, duration));
+        results.addAll(measure("virtual", true, settings, levels, duration));
+
+        System.out.println(toTable(results, settings.writeRatio(), duration));
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report.toFile(), results);
+
+        assertEquals(0, results.stream().mapToLong(Result::unexpected).sum(), "Unexpected responses, see the table above");
+    }
+
+    private List<Result> measure(String threads, boolean virtual, LoadTestSettings settings, int[] levels,
+                                 Duration duration) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FruitApiMySqlApplication.class).run(
+                "--server.port=0",
+                "--spring.profiles.active=perf",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.datasource.url=jdbc:h2:mem:fruit_perf_" + threads + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                // let every client connect, so the thread model rather than the acceptor sets the limit
+                "--server.tomcat.max-connections=20000",
+                "--server.tomcat.accept-count=10000")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            LoadScenario scenario = LoadScenario.seed("http://localhost:" + port, objectMapper,
+                    context.getBean(ProviderService.class), context.getBean(FruitService.class),
+                    settings.providers(), settings.fruits());
+            LoadRunner runner = new LoadRunner(objectMapper);
+
+            runner.run(scenario, levels[0], settings.writeRatio(), settings.warmup());
+            List<Result> results = new ArrayList<>();
+            for (int clients : levels) {
+                Map<String, LatencySamples> samples = runner.run(scenario, clients, settings.writeRatio(), duration);
+                results.add(summarize(threads, clients, samples, duration));
+            }
+            return results;
+        }
+    }
+
+    private static Result summarize(String threads, int clients, Map<String, LatencySamples> samples, Duration duration) {
+        LatencySamples all = new LatencySamples();
+        samples.values().forEach(all::merge);
+        return new Result(threads, clients, all.count(), all.rejected(), all.unexpected(),
+                all.count() / (duration.toMillis() / 1000.0), all.percentileMillis(50), all.percentileMillis(99));
+    }
+
+    private static String toTable(List<Result> results, double writeRatio, Duration duration) {
+        StringBuilder table = new StringBuilder()
+                .append(String.format("%nThread model comparison: %ds per level, write ratio %.2f%n", duration.toSeconds(), writeRatio))
+                .append(String.format("%-9s %8s %9s %8s %6s %9s %9s %9s%n",
+                        "threads", "clients", "requests", "503s", "errors", "req/s", "p50 ms", "p99 ms"));
+        for (Result result : results) {
+            table.append(String.format("%-9s %8d %9d %8d %6d %9.1f %9.2f %9.2f%n",
+                    result.threads(), result.clients(), result.requests(), result.rejected(), result.unexpected(),
+                    result.throughputPerSecond(), result.p50Ms(), result.p99Ms()));
+        }
+        return table.toString();
+    }
+}
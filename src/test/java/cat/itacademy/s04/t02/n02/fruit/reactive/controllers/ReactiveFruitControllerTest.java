@@ -0,0 +1,245 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+@SpringBootTest(properties = {
+        "spring.profiles.active=reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///fruit_reactive?options=MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password="
+})
+@AutoConfigureWebTestClient
+public class ReactiveFruitControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private ProviderResponseDTO provider;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("delete from fruits").then()
+                .then(databaseClient.sql("delete from providers").then())
+                .block();
+
+        provider = webTestClient.post().uri("/providers")
+                .bodyValue(new ProviderRequestDTO("Provider-A", "Spain"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ProviderResponseDTO.class)
+                .returnResult().getResponseBody();
+    }
+
+    @Test
+    void shouldCreateFruitWhenDataIsValid() {
+        webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO("Apple", 3, provider.id()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Apple")
+                .jsonPath("$.providerId").isEqualTo(provider.id());
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenDataIsInvalid() {
+        webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO("Apple", -1, provider.id()))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.weightInKilos").isEqualTo("Weight must be greater than zero");
+    }
+
+    @Test
+    void shouldReturn404WhenProviderDoesNotExist() {
+        webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO("Apple", 3, 999L))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").exists();
+    }
+
+    @Test
+    void shouldReturn404WhenBatchReferencesMissingProvider() {
+        FruitBatchRequestDTO request = new FruitBatchRequestDTO(List.of(
+                new FruitRequestDTO("Apple", 3, provider.id()),
+                new FruitRequestDTO("Pear", 2, 999L)));
+
+        webTestClient.post().uri("/fruits/batch")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webTestClient.get().uri("/fruits")
+                .exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    void shouldGetFruitByIdWithETag() {
+        FruitResponseDTO saved = create("Apple");
+
+        webTestClient.get().uri("/fruits/" + saved.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Apple");
+    }
+
+    @Test
+    void shouldReturn404WhenFruitDoesNotExist() {
+        webTestClient.get().uri("/fruits/999")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").exists();
+    }
+
+    @Test
+    void shouldStreamFruitsOfProviderAndReturn304WhileUnchanged() {
+        createBatch(3);
+
+        String eTag = webTestClient.get().uri("/fruits?providerId=" + provider.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/fruits?providerId=" + provider.id()).header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void shouldReturn404WhenListingFruitsOfMissingProvider() {
+        webTestClient.get().uri("/fruits?providerId=999")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void shouldPageThroughFruitsAndRejectInvalidCursor() {
+        createBatch(3);
+
+        webTestClient.get().uri("/fruits?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(2)
+                .jsonPath("$.nextCursor").isNotEmpty();
+
+        webTestClient.get().uri("/fruits?limit=2&after=%%%")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldExportFruitsAsNdjsonStream() {
+        createBatch(5);
+
+        Flux<FruitResponseDTO> export = webTestClient.get().uri("/fruits/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(FruitResponseDTO.class)
+                .getResponseBody();
+
+        StepVerifier.create(export, 2)
+                .expectNextCount(2)
+                .thenRequest(3)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldUpdateWithIfMatchAndRejectStaleVersion() {
+        FruitResponseDTO saved = create("Apple");
+
+        webTestClient.put().uri("/fruits/" + saved.id())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new FruitRequestDTO("Green Apple", 5, provider.id()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Green Apple");
+
+        webTestClient.put().uri("/fruits/" + saved.id())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new FruitRequestDTO("Red Apple", 5, provider.id()))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void shouldReturn404WhenUpdatingWithNonExistingProvider() {
+        FruitResponseDTO saved = create("Apple");
+
+        webTestClient.put().uri("/fruits/" + saved.id())
+                .bodyValue(new FruitRequestDTO("Apple", 5, 999L))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void shouldDeleteFruitAndReturn404Afterwards() {
+        FruitResponseDTO saved = create("Apple");
+
+        webTestClient.delete().uri("/fruits/" + saved.id())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.delete().uri("/fruits/" + saved.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    //HELPERS
+
+    private FruitResponseDTO create(String name) {
+        return webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO(name, 3, provider.id()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(FruitResponseDTO.class)
+                .returnResult().getResponseBody();
+    }
+
+    private void createBatch(int count) {
+        List<FruitRequestDTO> items = IntStream.range(0, count)
+                .mapToObj(i -> new FruitRequestDTO("Fruit-" + i, i + 1, provider.id()))
+                .toList();
+
+        webTestClient.post().uri("/fruits/batch")
+                .bodyValue(new FruitBatchRequestDTO(items))
+                .exchange()
+                .expectStatus().isCreated();
+    }
+}
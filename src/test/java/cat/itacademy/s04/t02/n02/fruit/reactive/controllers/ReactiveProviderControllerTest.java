@@ -0,0 +1,199 @@
+package cat.itacademy.s04.t02.n02.fruit.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderBatchRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+@SpringBootTest(properties = {
+        "spring.profiles.active=reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///fruit_reactive?options=MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password="
+})
+@AutoConfigureWebTestClient
+public class ReactiveProviderControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void cleanDatabase() {
+        databaseClient.sql("delete from fruits").then()
+                .then(databaseClient.sql("delete from providers").then())
+                .block();
+    }
+
+    @Test
+    void shouldCreateProviderWhenDataIsValid() {
+        webTestClient.post().uri("/providers")
+                .bodyValue(new ProviderRequestDTO("Provider-A", "Spain"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Provider-A")
+                .jsonPath("$.id").isNumber();
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenDataIsInvalid() {
+        webTestClient.post().uri("/providers")
+                .bodyValue(new ProviderRequestDTO("", "Spain"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Name must not be blank");
+    }
+
+    @Test
+    void shouldReturnIsConflictWhenNameIsDuplicated() {
+        create("Provider-A");
+
+        webTestClient.post().uri("/providers")
+                .bodyValue(new ProviderRequestDTO("Provider-A", "England"))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Provider with name: Provider-A already exists");
+    }
+
+    @Test
+    void shouldCreateProvidersInBatchWithDistinctIds() {
+        ProviderBatchRequestDTO request = new ProviderBatchRequestDTO(List.of(
+                new ProviderRequestDTO("Provider-A", "Spain"),
+                new ProviderRequestDTO("Provider-B", "France")));
+
+        List<ProviderResponseDTO> created = webTestClient.post().uri("/providers/batch")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBodyList(ProviderResponseDTO.class).hasSize(2)
+                .returnResult().getResponseBody();
+
+        assertEquals("Provider-B", created.get(1).name());
+        assertNotEquals(created.get(0).id(), created.get(1).id());
+    }
+
+    @Test
+    void shouldStreamProvidersAndReturn304UntilOneChanges() {
+        ProviderResponseDTO saved = create("Provider-A");
+        create("Provider-B");
+
+        String eTag = webTestClient.get().uri("/providers")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("Provider-A")
+                .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/providers").header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webTestClient.put().uri("/providers/" + saved.id())
+                .bodyValue(new ProviderRequestDTO("Provider-A", "France"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(1);
+
+        webTestClient.get().uri("/providers").header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void shouldPageThroughProvidersWithCursor() {
+        create("Provider-A");
+        create("Provider-B");
+
+        JsonNode page = webTestClient.get().uri("/providers?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class)
+                .returnResult().getResponseBody();
+        assertEquals("Provider-A", page.get("items").get(0).get("name").asText());
+
+        webTestClient.get().uri("/providers?limit=1&after=" + page.get("nextCursor").asText())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.items[0].name").isEqualTo("Provider-B");
+    }
+
+    @Test
+    void shouldReturn412WhenUpdatingProviderWithStaleIfMatch() {
+        ProviderResponseDTO saved = create("Provider-A");
+
+        webTestClient.put().uri("/providers/" + saved.id())
+                .header(HttpHeaders.IF_MATCH, "\"7\"")
+                .bodyValue(new ProviderRequestDTO("Provider-B", "France"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void shouldReturn404WhenUpdatingNonExistingProvider() {
+        webTestClient.put().uri("/providers/999")
+                .bodyValue(new ProviderRequestDTO("NewName", "Spain"))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").exists();
+    }
+
+    @Test
+    void shouldReturn409WhenDeletingProviderWithAssociatedFruits() {
+        ProviderResponseDTO provider = create("Provider-A");
+        databaseClient.sql("insert into fruits (id, name, weight_in_kilos, provider_id, version) values (999999, 'Apple', 3, :providerId, 0)")
+                .bind("providerId", provider.id())
+                .then().block();
+
+        webTestClient.delete().uri("/providers/" + provider.id())
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    void shouldDeleteProviderAndReturn404Afterwards() {
+        ProviderResponseDTO provider = create("Provider-A");
+
+        webTestClient.delete().uri("/providers/" + provider.id())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.delete().uri("/providers/" + provider.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    //HELPERS
+
+    private ProviderResponseDTO create(String name) {
+        return webTestClient.post().uri("/providers")
+                .bodyValue(new ProviderRequestDTO(name, "Spain"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ProviderResponseDTO.class)
+                .returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,57 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvReaderTest {
+
+    @Test
+    void shouldSplitRecordsAndKeepTheLineEachStartsOn() throws IOException {
+        CsvReader reader = reader("name,weightInKilos\r\nApple,3\r\n\r\nPear,2");
+
+        assertEquals(List.of("name", "weightInKilos"), reader.next());
+        assertEquals(1, reader.recordLine());
+        assertEquals(List.of("Apple", "3"), reader.next());
+        assertEquals(2, reader.recordLine());
+        assertEquals(List.of("Pear", "2"), reader.next());
+        assertEquals(4, reader.recordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void quotedFieldsShouldKeepCommasQuotesAndLineBreaks() throws IOException {
+        CsvReader reader = reader("\"Apple, Pink\",\"The \"\"best\"\"\",\"two\nlines\"\nKiwi,,1\n");
+
+        assertEquals(List.of("Apple, Pink", "The \"best\"", "two\nlines"), reader.next());
+        assertEquals(List.of("Kiwi", "", "1"), reader.next());
+        assertEquals(3, reader.recordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void anUnterminatedQuoteShouldBeReportedOnTheLineItOpens() throws IOException {
+        CsvReader reader = reader("Apple,3\n\"Pear,2\nKiwi,1\n");
+        reader.next();
+
+        CsvReader.MalformedCsvException ex = assertThrows(CsvReader.MalformedCsvException.class, reader::next);
+        assertEquals(2, ex.line());
+        assertEquals("Unterminated quoted field", ex.getMessage());
+    }
+
+    @Test
+    void aRecordLongerThanTheLimitShouldBeRejectedWithoutReadingTheRest() {
+        CsvReader reader = new CsvReader(new StringReader("\"" + "x".repeat(100)), 16);
+
+        CsvReader.MalformedCsvException ex = assertThrows(CsvReader.MalformedCsvException.class, reader::next);
+        assertEquals("Record longer than 16 characters", ex.getMessage());
+    }
+
+    private static CsvReader reader(String csv) {
+        return new CsvReader(new StringReader(csv), 1024);
+    }
+}
@@ -0,0 +1,102 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.FruitImportProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportErrorDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitImportResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.model.Provider;
+import cat.itacademy.s04.t02.n02.fruit.repository.ProviderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FruitImportServiceTest {
+
+    @Mock
+    private FruitService fruitService;
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private ValidatorFactory validation;
+
+    private FruitImportService service;
+
+    @BeforeEach
+    void setUp() {
+        validation = Validation.buildDefaultValidatorFactory();
+        service = new FruitImportService(fruitService, providerRepository, entityManager, validation.getValidator(),
+                new FruitImportProperties(10, 10, 1000), mock(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        validation.close();
+    }
+
+    @Test
+    void aChunkRefusedTwiceShouldBeInsertedRowByRowReportingOnlyTheRowsAtFault() throws Exception {
+        when(providerRepository.findExistingIds(any())).thenReturn(List.of(7L, 8L));
+        when(providerRepository.getReferenceById(any())).thenAnswer(invocation -> provider(invocation.getArgument(0)));
+        when(fruitService.createFruits(anyList(), anyMap()))
+                .thenThrow(new DataIntegrityViolationException("could not execute batch"));
+        FruitRequestDTO apple = new FruitRequestDTO("Apple", 3, 7L);
+        FruitRequestDTO pear = new FruitRequestDTO("Pear", 2, 8L);
+        FruitRequestDTO plum = new FruitRequestDTO("Plum", 1, 7L);
+        FruitRequestDTO fig = new FruitRequestDTO("Fig", 4, 8L);
+        when(fruitService.createFruit(apple)).thenReturn(new FruitResponseDTO(1L, "Apple", 3, 7L, 0L));
+        when(fruitService.createFruit(pear)).thenThrow(new ProviderNotFoundException(8L));
+        when(fruitService.createFruit(plum)).thenThrow(new DataIntegrityViolationException("could not execute statement"));
+
+        FruitImportResultDTO result = service.importFruits(csv("""
+                name,weightInKilos,providerId
+                Apple,3,7
+                Pear,2,8
+                Plum,1,7
+                Fig,4,8
+                """));
+
+        assertEquals(new FruitImportResultDTO(4, 1, 3, List.of(
+                new FruitImportErrorDTO(3, Map.of("providerId", "Provider with id 8 not found")),
+                new FruitImportErrorDTO(4, Map.of("row", "Refused by the database")),
+                new FruitImportErrorDTO(5, Map.of("providerId", "Provider with id 8 not found"))), false), result);
+        verify(fruitService, times(2)).createFruits(anyList(), anyMap());
+        // the provider found missing is not tried again for Fig
+        verify(fruitService, never()).createFruit(fig);
+    }
+
+    private static Provider provider(Long id) {
+        Provider provider = new Provider();
+        provider.setId(id);
+        return provider;
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,189 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.FruitLookupProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class FruitLookupBatcherTest {
+
+    @Mock
+    private FruitRepository repository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void aLookupAloneShouldBeSentWithoutWaitingOutTheWindow() {
+        FruitLookupBatcher batcher = batcher(true, Duration.ofSeconds(10), 100);
+        when(repository.findDtosByIdIn(Set.of(1L))).thenReturn(List.of(fruit(1L)));
+
+        Optional<FruitResponseDTO> result = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> batcher.findById(1L));
+
+        assertEquals(1L, result.orElseThrow().id());
+    }
+
+    @Test
+    void lookupsArrivingWhileAQueryRunsShouldShareTheNextOne() throws Exception {
+        // the window is long enough for every lookup to join; the batch goes out as soon as it is full
+        FruitLookupBatcher batcher = batcher(true, Duration.ofSeconds(10), 7);
+        CountDownLatch firstQueryRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirstQuery = new CountDownLatch(1);
+        when(repository.findDtosByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            if (ids.contains(1L)) {
+                firstQueryRunning.countDown();
+                releaseFirstQuery.await(5, TimeUnit.SECONDS);
+            }
+            return ids.stream().filter(id -> id != 8L).map(FruitLookupBatcherTest::fruit).toList();
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Optional<FruitResponseDTO>> first = executor.submit(() -> batcher.findById(1L));
+            assertTrue(firstQueryRunning.await(5, TimeUnit.SECONDS));
+
+            List<Optional<FruitResponseDTO>> results = lookUpConcurrently(batcher, 2, 3, 4, 5, 6, 7, 8);
+            releaseFirstQuery.countDown();
+
+            assertEquals(1L, first.get(5, TimeUnit.SECONDS).orElseThrow().id());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(i + 2L, results.get(i).orElseThrow().id());
+            }
+            assertTrue(results.get(6).isEmpty());
+        }
+
+        verify(repository).findDtosByIdIn(Set.of(1L));
+        verify(repository).findDtosByIdIn(Set.of(2L, 3L, 4L, 5L, 6L, 7L, 8L));
+        verify(repository, never()).findDtoById(any());
+        DistributionSummary batchSizes = registry.get("fruit.lookup.batch.size").summary();
+        assertEquals(2, batchSizes.count());
+        assertEquals(8, batchSizes.totalAmount());
+    }
+
+    @Test
+    void aBatchWaitingBehindAQueryShouldBeSentWhenThatQueryFinishes() throws Exception {
+        FruitLookupBatcher batcher = batcher(true, Duration.ofSeconds(10), 100);
+        CountDownLatch firstQueryRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirstQuery = new CountDownLatch(1);
+        when(repository.findDtosByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            if (ids.contains(1L)) {
+                firstQueryRunning.countDown();
+                releaseFirstQuery.await(5, TimeUnit.SECONDS);
+            }
+            return ids.stream().map(FruitLookupBatcherTest::fruit).toList();
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Optional<FruitResponseDTO>> first = executor.submit(() -> batcher.findById(1L));
+            assertTrue(firstQueryRunning.await(5, TimeUnit.SECONDS));
+            Future<Optional<FruitResponseDTO>> second = executor.submit(() -> batcher.findById(2L));
+
+            releaseFirstQuery.countDown();
+
+            // well within the 10 s window: the second batch went out as soon as the first query finished
+            assertEquals(1L, first.get(5, TimeUnit.SECONDS).orElseThrow().id());
+            assertEquals(2L, second.get(5, TimeUnit.SECONDS).orElseThrow().id());
+        }
+    }
+
+    @Test
+    void lookupsBeyondTheMaximumBatchSizeShouldGoInTheNextBatch() throws Exception {
+        FruitLookupBatcher batcher = batcher(true, Duration.ofMillis(200), 4);
+        when(repository.findDtosByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(FruitLookupBatcherTest::fruit).toList();
+        });
+
+        List<Optional<FruitResponseDTO>> results = lookUpConcurrently(batcher, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        assertTrue(results.stream().allMatch(Optional::isPresent));
+        DistributionSummary batchSizes = registry.get("fruit.lookup.batch.size").summary();
+        assertEquals(10, batchSizes.totalAmount());
+        assertTrue(batchSizes.max() <= 4);
+        verify(repository, atLeast(3)).findDtosByIdIn(any());
+    }
+
+    @Test
+    void aRepeatedIdShouldTakeOneSlotOfTheBatch() throws Exception {
+        FruitLookupBatcher batcher = batcher(true, Duration.ofMillis(200), 100);
+        when(repository.findDtosByIdIn(any())).thenReturn(List.of(fruit(5L)));
+
+        List<Optional<FruitResponseDTO>> results = lookUpConcurrently(batcher, 5, 5, 5);
+
+        assertTrue(results.stream().allMatch(result -> result.orElseThrow().id() == 5L));
+        assertEquals(1, registry.get("fruit.lookup.batch.size").summary().max());
+        verify(repository, atLeastOnce()).findDtosByIdIn(Set.of(5L));
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void aFailedQueryShouldFailEveryLookupOfTheBatch() {
+        FruitLookupBatcher batcher = batcher(true, Duration.ofSeconds(10), 3);
+        when(repository.findDtosByIdIn(any())).thenThrow(new DataAccessResourceFailureException("database down"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> lookUpConcurrently(batcher, 1, 2, 3));
+
+        assertInstanceOf(DataAccessResourceFailureException.class, failure.getCause());
+    }
+
+    @Test
+    void disabledBatchingShouldQueryEachIdDirectly() {
+        FruitLookupBatcher batcher = batcher(false, Duration.ofSeconds(10), 100);
+        when(repository.findDtoById(1L)).thenReturn(Optional.of(fruit(1L)));
+
+        assertEquals(1L, batcher.findById(1L).orElseThrow().id());
+
+        verify(repository, never()).findDtosByIdIn(any());
+    }
+
+    private FruitLookupBatcher batcher(boolean enabled, Duration window, int maxBatchSize) {
+        return new FruitLookupBatcher(repository, new FruitLookupProperties(enabled, window, maxBatchSize, 500), registry);
+    }
+
+    private static List<Optional<FruitResponseDTO>> lookUpConcurrently(FruitLookupBatcher batcher, long... ids) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<FruitResponseDTO>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long id : ids) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return batcher.findById(id);
+                }));
+            }
+            start.countDown();
+            List<Optional<FruitResponseDTO>> results = new ArrayList<>();
+            for (Future<Optional<FruitResponseDTO>> future : futures) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    private static FruitResponseDTO fruit(Long id) {
+        return new FruitResponseDTO(id, "Fruit-" + id, 1, 10L, 0L);
+    }
+}
@@ -1,9 +1,34 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.cache.Catalog;
+import cat.itacademy.s04.t02.n02.fruit.cache.CatalogSnapshot;
+import cat.itacademy.s04.t02.n02.fruit.cache.FruitNameIndex;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.ProviderStatsAggregate;
+import cat.itacademy.s04.t02.n02.fruit.cache.ResponseCache;
+import cat.itacademy.s04.t02.n02.fruit.cache.SingleFlight;
+import cat.itacademy.s04.t02.n02.fruit.config.FruitLookupProperties;
+import cat.itacademy.s04.t02.n02.fruit.config.PaginationProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.BulkResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CursorPageResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRefDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSearchCriteria;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitSort;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStockDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.ProviderResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
 import cat.itacademy.s04.t02.n02.fruit.exception.FruitNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidCursorException;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidSearchException;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
 import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.mapper.CursorMapper;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Provider;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
@@ -12,13 +37,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +64,33 @@ public class FruitServiceTest {
     @Mock
     private ProviderRepository providerRepository;
 
+    @Mock
+    private ProviderCache providerCache;
+
+    @Mock
+    private ProviderStatsAggregate providerStats;
+
+    @Mock
+    private FruitNameIndex nameIndex;
+
+    @Mock
+    private FruitLookupBatcher lookups;
+
+    @Mock
+    private CatalogSnapshot snapshot;
+
+    @Mock
+    private ResponseCache responses;
+
+    @Spy
+    private SingleFlight reads = new SingleFlight(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private PaginationProperties pagination = new PaginationProperties(2);
+
+    @Spy
+    private FruitLookupProperties lookupProperties = new FruitLookupProperties(true, Duration.ofMillis(2), 100, 3);
+
     @InjectMocks
     private FruitService service;
 
@@ -43,8 +104,8 @@ public class FruitServiceTest {
         Fruit savedFruit = new Fruit("Banana", 3, provider);
         savedFruit.setId(1L);
 
-        when(providerRepository.findById(10L)).thenReturn(Optional.of(provider));
-        when(repository.save(any(Fruit.class))).thenReturn(savedFruit);
+        when(providerRepository.getReferenceById(10L)).thenReturn(provider);
+        when(repository.saveAndFlush(any(Fruit.class))).thenReturn(savedFruit);
 
         FruitResponseDTO result = service.createFruit(request);
 
@@ -53,31 +114,73 @@ public class FruitServiceTest {
         assertEquals(3, result.weightInKilos());
         assertEquals(10L, result.providerId());
 
-        verify(providerRepository, times(1)).findById(10L);
-        verify(repository, times(1)).save(any(Fruit.class));
+        verify(providerRepository, never()).findById(any());
+        verify(providerStats).fruitAdded(10L, 3);
+        verify(nameIndex).put(1L, "Banana");
+        verify(repository, times(1)).saveAndFlush(any(Fruit.class));
     }
 
     @Test
     void createFruitShouldThrowWhenProviderDoesNotExist() {
         FruitRequestDTO request = new FruitRequestDTO("Banana", 3, 999L);
 
-        when(providerRepository.findById(999L)).thenReturn(Optional.empty());
+        when(repository.saveAndFlush(any(Fruit.class))).thenThrow(violation("23000", 1452));
 
         assertThrows(ProviderNotFoundException.class, () -> service.createFruit(request));
 
-        verify(providerRepository).findById(999L);
-        verify(repository, never()).save(any());
+        verify(providerRepository, never()).findById(any());
     }
 
     @Test
-    void shouldReturnFruitWhenExists() {
-        Provider provider = new Provider("Provider-1", "Spain");
-        provider.setId(10L);
+    void createFruitShouldNotBlameTheProviderForAnotherConstraint() {
+        FruitRequestDTO request = new FruitRequestDTO("Banana", 3, 7L);
+        DataIntegrityViolationException tooLong = violation("22001", 1406);
+
+        when(repository.saveAndFlush(any(Fruit.class))).thenThrow(tooLong);
+
+        assertSame(tooLong, assertThrows(DataIntegrityViolationException.class, () -> service.createFruit(request)));
+    }
+
+    @Test
+    void createFruitsShouldResolveProvidersInOneLookup() {
+        Provider p1 = new Provider("P1", "Spain"); p1.setId(10L);
+        Provider p2 = new Provider("P2", "France"); p2.setId(11L);
+
+        List<FruitRequestDTO> request = List.of(
+                new FruitRequestDTO("Apple", 3, 10L),
+                new FruitRequestDTO("Pear", 2, 11L),
+                new FruitRequestDTO("Kiwi", 1, 10L));
+
+        when(providerRepository.findAllById(any())).thenReturn(List.of(p1, p2));
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<FruitResponseDTO> result = service.createFruits(request);
+
+        assertEquals(3, result.size());
+        assertEquals(11L, result.get(1).providerId());
+
+        verify(providerRepository, times(1)).findAllById(any());
+        verify(providerRepository, never()).findById(any());
+    }
+
+    @Test
+    void createFruitsShouldThrowWhenAnyProviderDoesNotExist() {
+        Provider p1 = new Provider("P1", "Spain"); p1.setId(10L);
+
+        List<FruitRequestDTO> request = List.of(
+                new FruitRequestDTO("Apple", 3, 10L),
+                new FruitRequestDTO("Pear", 2, 999L));
 
-        Fruit fruit = new Fruit("Apple", 3, provider);
-        fruit.setId(1L);
+        when(providerRepository.findAllById(any())).thenReturn(List.of(p1));
 
-        when(repository.findById(1L)).thenReturn(Optional.of(fruit));
+        assertThrows(ProviderNotFoundException.class, () -> service.createFruits(request));
+
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void shouldReturnFruitWhenExists() {
+        when(lookups.findById(1L)).thenReturn(Optional.of(new FruitResponseDTO(1L, "Apple", 3, 10L, 0L)));
 
         FruitResponseDTO result = service.getFruitById(1L);
 
@@ -89,20 +192,35 @@ public class FruitServiceTest {
 
     @Test
     void shouldThrowExceptionWhenNotExists() {
-        when(repository.findById(1L)).thenReturn(Optional.empty());
+        when(lookups.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(FruitNotFoundException.class, () -> service.getFruitById(1L));
     }
 
     @Test
-    void shouldReturnAllFruitsFromRepository() {
-        Provider p1 = new Provider("P1", "Spain"); p1.setId(10L);
-        Provider p2 = new Provider("P2", "France"); p2.setId(11L);
+    void getFruitsByIdsShouldKeepTheRequestedOrderAndSkipMissingIds() {
+        when(repository.findDtosByIdIn(Set.of(3L, 1L, 9L))).thenReturn(List.of(
+                new FruitResponseDTO(1L, "Apple", 3, 10L, 0L),
+                new FruitResponseDTO(3L, "Pear", 2, 10L, 0L)));
 
-        Fruit f1 = new Fruit("Apple", 3, p1);  f1.setId(1L);
-        Fruit f2 = new Fruit("Orange", 4, p2); f2.setId(2L);
+        List<FruitResponseDTO> result = service.getFruitsByIds(List.of(3L, 1L, 9L, 3L));
 
-        when(repository.findAll()).thenReturn(List.of(f1, f2));
+        assertEquals(List.of(3L, 1L), result.stream().map(FruitResponseDTO::id).toList());
+    }
+
+    @Test
+    void getFruitsByIdsShouldRejectTooManyIds() {
+        assertThrows(InvalidSearchException.class, () -> service.getFruitsByIds(List.of(1L, 2L, 3L, 4L)));
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void shouldReturnAllFruitsFromRepository() {
+        FruitResponseDTO f1 = new FruitResponseDTO(1L, "Apple", 3, 10L, 0L);
+        FruitResponseDTO f2 = new FruitResponseDTO(2L, "Orange", 4, 11L, 0L);
+
+        when(repository.findAllDtos()).thenReturn(List.of(f1, f2));
 
         List<FruitResponseDTO> result = service.getAllFruits();
 
@@ -110,87 +228,278 @@ public class FruitServiceTest {
         assertEquals("Apple", result.get(0).name());
         assertEquals(10L, result.get(0).providerId());
 
-        verify(repository).findAll();
+        verify(repository).findAllDtos();
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void listsShouldComeFromTheCatalogSnapshotWhenItIsLoaded() {
+        Catalog catalog = Catalog.of(List.of(new FruitResponseDTO(1L, "Apple", 3, 10L, 2L)),
+                List.of(new ProviderResponseDTO(10L, "Provider", "Spain", 0L)));
+        when(snapshot.current()).thenReturn(Optional.of(catalog));
+
+        assertEquals(List.of(1L), service.getAllFruits().stream().map(FruitResponseDTO::id).toList());
+        assertEquals(1, service.getFruitsByProviderId(10L).size());
+        assertEquals(catalog.fruitsVersion(), service.getFruitsVersion(null));
+        assertThrows(ProviderNotFoundException.class, () -> service.getFruitsByProviderId(99L));
+
+        verifyNoInteractions(repository, providerCache);
+    }
+
+    @Test
+    void providerListShouldGoThroughTheSingleFlightAndCheckTheProviderInTheSameQuery() {
+        when(repository.findDtosOfProvider(10L)).thenReturn(List.of());
+
+        assertThrows(ProviderNotFoundException.class, () -> service.getFruitsByProviderId(10L));
+
+        verify(reads).execute(eq(SingleFlight.FRUITS), eq("provider:10"), any());
+        verifyNoInteractions(providerCache);
+    }
+
+    @Test
+    void aProviderWithoutFruitsShouldGiveAnEmptyList() {
+        when(repository.findDtosOfProvider(10L)).thenReturn(List.of(new FruitResponseDTO(null, null, null, 10L, null)));
+        when(repository.findCollectionVersionOfProvider(10L)).thenReturn(Optional.of(new CollectionVersionDTO(0L, 0L, 0L)));
+        when(repository.findCollectionVersionOfProvider(99L)).thenReturn(Optional.empty());
+
+        assertEquals(List.of(), service.getFruitsByProviderId(10L));
+        assertEquals(0L, service.getFruitsVersion(10L).count());
+        assertThrows(ProviderNotFoundException.class, () -> service.getFruitsVersion(99L));
+        verifyNoInteractions(providerCache);
+    }
+
+    @Test
+    void shouldReturnPageWithNextCursorWhenMoreRowsExist() {
+        FruitResponseDTO f1 = new FruitResponseDTO(1L, "Apple", 3, 10L, 0L);
+        FruitResponseDTO f2 = new FruitResponseDTO(2L, "Orange", 4, 10L, 0L);
+        FruitResponseDTO f3 = new FruitResponseDTO(3L, "Kiwi", 1, 10L, 0L);
+
+        when(repository.findDtosAfter(0L, Limit.of(3))).thenReturn(List.of(f1, f2, f3));
+
+        CursorPageResponseDTO<FruitResponseDTO> page = service.getFruitsPage(null, null, 50);
+
+        assertEquals(2, page.items().size());
+        assertEquals("Orange", page.items().get(1).name());
+        assertNotNull(page.nextCursor());
+
+        when(repository.findDtosAfter(2L, Limit.of(3))).thenReturn(List.of(f3));
+
+        CursorPageResponseDTO<FruitResponseDTO> next = service.getFruitsPage(null, page.nextCursor(), 50);
+
+        assertEquals(1, next.items().size());
+        assertNull(next.nextCursor());
+    }
+
+    @Test
+    void shouldThrowWhenPagingFruitsOfNonExistingProvider() {
+        when(providerCache.existsById(999L)).thenReturn(false);
+
+        assertThrows(ProviderNotFoundException.class, () -> service.getFruitsPage(999L, null, 10));
+
+        verify(repository, never()).findDtosByProviderIdAfter(any(), any(), any());
+    }
+
+    @Test
+    void searchShouldEncodeTheSortKeyOfTheLastRowInTheCursor() {
+        FruitSearchCriteria criteria = new FruitSearchCriteria("A", null, null, null, null, FruitSort.parse("name,desc"));
+        FruitResponseDTO f1 = new FruitResponseDTO(4L, "Avocado", 3, 10L, 0L);
+        FruitResponseDTO f2 = new FruitResponseDTO(9L, "Apple", 4, 10L, 0L);
+        FruitResponseDTO f3 = new FruitResponseDTO(2L, "Apple", 1, 10L, 0L);
+
+        when(repository.search(criteria, null, 3)).thenReturn(List.of(f1, f2, f3));
+
+        CursorPageResponseDTO<FruitResponseDTO> page = service.searchFruits(criteria, null, 2);
+
+        assertEquals(List.of(f1, f2), page.items());
+        assertEquals(new CursorMapper.Keyset(9L, "Apple"), CursorMapper.decodeKeyset(page.nextCursor(), "name,desc"));
+        assertThrows(InvalidCursorException.class, () -> CursorMapper.decodeKeyset(page.nextCursor(), "name,asc"));
+    }
+
+    @Test
+    void searchShouldRejectAnInvertedWeightRange() {
+        FruitSearchCriteria criteria = new FruitSearchCriteria(null, 5, 2, null, null, FruitSort.DEFAULT);
+
+        assertThrows(InvalidSearchException.class, () -> service.searchFruits(criteria, null, 10));
+        verifyNoInteractions(repository);
     }
 
     @Test
     void shouldUpdateFruitWhenIdExists() {
-        Provider oldProvider = new Provider("Old", "ES"); oldProvider.setId(10L);
         Provider newProvider = new Provider("New", "UK"); newProvider.setId(20L);
 
-        Fruit existingFruit = new Fruit("Apple", 4, oldProvider);
-        existingFruit.setId(1L);
-
         FruitRequestDTO dto = new FruitRequestDTO("Green Apple", 5, 20L);
 
-        when(repository.findById(1L)).thenReturn(Optional.of(existingFruit));
-        when(providerRepository.findById(20L)).thenReturn(Optional.of(newProvider));
-        when(repository.save(any(Fruit.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.findStockByIdForUpdate(1L)).thenReturn(Optional.of(new FruitStockDTO(10L, 3)));
+        when(providerRepository.getReferenceById(20L)).thenReturn(newProvider);
+        when(repository.updateByIdAndVersion(1L, 3L, "Green Apple", 5, newProvider)).thenReturn(1);
 
-        FruitResponseDTO updated = service.updateFruit(1L, dto);
+        FruitResponseDTO updated = service.updateFruit(1L, dto, 3L);
 
+        assertEquals(1L, updated.id());
         assertEquals("Green Apple", updated.name());
         assertEquals(5, updated.weightInKilos());
         assertEquals(20L, updated.providerId());
+        assertEquals(4L, updated.version());
 
-        verify(repository).findById(1L);
-        verify(providerRepository).findById(20L);
-        verify(repository).save(any());
+        verify(repository, never()).findById(any());
+        verify(repository, never()).findDtoById(any());
+        verify(providerRepository, never()).findById(any());
+        verify(providerStats).fruitChanged(10L, 3, 20L, 5);
+        verify(nameIndex).put(1L, "Green Apple");
+    }
+
+    @Test
+    void shouldReadBackVersionWhenUpdatingWithoutExpectedVersion() {
+        Provider provider = new Provider("P1", "ES"); provider.setId(10L);
+        FruitRequestDTO dto = new FruitRequestDTO("Kiwi", 2, 10L);
+
+        when(repository.findStockByIdForUpdate(1L)).thenReturn(Optional.of(new FruitStockDTO(10L, 2)));
+        when(providerRepository.getReferenceById(10L)).thenReturn(provider);
+        when(repository.updateById(1L, "Kiwi", 2, provider)).thenReturn(1);
+        when(repository.findDtoById(1L)).thenReturn(Optional.of(new FruitResponseDTO(1L, "Kiwi", 2, 10L, 7L)));
+
+        FruitResponseDTO updated = service.updateFruit(1L, dto);
+
+        assertEquals(7L, updated.version());
+    }
+
+    @Test
+    void shouldThrowPreconditionFailedWhenVersionIsStale() {
+        Provider provider = new Provider("P1", "ES"); provider.setId(10L);
+        FruitRequestDTO dto = new FruitRequestDTO("Kiwi", 2, 10L);
+
+        when(repository.findStockByIdForUpdate(1L)).thenReturn(Optional.of(new FruitStockDTO(10L, 2)));
+        when(providerRepository.getReferenceById(10L)).thenReturn(provider);
+        when(repository.updateByIdAndVersion(1L, 2L, "Kiwi", 2, provider)).thenReturn(0);
+
+        assertThrows(PreconditionFailedException.class, () -> service.updateFruit(1L, dto, 2L));
+        verifyNoInteractions(providerStats);
     }
 
     @Test
     void shouldThrowExceptionWhenUpdatingNonExistentFruit() {
         FruitRequestDTO dto = new FruitRequestDTO("Kiwi", 2, 10L);
 
-        when(repository.findById(99L)).thenReturn(Optional.empty());
+        when(repository.findStockByIdForUpdate(99L)).thenReturn(Optional.empty());
 
         assertThrows(FruitNotFoundException.class, () -> service.updateFruit(99L, dto));
-
-        verify(repository).findById(99L);
-        verify(providerRepository, never()).findById(any());
-        verify(repository, never()).save(any());
+        verify(repository, never()).updateById(any(), any(), anyInt(), any());
     }
 
     @Test
     void shouldThrowWhenUpdatingWithNonExistingProvider() {
-        Provider oldProvider = new Provider("Old", "ES"); oldProvider.setId(10L);
-        Fruit existingFruit = new Fruit("Apple", 4, oldProvider);
-        existingFruit.setId(1L);
-
+        Provider missing = new Provider(); missing.setId(999L);
         FruitRequestDTO dto = new FruitRequestDTO("Apple 2", 5, 999L);
 
-        when(repository.findById(1L)).thenReturn(Optional.of(existingFruit));
-        when(providerRepository.findById(999L)).thenReturn(Optional.empty());
+        when(repository.findStockByIdForUpdate(1L)).thenReturn(Optional.of(new FruitStockDTO(10L, 5)));
+        when(providerRepository.getReferenceById(999L)).thenReturn(missing);
+        when(repository.updateById(1L, "Apple 2", 5, missing)).thenThrow(violation("23000", 1452));
 
         assertThrows(ProviderNotFoundException.class, () -> service.updateFruit(1L, dto));
-
-        verify(repository).findById(1L);
-        verify(providerRepository).findById(999L);
-        verify(repository, never()).save(any());
     }
 
     @Test
     void shouldDeleteFruitWhenIdExists() {
-        Provider provider = new Provider("P1", "ES"); provider.setId(10L);
-        Fruit fruit = new Fruit("Apple", 3, provider);
-        fruit.setId(1L);
-
-        when(repository.findById(1L)).thenReturn(Optional.of(fruit));
-        doNothing().when(repository).delete(fruit);
+        when(repository.findStockByIdForUpdate(1L)).thenReturn(Optional.of(new FruitStockDTO(10L, 3)));
+        when(repository.deleteByIdReturningCount(1L)).thenReturn(1);
 
         service.deleteFruit(1L);
 
-        verify(repository).findById(1L);
-        verify(repository).delete(fruit);
+        verify(repository).deleteByIdReturningCount(1L);
+        verify(repository, never()).findById(any());
+        verify(providerStats).fruitRemoved(10L, 3);
+        verify(nameIndex).remove(1L);
+        verify(reads).fence(SingleFlight.FRUITS);
+        verify(responses).fruitsChanged(List.of(10L));
     }
 
     @Test
     void shouldThrowExceptionWhenDeletingNonExistentFruit() {
-        when(repository.findById(99L)).thenReturn(Optional.empty());
+        when(repository.findStockByIdForUpdate(99L)).thenReturn(Optional.empty());
 
         assertThrows(FruitNotFoundException.class, () -> service.deleteFruit(99L));
 
-        verify(repository).findById(99L);
-        verify(repository, never()).delete(any());
+        verify(repository, never()).deleteByIdReturningCount(any());
+        verifyNoInteractions(providerStats);
+    }
+
+    @Test
+    void adjustShouldReportTheDeltaToTheStatsWithoutReadingFirst() {
+        when(repository.adjustWeight(1L, -2)).thenReturn(1);
+        when(repository.findDtoById(1L)).thenReturn(Optional.of(new FruitResponseDTO(1L, "Apple", 3, 10L, 4L)));
+
+        FruitResponseDTO result = service.adjustFruit(1L, -2);
+
+        assertEquals(3, result.weightInKilos());
+        verify(repository, never()).findStockByIdForUpdate(any());
+        verify(providerStats).fruitAdjusted(10L, -2);
+    }
+
+    @Test
+    void adjustShouldThrowConflictWhenTheGuardStoppedTheUpdate() {
+        when(repository.adjustWeight(1L, -5)).thenReturn(0);
+        when(repository.findDtoById(1L)).thenReturn(Optional.of(new FruitResponseDTO(1L, "Apple", 3, 10L, 4L)));
+
+        assertThrows(ConflictException.class, () -> service.adjustFruit(1L, -5));
+
+        verifyNoInteractions(providerStats, responses);
+        verify(reads, never()).fence(any());
+    }
+
+    @Test
+    void reassigningByProviderShouldRunOneUpdateAndRefreshBothProviders() {
+        FruitFilterDTO where = new FruitFilterDTO(null, 10L);
+        FruitChangesDTO set = new FruitChangesDTO(null, 20L);
+        when(repository.updateMatching(where, set)).thenReturn(4);
+
+        BulkResultDTO result = service.updateFruits(where, set);
+
+        assertEquals(4, result.affected());
+        verify(repository, never()).findRefsForUpdate(any());
+        verify(providerStats).refresh(Set.of(10L, 20L));
+        verify(responses).fruitsChanged(Set.of(10L, 20L));
+    }
+
+    @Test
+    void bulkUpdateByIdsShouldRefreshTheProvidersOfTheMatchedRows() {
+        FruitFilterDTO where = new FruitFilterDTO(List.of(1L, 2L, 3L), null);
+        FruitChangesDTO set = new FruitChangesDTO(9, null);
+        when(repository.findRefsForUpdate(where)).thenReturn(List.of(new FruitRefDTO(1L, 10L), new FruitRefDTO(2L, 11L)));
+        when(repository.updateMatching(where, set)).thenReturn(2);
+
+        service.updateFruits(where, set);
+
+        verify(providerStats).refresh(Set.of(10L, 11L));
+        verifyNoInteractions(nameIndex);
+    }
+
+    @Test
+    void bulkOperationsShouldRejectAnEmptyFilter() {
+        FruitFilterDTO everything = new FruitFilterDTO(List.of(), null);
+
+        assertThrows(InvalidBulkRequestException.class, () -> service.updateFruits(everything, new FruitChangesDTO(1, null)));
+        assertThrows(InvalidBulkRequestException.class, () -> service.deleteFruits(everything));
+
+        verify(repository, never()).updateMatching(any(), any());
+        verify(repository, never()).deleteMatching(any());
+    }
+
+    @Test
+    void bulkDeleteShouldDropTheDeletedNamesAndRefreshTheirProviders() {
+        FruitFilterDTO where = new FruitFilterDTO(null, 10L);
+        when(repository.findRefsForUpdate(where)).thenReturn(List.of(new FruitRefDTO(1L, 10L), new FruitRefDTO(2L, 10L)));
+        when(repository.deleteMatching(where)).thenReturn(2);
+
+        BulkResultDTO result = service.deleteFruits(where);
+
+        assertEquals(2, result.affected());
+        verify(nameIndex).removeAll(List.of(1L, 2L));
+        verify(providerStats).refresh(Set.of(10L));
+    }
+
+    // what Spring makes of the MySQL driver's exception for the given SQL state and error code
+    private static DataIntegrityViolationException violation(String sqlState, int errorCode) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new SQLException("constraint violated", sqlState, errorCode));
     }
 }
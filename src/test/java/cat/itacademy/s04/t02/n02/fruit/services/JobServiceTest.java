@@ -0,0 +1,240 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.JobProperties;
+import cat.itacademy.s04.t02.n02.fruit.dto.BulkResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitFilterDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobChunkErrorDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobState;
+import cat.itacademy.s04.t02.n02.fruit.dto.JobStatusDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.InvalidBulkRequestException;
+import cat.itacademy.s04.t02.n02.fruit.exception.JobNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ProviderNotFoundException;
+import cat.itacademy.s04.t02.n02.fruit.exception.TooManyJobsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JobServiceTest {
+
+    @Mock
+    private FruitService fruitService;
+
+    @Mock
+    private ProviderService providerService;
+
+    private JobService service;
+
+    @AfterEach
+    void stopWorkers() {
+        service.shutdown();
+    }
+
+    @Test
+    void aJobShouldBeAppliedChunkByChunkThroughTheService() throws Exception {
+        service = service(1, 1, 2);
+        List<FruitRequestDTO> fruits = fruits(5);
+        when(fruitService.createFruits(anyList())).thenAnswer(invocation -> created(invocation.getArgument(0)));
+
+        JobStatusDTO queued = service.submit(new JobRequestDTO("createFruits", fruits, null, null, null));
+        JobStatusDTO done = awaitFinished(queued.id());
+
+        verify(fruitService).createFruits(fruits.subList(0, 2));
+        verify(fruitService).createFruits(fruits.subList(2, 4));
+        verify(fruitService).createFruits(fruits.subList(4, 5));
+        assertEquals(JobState.SUCCEEDED, done.state());
+        assertEquals(3, done.totalChunks());
+        assertEquals(3, done.completedChunks());
+        assertEquals(5, done.processedItems());
+        assertEquals(5, done.affectedRows());
+        assertEquals(1.0, done.progress());
+        assertNotNull(done.finishedAt());
+        assertEquals(List.of(), done.errors());
+    }
+
+    @Test
+    void aFailingChunkShouldBeReportedAndTheOthersStillApplied() throws Exception {
+        service = service(1, 1, 2);
+        when(fruitService.createFruits(anyList()))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)))
+                .thenThrow(new ProviderNotFoundException(99L))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)));
+
+        JobStatusDTO done = awaitFinished(service.submit(new JobRequestDTO("createFruits", fruits(6), null, null, null)).id());
+
+        assertEquals(JobState.PARTIALLY_FAILED, done.state());
+        assertEquals(2, done.completedChunks());
+        assertEquals(1, done.failedChunks());
+        assertEquals(6, done.processedItems());
+        assertEquals(4, done.affectedRows());
+        assertEquals(List.of(new JobChunkErrorDTO(1, 2, 3, "Provider with id 99 not found")), done.errors());
+    }
+
+    @Test
+    void anUnexpectedFailureShouldBeReportedWithoutItsMessage() throws Exception {
+        service = service(1, 1, 2);
+        when(fruitService.createFruits(anyList()))
+                .thenThrow(new IllegalStateException("jdbc:mysql://db.internal:3306 refused the connection"))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)));
+
+        JobStatusDTO done = awaitFinished(service.submit(new JobRequestDTO("createFruits", fruits(4), null, null, null)).id());
+
+        assertEquals(JobState.PARTIALLY_FAILED, done.state());
+        assertEquals(List.of(new JobChunkErrorDTO(0, 0, 1, "Unexpected error, see the application log")), done.errors());
+    }
+
+    @Test
+    void anErrorEscapingAChunkShouldStillFinishTheJob() throws Exception {
+        service = service(1, 1, 2);
+        when(fruitService.createFruits(anyList()))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)))
+                .thenThrow(new OutOfMemoryError("Java heap space"));
+
+        JobStatusDTO done = awaitFinished(service.submit(new JobRequestDTO("createFruits", fruits(6), null, null, null)).id());
+
+        assertEquals(JobState.PARTIALLY_FAILED, done.state());
+        assertNotNull(done.finishedAt());
+        assertEquals(1, done.completedChunks());
+        assertEquals(2, done.failedChunks());
+        assertEquals(List.of(new JobChunkErrorDTO(1, 2, null, "Stopped with 2 chunks left: an unexpected error")), done.errors());
+        verify(fruitService, times(2)).createFruits(anyList());
+    }
+
+    @Test
+    void theFruitsOfAProviderShouldBeUpdatedInOneChunk() throws Exception {
+        service = service(1, 1, 2);
+        FruitFilterDTO where = new FruitFilterDTO(null, 7L);
+        FruitChangesDTO set = new FruitChangesDTO(3, null);
+        when(fruitService.updateFruits(where, set)).thenReturn(new BulkResultDTO(40));
+
+        JobStatusDTO done = awaitFinished(service.submit(new JobRequestDTO("updateFruits", null, null, where, set)).id());
+
+        verify(fruitService).updateFruits(where, set);
+        assertEquals(JobState.SUCCEEDED, done.state());
+        assertEquals(1, done.totalChunks());
+        assertEquals(40, done.processedItems());
+    }
+
+    @Test
+    void listedIdsShouldBeDeletedInChunksKeepingTheProviderFilter() throws Exception {
+        service = service(1, 1, 2);
+        when(fruitService.deleteFruits(any())).thenReturn(new BulkResultDTO(2), new BulkResultDTO(1));
+
+        JobStatusDTO done = awaitFinished(service.submit(
+                new JobRequestDTO("deleteFruits", null, null, new FruitFilterDTO(List.of(1L, 2L, 3L), 7L), null)).id());
+
+        verify(fruitService).deleteFruits(new FruitFilterDTO(List.of(1L, 2L), 7L));
+        verify(fruitService).deleteFruits(new FruitFilterDTO(List.of(3L), 7L));
+        assertEquals(3, done.affectedRows());
+    }
+
+    @Test
+    void aSubmissionBeyondTheQueueShouldBeRefused() throws Exception {
+        service = service(1, 1, 10);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fruitService.createFruits(anyList())).thenAnswer(invocation -> {
+            running.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return created(invocation.getArgument(0));
+        });
+        JobRequestDTO request = new JobRequestDTO("createFruits", fruits(1), null, null, null);
+
+        JobStatusDTO first = service.submit(request);
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        JobStatusDTO second = service.submit(request);
+        assertThrows(TooManyJobsException.class, () -> service.submit(request));
+
+        assertEquals(JobState.RUNNING, service.getJob(first.id()).state());
+        assertEquals(JobState.QUEUED, service.getJob(second.id()).state());
+        release.countDown();
+        assertEquals(JobState.SUCCEEDED, awaitFinished(second.id()).state());
+    }
+
+    @Test
+    void aSubmissionBeyondTheQueuedItemsShouldBeRefusedUntilTheyAreDone() throws Exception {
+        service = service(1, 10, 10, 5);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fruitService.createFruits(anyList())).thenAnswer(invocation -> {
+            running.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return created(invocation.getArgument(0));
+        });
+
+        JobStatusDTO first = service.submit(new JobRequestDTO("createFruits", fruits(3), null, null, null));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        TooManyJobsException refused = assertThrows(TooManyJobsException.class,
+                () -> service.submit(new JobRequestDTO("createFruits", fruits(3), null, null, null)));
+        assertTrue(refused.getRetryAfterSeconds() >= 1);
+        JobStatusDTO small = service.submit(new JobRequestDTO("createFruits", fruits(2), null, null, null));
+
+        release.countDown();
+        awaitFinished(first.id());
+        awaitFinished(small.id());
+        assertEquals(JobState.SUCCEEDED,
+                awaitFinished(service.submit(new JobRequestDTO("createFruits", fruits(5), null, null, null)).id()).state());
+    }
+
+    @Test
+    void invalidRequestsShouldBeRefusedBeforeAnythingIsQueued() {
+        service = service(1, 1, 10);
+
+        assertThrows(InvalidBulkRequestException.class,
+                () -> service.submit(new JobRequestDTO("renameFruits", fruits(1), null, null, null)));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> service.submit(new JobRequestDTO("createProviders", null, List.of(), null, null)));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> service.submit(new JobRequestDTO("deleteFruits", null, null, new FruitFilterDTO(List.of(), null), null)));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> service.submit(new JobRequestDTO("updateFruits", null, null, new FruitFilterDTO(null, 7L), new FruitChangesDTO(null, null))));
+        assertThrows(JobNotFoundException.class, () -> service.getJob("missing"));
+        verifyNoInteractions(fruitService, providerService);
+    }
+
+    private JobService service(int workers, int queueCapacity, int chunkSize) {
+        return service(workers, queueCapacity, chunkSize, 1000);
+    }
+
+    private JobService service(int workers, int queueCapacity, int chunkSize, long maxQueuedItems) {
+        return new JobService(fruitService, providerService,
+                new JobProperties(workers, queueCapacity, chunkSize, 1000, maxQueuedItems, Duration.ofHours(1)));
+    }
+
+    private JobStatusDTO awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        JobStatusDTO job = service.getJob(id);
+        while (!job.state().finished()) {
+            assertTrue(System.nanoTime() < deadline, "Job still " + job.state());
+            Thread.sleep(10);
+            job = service.getJob(id);
+        }
+        return job;
+    }
+
+    private static List<FruitRequestDTO> fruits(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new FruitRequestDTO("Fruit-" + i, 1, 7L)).toList();
+    }
+
+    private static List<FruitResponseDTO> created(List<FruitRequestDTO> fruits) {
+        return LongStream.range(0, fruits.size()).mapToObj(id -> new FruitResponseDTO(id, "Fruit", 1, 7L, 0L)).toList();
+    }
+}
@@ -0,0 +1,75 @@
+package cat.itacademy.s04.t02.n02.fruit.support;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Records every SQL statement run against the database so tests can assert how many round trips an
+ * endpoint costs. Fed by {@link StatementCountingDataSource}, which {@link StatementCountingConfig}
+ * puts in front of the test data source; id-generator statements are ignored because their
+ * frequency depends on how much of the pooled block earlier tests already used.
+ */
+public final class SqlStatementCounter {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static void record(String sql) {
+        if (sql != null) {
+            STATEMENTS.add(sql);
+        }
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+    }
+
+    public static List<String> statements() {
+        return STATEMENTS.stream()
+                .filter(sql -> !sql.toLowerCase(Locale.ROOT).contains("_seq"))
+                .toList();
+    }
+
+    /**
+     * Asserts the exact sequence of statement kinds (select, insert, update, delete) issued since the
+     * last {@link #reset()}, listing the offending SQL on failure.
+     */
+    public static void assertStatements(String... expectedKinds) {
+        List<String> statements = statements();
+        List<String> kinds = statements.stream().map(SqlStatementCounter::kind).toList();
+        assertEquals(List.of(expectedKinds), kinds, () -> "Unexpected SQL statements:\n  " + String.join("\n  ", statements));
+    }
+
+    /**
+     * Asserts how many statements of each kind were issued since the last {@link #reset()}, in any
+     * order; a statement of any other kind fails it too.
+     */
+    public static void assertCounts(int selects, int inserts, int updates, int deletes) {
+        List<String> statements = statements();
+        Map<String, Integer> expected = new TreeMap<>();
+        put(expected, "select", selects);
+        put(expected, "insert", inserts);
+        put(expected, "update", updates);
+        put(expected, "delete", deletes);
+        Map<String, Integer> actual = new TreeMap<>();
+        statements.forEach(sql -> actual.merge(kind(sql), 1, Integer::sum));
+        assertEquals(expected, actual, () -> "SQL statements off budget:\n  " + String.join("\n  ", statements));
+    }
+
+    private static void put(Map<String, Integer> counts, String kind, int count) {
+        if (count > 0) {
+            counts.put(kind, count);
+        }
+    }
+
+    private static String kind(String sql) {
+        return sql.strip().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+    }
+}
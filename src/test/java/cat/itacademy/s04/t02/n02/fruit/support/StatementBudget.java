@@ -0,0 +1,32 @@
+package cat.itacademy.s04.t02.n02.fruit.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The exact number of statements of each kind a test may issue after its last
+ * {@link SqlStatementCounter#reset()}, checked once the test method returns. Any other statement
+ * kind, or a different count, fails the test with the SQL listed.
+ * <pre>{@code
+ * @Test
+ * @StatementBudget(select = 1, update = 1)
+ * void updateShouldLockTheRowAndIssueASingleUpdate() { ... }
+ * }</pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(StatementBudgetExtension.class)
+public @interface StatementBudget {
+
+    int select() default 0;
+
+    int insert() default 0;
+
+    int update() default 0;
+
+    int delete() default 0;
+}
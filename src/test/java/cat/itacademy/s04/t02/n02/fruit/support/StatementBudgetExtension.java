@@ -0,0 +1,27 @@
+package cat.itacademy.s04.t02.n02.fruit.support;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Enforces {@link StatementBudget}. The counter is reset right before the test method runs, so a
+ * test that does not reset it itself is charged for its setup as well.
+ */
+public class StatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        SqlStatementCounter.reset();
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        if (context.getExecutionException().isPresent()) {
+            return;
+        }
+        context.getTestMethod()
+                .map(method -> method.getAnnotation(StatementBudget.class))
+                .ifPresent(budget -> SqlStatementCounter.assertCounts(budget.select(), budget.insert(), budget.update(), budget.delete()));
+    }
+}
@@ -0,0 +1,38 @@
+package cat.itacademy.s04.t02.n02.fruit.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every {@link DataSource} of a test context in a {@link StatementCountingDataSource}. Picked
+ * up by the application's component scan, so every {@code @SpringBootTest} counts its SQL. It runs
+ * before the database limiter, which therefore still wraps the counting data source.
+ */
+@Configuration(proxyBeanMethods = false)
+public class StatementCountingConfig {
+
+    @Bean
+    static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+        return new CountingPostProcessor();
+    }
+
+    private static final class CountingPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+                return new StatementCountingDataSource(dataSource);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cat.itacademy.s04.t02.n02.fruit.support;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hands out connections whose statements report every SQL they execute to
+ * {@link SqlStatementCounter}, whoever issues it: Hibernate, Spring Data, a {@code JdbcTemplate}.
+ * A statement is recorded when it runs, not when it is prepared, and a JDBC batch counts once, as
+ * it is one round trip.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+    private static final Set<String> EXECUTE_BATCH = Set.of("executeBatch", "executeLargeBatch");
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static Connection counting(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> statement(Statement.class, (Statement) result, null);
+                case "prepareStatement" -> statement(PreparedStatement.class, (PreparedStatement) result, (String) args[0]);
+                case "prepareCall" -> statement(CallableStatement.class, (CallableStatement) result, (String) args[0]);
+                default -> result;
+            };
+        });
+    }
+
+    // sql is null for a plain Statement, which gets its SQL with each call
+    private static <S extends Statement> S statement(Class<S> type, S statement, String sql) {
+        List<String> batch = new ArrayList<>();
+        return proxy(type, statement, (method, args) -> {
+            String name = method.getName();
+            if (EXECUTE.contains(name)) {
+                SqlStatementCounter.record(args != null && args.length > 0 && args[0] instanceof String given ? given : sql);
+            } else if (name.equals("addBatch") && args != null && args.length == 1) {
+                batch.add((String) args[0]);
+            } else if (EXECUTE_BATCH.contains(name)) {
+                if (sql != null) {
+                    SqlStatementCounter.record(sql);
+                } else {
+                    batch.forEach(SqlStatementCounter::record);
+                }
+                batch.clear();
+            } else if (name.equals("clearBatch")) {
+                batch.clear();
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Counting " + target;
+                    default -> handler.invoke(method, args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+}